@@ -0,0 +1,27 @@
+package bench;
+
+import model.ExpenseTrackerModel;
+import workload.WorkloadGenerator;
+
+/**
+ * Builds the datasets the benchmarks run against. The data is generated from a
+ * fixed seed, so every run and every machine measures the same rows.
+ */
+final class BenchmarkData {
+
+  static final long SEED = 520;
+
+  private BenchmarkData() {
+  }
+
+  /**
+   * Returns a model holding the given number of rows, with categories drawn
+   * with the given skew.
+   */
+  static ExpenseTrackerModel model(int rows, double skew) {
+    ExpenseTrackerModel model = new ExpenseTrackerModel();
+    new WorkloadGenerator(SEED, skew).addTo(model, rows);
+    return model;
+  }
+
+}
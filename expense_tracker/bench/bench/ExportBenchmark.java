@@ -0,0 +1,74 @@
+package bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import controller.CsvExporter;
+import controller.ExpenseTrackerController;
+import model.ExpenseTrackerModel;
+import model.TransactionSnapshot;
+
+/**
+ * Measures building the CSV text with generateCsvContent and streaming it to
+ * a file with the CsvExporter. generateCsvContent holds the whole file in one
+ * String, so its sizes stop at 1M rows; larger ones can be given with -p rows=...
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExportBenchmark {
+
+  @Param({"1000", "100000", "1000000"})
+  public int rows;
+
+  @Param({"0", "1.5"})
+  public double skew;
+
+  private ExpenseTrackerModel model;
+  private ExpenseTrackerController controller;
+  private TransactionSnapshot snapshot;
+  private Path file;
+
+  @Setup
+  public void setup() throws IOException {
+    model = BenchmarkData.model(rows, skew);
+    // generateCsvContent does not use the view
+    controller = new ExpenseTrackerController(model, null);
+    snapshot = model.snapshot();
+    file = Files.createTempFile("export-benchmark", ".csv");
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(file);
+  }
+
+  @Benchmark
+  public String generateCsvContent() {
+    return controller.generateCsvContent(model.getTransactions());
+  }
+
+  @Benchmark
+  public int streamingExport() throws IOException {
+    return new CsvExporter().export(snapshot, file);
+  }
+
+}
@@ -0,0 +1,84 @@
+package bench;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import model.ExpenseTrackerModel;
+import model.Transaction;
+import model.Filter.AmountFilter;
+import model.Filter.AmountRangeFilter;
+import model.Filter.AndFilter;
+import model.Filter.CategoryFilter;
+
+/**
+ * Measures the filters against the model's indexes, and the CategoryFilter
+ * against a plain list of Transactions for comparison. Results of filter(model)
+ * are lazy, so their size is returned to make sure the rows are found.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FilterBenchmark {
+
+  @Param({"1000", "100000", "10000000", "50000000"})
+  public int rows;
+
+  @Param({"0", "1.5"})
+  public double skew;
+
+  private ExpenseTrackerModel model;
+  private CategoryFilter rareCategory;
+  private CategoryFilter commonCategory;
+  private AmountFilter amount;
+  private AndFilter categoryAndRange;
+
+  @Setup
+  public void setup() {
+    model = BenchmarkData.model(rows, skew);
+    rareCategory = new CategoryFilter("other");
+    commonCategory = new CategoryFilter("food");
+    amount = new AmountFilter(500.0);
+    categoryAndRange = new AndFilter(commonCategory, new AmountRangeFilter(100.0, 200.0));
+  }
+
+  @Benchmark
+  public int rareCategoryFilter() {
+    return rareCategory.filter(model).size();
+  }
+
+  @Benchmark
+  public int commonCategoryFilter() {
+    return commonCategory.filter(model).size();
+  }
+
+  @Benchmark
+  public int amountFilter() {
+    return amount.filter(model).size();
+  }
+
+  @Benchmark
+  public int categoryAndAmountRangeFilter() {
+    return categoryAndRange.filter(model).size();
+  }
+
+  @Benchmark
+  public List<Transaction> categoryFilterOverList() {
+    return commonCategory.filter(model.getTransactions());
+  }
+
+}
@@ -0,0 +1,60 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import metrics.Counter;
+import metrics.LatencyTimer;
+import metrics.MetricsRegistry;
+
+/**
+ * Measures what timing an operation adds to it, to compare with the times of
+ * the operations in ModelBenchmark, FilterBenchmark and ExportBenchmark.
+ * Runs with several threads so contention on the timer's stripes shows up.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class MetricsBenchmark {
+
+  @Param({"true", "false"})
+  public boolean enabled;
+
+  private LatencyTimer timer;
+  private Counter counter;
+
+  @Setup
+  public void setup() {
+    MetricsRegistry registry = new MetricsRegistry();
+    registry.setEnabled(enabled);
+    timer = registry.timer("bench.timer");
+    counter = registry.counter("bench.counter");
+  }
+
+  @Benchmark
+  public void timeOperation() {
+    timer.stop(timer.start());
+  }
+
+  @Benchmark
+  public void countOperation() {
+    counter.increment();
+  }
+
+}
@@ -0,0 +1,75 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import model.ExpenseTrackerModel;
+import model.Transaction;
+import workload.WorkloadGenerator;
+
+/**
+ * Measures ExpenseTrackerModel.addTransaction on models of different sizes.
+ * Every add needs a new Transaction, so each invocation adds a batch built
+ * beforehand by an invocation-level setup, and only the adds are measured.
+ * The model keeps the rows added while measuring, which is small next to the
+ * larger datasets.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ModelBenchmark {
+
+  @Param({"1000", "100000", "10000000", "50000000"})
+  public int rows;
+
+  @Param({"0", "1.5"})
+  public double skew;
+
+  // Transactions added per invocation, enough to make the setup's overhead negligible
+  private static final int BATCH = 4096;
+
+  private ExpenseTrackerModel model;
+  // The values of the added transactions, generated up front so generating is not measured
+  private Transaction[] templates;
+  // The transactions the next invocation adds
+  private final Transaction[] batch = new Transaction[BATCH];
+
+  @Setup
+  public void setup() {
+    model = BenchmarkData.model(rows, skew);
+    templates = new WorkloadGenerator(BenchmarkData.SEED + 1, skew).generate(BATCH).toArray(new Transaction[0]);
+  }
+
+  // Each Transaction can be added once, so every invocation gets new ones
+  @Setup(Level.Invocation)
+  public void buildBatch() {
+    for (int i = 0; i < BATCH; i++) {
+      batch[i] = new Transaction(templates[i].getAmount(), templates[i].getCategory());
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BATCH)
+  public void addTransaction() {
+    for (Transaction t : batch) {
+      model.addTransaction(t);
+    }
+  }
+
+}
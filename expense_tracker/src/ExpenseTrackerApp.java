@@ -1,27 +1,65 @@
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.JMException;
+
 import javax.swing.JOptionPane;
 import javax.swing.SwingUtilities;
 import controller.ExpenseTrackerController;
+import metrics.MetricsRegistry;
 import model.ExpenseTrackerModel;
+import model.TransactionJournal;
 import view.ExpenseTrackerView;
 import model.Filter.AmountFilter;
 import model.Filter.CategoryFilter;
 
 public class ExpenseTrackerApp {
 
+  // The transactions are kept in this directory between runs
+  private static final String JOURNAL_DIRECTORY = "expense-journal";
+  // How often the metrics are written to the log
+  private static final long METRICS_DUMP_MINUTES = 1;
+
   /**
    * @param args
    */
   public static void main(String[] args) {
+    // Timings are on unless the app is started with -Dmetrics=false
+    MetricsRegistry metrics = MetricsRegistry.getDefault();
+    metrics.setEnabled(Boolean.parseBoolean(System.getProperty("metrics", "true")));
+    if (metrics.isEnabled()) {
+      try {
+        metrics.registerMBeans(ManagementFactory.getPlatformMBeanServer());
+      } catch (JMException ex) {
+        ex.printStackTrace();
+      }
+      metrics.startLogDump(METRICS_DUMP_MINUTES, TimeUnit.MINUTES);
+    }
+
+    // Restore the transactions of earlier runs and record every change from now on.
+    // The model is built here, before there is a window, so replaying a large
+    // journal does not freeze the window. invokeLater then hands the model to
+    // the Event Dispatch Thread, which owns it from there on.
+    ExpenseTrackerModel model = new ExpenseTrackerModel();
+    String loadError = openJournal(model);
+
     // Ensure GUI creation and interaction happen on the Event Dispatch Thread
     SwingUtilities.invokeLater(() -> {
       // Create MVC components
-      ExpenseTrackerModel model = new ExpenseTrackerModel();
       ExpenseTrackerView view = new ExpenseTrackerView();
       ExpenseTrackerController controller = new ExpenseTrackerController(model, view);
+      controller.refresh();
 
       // Initialize view (constructor may already set visible)
       view.setVisible(true);
 
+      if (loadError != null) {
+        JOptionPane.showMessageDialog(view, "Saved transactions could not be loaded, changes will not be saved: " + loadError,
+            "Error", JOptionPane.ERROR_MESSAGE);
+      }
+
       // Handle add transaction button clicks with descriptive feedback
       view.getAddTransactionBtn().addActionListener(e -> {
         try {
@@ -84,13 +122,46 @@ public class ExpenseTrackerApp {
       });
 
       // Adding an action listener to the "Export CSV" button
+      // The export runs in the background so the UI stays responsive
       view.addExportToCSVListener(e -> {
         String filename = view.getExportFilenameFromUser();
         if (filename != null) {
-          controller.exportTransactionsListToCsv(filename);
+          controller.exportTransactionsListToCsvInBackground(filename);
+        }
+      });
+
+      // Add action listener to the "Import From CSV" button
+      view.addImportFromCSVListener(e -> {
+        String filename = view.getImportFilenameFromUser();
+        if (filename != null) {
+          controller.importTransactionsFromCsv(filename);
         }
       });
 
+      // Add action listener to the "Cancel Export" button
+      view.addCancelExportListener(e -> controller.cancelExport());
+
     });
   }
+
+  /**
+   * Loads the journal into the model and closes it when the JVM exits.
+   *
+   * @return null if the journal was opened, otherwise why it could not be
+   */
+  private static String openJournal(ExpenseTrackerModel model) {
+    try {
+      TransactionJournal journal = TransactionJournal.open(Paths.get(JOURNAL_DIRECTORY), model);
+      Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+        try {
+          journal.close();
+        } catch (IOException ex) {
+          ex.printStackTrace();
+        }
+      }));
+      return null;
+    } catch (IOException | IllegalArgumentException ex) {
+      return ex.getMessage();
+    }
+  }
 }
@@ -0,0 +1,133 @@
+package controller;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+
+import javax.swing.SwingWorker;
+
+import metrics.Counter;
+import metrics.LatencyTimer;
+import metrics.MetricsRegistry;
+import model.TransactionSnapshot;
+import view.ExpenseTrackerView;
+
+/**
+ * Runs a CSV export on a background thread so the Event Dispatch Thread stays
+ * free. The export reads from a snapshot taken when the worker was created, so
+ * transactions can keep being added and filtered while it runs. Progress and
+ * throughput are shown through the view, and the final status is reported with
+ * displayExportStatusMessage.
+ *
+ * The rows are written to a temporary file in the same directory, which is
+ * renamed over the target only once it is complete, so a failed or cancelled
+ * export never touches the target file. Cancel through requestCancel(), which
+ * lets the export stop and remove its temporary file before done() runs;
+ * isFinished() stays false until then.
+ */
+public class CsvExportWorker extends SwingWorker<Integer, String> {
+
+  private static final double BYTES_PER_MB = 1024.0 * 1024.0;
+  // The same metrics as the controller's exports
+  private static final LatencyTimer EXPORT_TIMER = MetricsRegistry.getDefault().timer("controller.exportCsv");
+  private static final Counter EXPORTED_ROWS = MetricsRegistry.getDefault().counter("controller.exportCsv.rows");
+  private static final Counter FAILED_EXPORTS = MetricsRegistry.getDefault().counter("controller.exportCsv.failed");
+
+  private final TransactionSnapshot snapshot;
+  private final Path path;
+  private final ExpenseTrackerView view;
+  private final long startNanos;
+  private volatile boolean cancelRequested;
+  // Set on the Event Dispatch Thread once done() has reported the result
+  private boolean finished;
+
+  public CsvExportWorker(TransactionSnapshot snapshot, Path path, ExpenseTrackerView view) {
+    this.snapshot = snapshot;
+    this.path = path;
+    this.view = view;
+    this.startNanos = System.nanoTime();
+  }
+
+  /**
+   * Asks the export to stop at its next progress update. The target file is
+   * left as it was unless the export had already completed.
+   */
+  public void requestCancel() {
+    cancelRequested = true;
+  }
+
+  /**
+   * Returns true once the export has stopped and its result has been shown.
+   */
+  public boolean isFinished() {
+    return finished;
+  }
+
+  @Override
+  protected Integer doInBackground() throws IOException {
+    long start = EXPORT_TIMER.start();
+    Path directory = path.toAbsolutePath().getParent();
+    Path temporary = Files.createTempFile(directory, path.getFileName().toString(), ".tmp");
+    boolean committed = false;
+    try {
+      int rows = new CsvExporter().export(snapshot, temporary, (rowsWritten, totalRows, bytesWritten) -> {
+        if (cancelRequested || isCancelled()) {
+          return false;
+        }
+        double seconds = Math.max(1e-9, (System.nanoTime() - startNanos) / 1e9);
+        setProgress(totalRows == 0 ? 100 : (int) (100L * rowsWritten / totalRows));
+        publish(String.format("%,d of %,d rows (%,.0f rows/s, %.1f MB/s)",
+            rowsWritten, totalRows, rowsWritten / seconds, bytesWritten / BYTES_PER_MB / seconds));
+        return true;
+      });
+      try {
+        Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING);
+      }
+      committed = true;
+      EXPORTED_ROWS.add(rows);
+      EXPORT_TIMER.stop(start);
+      return rows;
+    } finally {
+      if (!committed) {
+        // Only the temporary file is ours to delete
+        Files.deleteIfExists(temporary);
+      }
+    }
+  }
+
+  @Override
+  protected void process(List<String> statuses) {
+    // Only the latest status is worth showing
+    view.showExportProgress(getProgress(), statuses.get(statuses.size() - 1));
+  }
+
+  @Override
+  protected void done() {
+    view.hideExportProgress();
+    String filename = path.getFileName().toString();
+    try {
+      get();
+      view.displayExportStatusMessage("File" + filename + "Exported Successfully");
+    } catch (CancellationException e) {
+      view.displayExportStatusMessage("CSV File Export Cancelled");
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof CancellationException) {
+        view.displayExportStatusMessage("CSV File Export Cancelled");
+      } else {
+        FAILED_EXPORTS.increment();
+        view.displayExportStatusMessage("CSV File Export Failed" + e.getCause().getMessage());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    finished = true;
+  }
+
+}
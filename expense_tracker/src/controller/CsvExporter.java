@@ -0,0 +1,213 @@
+package controller;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+
+import model.TransactionRows;
+
+/**
+ * Writes the transactions of a model, or of a snapshot of it, to a CSV file
+ * in the Date,Amount,Category format.
+ *
+ * Rows are read straight from the model's columns and encoded into a reusable
+ * direct buffer that is written out whenever it fills up, so the
+ * memory used stays the same however many rows are exported. Amounts are
+ * formatted by hand instead of with String.format, and the quoted bytes of each
+ * category and the formatted bytes of the current minute are cached.
+ */
+public class CsvExporter {
+
+  public static final String HEADER = "Date,Amount,Category";
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+  private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("dd-MM-yyyy HH:mm");
+  private static final long MILLIS_PER_MINUTE = 60_000L;
+  // How many rows are written between two progress updates
+  private static final int PROGRESS_INTERVAL = 1 << 16;
+
+  /**
+   * Receives progress updates while an export runs.
+   */
+  public interface Progress {
+
+    /**
+     * Called every few thousand rows and once at the end.
+     *
+     * @return false to cancel the export
+     */
+    public boolean update(int rowsWritten, int totalRows, long bytesWritten);
+
+  }
+
+  private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+  private final ZoneId zone = ZoneId.systemDefault();
+  private final Map<String, byte[]> quotedCategories = new HashMap<>();
+  // Scratch space for the digits of an amount
+  private final byte[] digits = new byte[24];
+
+  private long cachedMinute = Long.MIN_VALUE;
+  private byte[] cachedDate;
+  private long bytesWritten;
+
+  /**
+   * Exports every transaction to the file, replacing its contents.
+   *
+   * @return The number of transactions written
+   */
+  public int export(TransactionRows transactions, Path path) throws IOException {
+    return export(transactions, path, null);
+  }
+
+  /**
+   * Exports every transaction to the file, replacing its contents, and reports
+   * progress along the way.
+   *
+   * @param progress Receives progress updates, or null
+   * @return The number of transactions written
+   * @throws CancellationException If the progress callback cancelled the export
+   */
+  public int export(TransactionRows transactions, Path path, Progress progress) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+      return export(transactions, channel, progress);
+    }
+  }
+
+  /**
+   * Exports every transaction to an open channel, e.g. a network connection,
+   * and reports progress along the way. The channel is left open.
+   *
+   * @param progress Receives progress updates, or null
+   * @return The number of transactions written
+   * @throws CancellationException If the progress callback cancelled the export
+   */
+  public int export(TransactionRows transactions, WritableByteChannel channel, Progress progress) throws IOException {
+    buffer.clear();
+    bytesWritten = 0;
+    put(channel, (HEADER + "\n").getBytes(StandardCharsets.UTF_8));
+    int count = transactions.getTransactionCount();
+    for (int row = 0; row < count; row++) {
+      put(channel, dateBytes(transactions.getEpochMillis(row)));
+      put(channel, (byte) ',');
+      putAmount(channel, transactions.getAmount(row));
+      put(channel, (byte) ',');
+      put(channel, quotedCategory(transactions.getCategory(row)));
+      put(channel, (byte) '\n');
+      if (progress != null && (row + 1) % PROGRESS_INTERVAL == 0
+          && !progress.update(row + 1, count, bytesWritten + buffer.position())) {
+        throw new CancellationException("The export was cancelled.");
+      }
+    }
+    flush(channel);
+    if (progress != null) {
+      progress.update(count, count, bytesWritten);
+    }
+    return count;
+  }
+
+  /**
+   * Quotes a string for a CSV field, doubling any quotes inside it.
+   */
+  public static String quote(String str) {
+    if (str == null) {
+      return "\"\"";
+    }
+    return "\"" + str.replace("\"", "\"\"") + "\"";
+  }
+
+  /**
+   * Formats an amount with two decimals, rounding half up like String.format("%.2f").
+   * Writes into the given array from the end and returns the index of the first character.
+   */
+  static int formatAmount(double amount, byte[] out) {
+    boolean negative = amount < 0;
+    double magnitude = Math.abs(amount);
+    long cents = Math.round(magnitude * 100);
+    // magnitude * 100 can round the wrong way, so decide against the exact halfway points
+    if (magnitude < (cents - 0.5) / 100) {
+      cents--;
+    } else if (magnitude >= (cents + 0.5) / 100) {
+      cents++;
+    }
+    int position = out.length;
+    out[--position] = (byte) ('0' + cents % 10);
+    out[--position] = (byte) ('0' + cents / 10 % 10);
+    out[--position] = '.';
+    long whole = cents / 100;
+    do {
+      out[--position] = (byte) ('0' + whole % 10);
+      whole /= 10;
+    } while (whole > 0);
+    if (negative && cents != 0) {
+      out[--position] = '-';
+    }
+    return position;
+  }
+
+  private byte[] dateBytes(long epochMillis) {
+    long minute = Math.floorDiv(epochMillis, MILLIS_PER_MINUTE);
+    if (minute != cachedMinute) {
+      LocalDateTime date = LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), zone);
+      cachedDate = date.format(DATE_FORMATTER).getBytes(StandardCharsets.UTF_8);
+      cachedMinute = minute;
+    }
+    return cachedDate;
+  }
+
+  private byte[] quotedCategory(String category) {
+    byte[] quoted = quotedCategories.get(category);
+    if (quoted == null) {
+      quoted = quote(category).getBytes(StandardCharsets.UTF_8);
+      quotedCategories.put(category, quoted);
+    }
+    return quoted;
+  }
+
+  private void putAmount(WritableByteChannel channel, double amount) throws IOException {
+    int start = formatAmount(amount, digits);
+    ensureRoom(channel, digits.length - start);
+    buffer.put(digits, start, digits.length - start);
+  }
+
+  private void put(WritableByteChannel channel, byte[] bytes) throws IOException {
+    int offset = 0;
+    while (offset < bytes.length) {
+      ensureRoom(channel, 1);
+      int length = Math.min(buffer.remaining(), bytes.length - offset);
+      buffer.put(bytes, offset, length);
+      offset += length;
+    }
+  }
+
+  private void put(WritableByteChannel channel, byte b) throws IOException {
+    ensureRoom(channel, 1);
+    buffer.put(b);
+  }
+
+  private void ensureRoom(WritableByteChannel channel, int bytes) throws IOException {
+    if (buffer.remaining() < bytes) {
+      flush(channel);
+    }
+  }
+
+  private void flush(WritableByteChannel channel) throws IOException {
+    buffer.flip();
+    while (buffer.hasRemaining()) {
+      bytesWritten += channel.write(buffer);
+    }
+    buffer.clear();
+  }
+
+}
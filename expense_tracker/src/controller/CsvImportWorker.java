@@ -0,0 +1,65 @@
+package controller;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutionException;
+
+import javax.swing.SwingUtilities;
+import javax.swing.SwingWorker;
+
+import model.ExpenseTrackerModel;
+import view.ExpenseTrackerView;
+
+/**
+ * Runs a CSV import on a background thread so the Event Dispatch Thread stays
+ * free while the file is read and parsed. Each parsed chunk is appended to the
+ * model on the Event Dispatch Thread, in file order, and the worker waits for
+ * the append before passing on the next chunk, so the model is only touched
+ * on that thread and parsed rows never pile up. The view picks up the new rows
+ * through the model's change events, and the final status is reported with
+ * displayImportStatusMessage.
+ */
+public class CsvImportWorker extends SwingWorker<CsvImporter.Result, Void> {
+
+  private final ExpenseTrackerModel model;
+  private final Path path;
+  private final ExpenseTrackerView view;
+
+  public CsvImportWorker(ExpenseTrackerModel model, Path path, ExpenseTrackerView view) {
+    this.model = model;
+    this.path = path;
+    this.view = view;
+  }
+
+  @Override
+  protected CsvImporter.Result doInBackground() throws IOException {
+    return new CsvImporter().importInto((amounts, categories, epochMillis, count) -> {
+      try {
+        SwingUtilities.invokeAndWait(() -> model.appendRows(amounts, categories, epochMillis, count));
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IOException("The import was interrupted.", e);
+      } catch (InvocationTargetException e) {
+        throw new IOException("The rows could not be added.", e.getCause());
+      }
+    }, path);
+  }
+
+  @Override
+  protected void done() {
+    try {
+      CsvImporter.Result result = get();
+      String message = "Imported " + result.getImported() + " transactions from " + path;
+      if (result.getRejected() > 0) {
+        message += " (" + result.getRejected() + " invalid lines skipped)";
+      }
+      view.displayImportStatusMessage(message);
+    } catch (ExecutionException e) {
+      view.displayImportStatusMessage("CSV File Import Failed " + e.getCause().getMessage());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+}
@@ -0,0 +1,433 @@
+package controller;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import model.ExpenseTrackerModel;
+
+/**
+ * Loads transactions from a CSV file in the Date,Amount,Category format
+ * written by CsvExporter.
+ *
+ * The file is memory-mapped and split into chunks at line boundaries, and the
+ * chunks are parsed in parallel by a hand-written tokenizer that reads the
+ * bytes directly: dates and amounts are parsed without creating Strings, and
+ * each distinct category is decoded and validated only once per chunk. Rows
+ * are checked with the InputValidation rules; invalid rows are skipped and
+ * counted. Each parsed chunk is appended as one batch, in file order, as
+ * soon as it and the chunks before it are parsed, and only a few chunks are
+ * parsed ahead of the one being appended, so the whole file is never held
+ * in memory as parsed rows.
+ */
+public class CsvImporter {
+
+  // Files smaller than this are parsed on the calling thread
+  private static final long MIN_PARALLEL_BYTES = 1 << 20;
+  // Upper bound for one chunk, which bounds both the rows held while they wait
+  // to be appended and the length of a single append
+  private static final long MAX_CHUNK_BYTES = 1L << 23;
+  private static final int MAX_CACHED_CATEGORIES = 64;
+
+  /**
+   * The outcome of an import.
+   */
+  public static final class Result {
+    private final int imported;
+    private final int rejected;
+
+    Result(int imported, int rejected) {
+      this.imported = imported;
+      this.rejected = rejected;
+    }
+
+    /**
+     * @return The number of transactions added to the model
+     */
+    public int getImported() {
+      return imported;
+    }
+
+    /**
+     * @return The number of lines skipped because they were not valid transactions
+     */
+    public int getRejected() {
+      return rejected;
+    }
+  }
+
+  /**
+   * Receives the parsed rows one chunk at a time, in file order.
+   */
+  public interface RowSink {
+
+    /**
+     * @param count The number of rows to take from the front of the arrays
+     */
+    public void append(double[] amounts, String[] categories, long[] epochMillis, int count) throws IOException;
+
+  }
+
+  private final int parallelism;
+
+  public CsvImporter() {
+    this(Runtime.getRuntime().availableProcessors());
+  }
+
+  public CsvImporter(int parallelism) {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("The parallelism must be at least 1.");
+    }
+    this.parallelism = parallelism;
+  }
+
+  /**
+   * Adds every valid transaction in the file to the model.
+   */
+  public Result importInto(ExpenseTrackerModel model, Path path) throws IOException {
+    return importInto(model::appendRows, path);
+  }
+
+  /**
+   * Passes every valid transaction in the file to the sink, one parsed chunk
+   * at a time, on the calling thread.
+   */
+  public Result importInto(RowSink sink, Path path) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      long size = channel.size();
+      long[] boundaries = chunkBoundaries(channel, size);
+      int chunkCount = boundaries.length - 1;
+      if (chunkCount == 1) {
+        ParsedChunk chunk = parseChunk(channel, 0, size, true);
+        sink.append(chunk.amounts, chunk.categories, chunk.timestamps, chunk.size);
+        return new Result(chunk.size, chunk.rejected);
+      }
+
+      int threads = Math.min(parallelism, chunkCount);
+      ExecutorService executor = Executors.newFixedThreadPool(threads);
+      try {
+        // The chunks being parsed, in file order. One more than there are threads
+        // keeps every thread busy while a chunk is appended.
+        Deque<Future<ParsedChunk>> pending = new ArrayDeque<>();
+        int next = 0;
+        int imported = 0;
+        int rejected = 0;
+        while (next < chunkCount || !pending.isEmpty()) {
+          while (next < chunkCount && pending.size() <= threads) {
+            final long start = boundaries[next];
+            final long end = boundaries[next + 1];
+            final boolean first = next == 0;
+            pending.add(executor.submit(() -> parseChunk(channel, start, end, first)));
+            next++;
+          }
+          ParsedChunk chunk = pending.remove().get();
+          sink.append(chunk.amounts, chunk.categories, chunk.timestamps, chunk.size);
+          imported += chunk.size;
+          rejected += chunk.rejected;
+        }
+        return new Result(imported, rejected);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IOException("The import was interrupted.", e);
+      } catch (ExecutionException e) {
+        if (e.getCause() instanceof IOException) {
+          throw (IOException) e.getCause();
+        }
+        throw new IOException("The import failed.", e.getCause());
+      } finally {
+        executor.shutdownNow();
+      }
+    }
+  }
+
+  // Splits the file into chunks that each start at the beginning of a line
+  private long[] chunkBoundaries(FileChannel channel, long size) throws IOException {
+    int chunkCount = 1;
+    if (size >= MIN_PARALLEL_BYTES) {
+      chunkCount = (int) Math.max(parallelism, (size + MAX_CHUNK_BYTES - 1) / MAX_CHUNK_BYTES);
+    }
+    long[] boundaries = new long[chunkCount + 1];
+    boundaries[chunkCount] = size;
+    ByteBuffer probe = ByteBuffer.allocate(4096);
+    for (int i = 1; i < chunkCount; i++) {
+      long position = Math.max(boundaries[i - 1], size / chunkCount * i);
+      boundaries[i] = nextLineStart(channel, position, size, probe);
+    }
+    return boundaries;
+  }
+
+  private static long nextLineStart(FileChannel channel, long position, long size, ByteBuffer probe) throws IOException {
+    while (position < size) {
+      probe.clear();
+      int read = channel.read(probe, position);
+      if (read <= 0) {
+        break;
+      }
+      for (int i = 0; i < read; i++) {
+        if (probe.get(i) == '\n') {
+          return position + i + 1;
+        }
+      }
+      position += read;
+    }
+    return size;
+  }
+
+  private static ParsedChunk parseChunk(FileChannel channel, long start, long end, boolean first) throws IOException {
+    ParsedChunk chunk = new ParsedChunk();
+    if (end > start) {
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+      new ChunkParser(buffer, chunk).parse(first);
+    }
+    return chunk;
+  }
+
+  /**
+   * The rows parsed from one chunk of the file, in columnar form.
+   */
+  private static final class ParsedChunk {
+    double[] amounts = new double[1024];
+    String[] categories = new String[1024];
+    long[] timestamps = new long[1024];
+    int size;
+    int rejected;
+
+    void add(double amount, String category, long timestamp) {
+      if (size == amounts.length) {
+        int capacity = size * 2;
+        amounts = Arrays.copyOf(amounts, capacity);
+        categories = Arrays.copyOf(categories, capacity);
+        timestamps = Arrays.copyOf(timestamps, capacity);
+      }
+      amounts[size] = amount;
+      categories[size] = category;
+      timestamps[size] = timestamp;
+      size++;
+    }
+  }
+
+  /**
+   * Tokenizer for one chunk. Not thread safe; each chunk gets its own.
+   */
+  private static final class ChunkParser {
+    private static final long[] POWERS_OF_TEN = {
+      1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L, 10000000L, 100000000L,
+      1000000000L, 10000000000L, 100000000000L, 1000000000000L, 10000000000000L,
+      100000000000000L, 1000000000000000L
+    };
+    private static final byte[] HEADER_BYTES = CsvExporter.HEADER.getBytes(StandardCharsets.US_ASCII);
+
+    private final ByteBuffer buffer;
+    private final ParsedChunk chunk;
+    private final ZoneId zone = ZoneId.systemDefault();
+
+    // Categories seen so far: their raw bytes and the validated String, or null if invalid
+    private final List<byte[]> categoryBytes = new ArrayList<>();
+    private final List<String> categoryValues = new ArrayList<>();
+
+    // Epoch millis of the last minute parsed, keyed by yyyyMMddHHmm
+    private long cachedMinuteKey = -1;
+    private long cachedMinuteMillis;
+
+    ChunkParser(ByteBuffer buffer, ParsedChunk chunk) {
+      this.buffer = buffer;
+      this.chunk = chunk;
+    }
+
+    void parse(boolean firstChunk) {
+      int limit = buffer.limit();
+      int position = 0;
+      boolean firstLine = firstChunk;
+      while (position < limit) {
+        int lineEnd = position;
+        while (lineEnd < limit && buffer.get(lineEnd) != '\n') {
+          lineEnd++;
+        }
+        int contentEnd = lineEnd;
+        if (contentEnd > position && buffer.get(contentEnd - 1) == '\r') {
+          contentEnd--;
+        }
+        if (contentEnd > position && !(firstLine && isHeader(position, contentEnd))) {
+          if (!parseLine(position, contentEnd)) {
+            chunk.rejected++;
+          }
+        }
+        firstLine = false;
+        position = lineEnd + 1;
+      }
+    }
+
+    private boolean isHeader(int start, int end) {
+      return matches(HEADER_BYTES, start, end - start);
+    }
+
+    private boolean parseLine(int start, int end) {
+      int firstComma = indexOf(',', start, end);
+      int secondComma = firstComma < 0 ? -1 : indexOf(',', firstComma + 1, end);
+      if (secondComma < 0) {
+        return false;
+      }
+      long timestamp = parseDate(start, firstComma);
+      if (timestamp == Long.MIN_VALUE) {
+        return false;
+      }
+      double amount = parseAmount(firstComma + 1, secondComma);
+      if (Double.isNaN(amount) || !InputValidation.isValidAmount(amount)) {
+        return false;
+      }
+      String category = parseCategory(secondComma + 1, end);
+      if (category == null) {
+        return false;
+      }
+      chunk.add(amount, category, timestamp);
+      return true;
+    }
+
+    private int indexOf(char c, int start, int end) {
+      for (int i = start; i < end; i++) {
+        if (buffer.get(i) == c) {
+          return i;
+        }
+      }
+      return -1;
+    }
+
+    // Parses "dd-MM-yyyy HH:mm", returning Long.MIN_VALUE if the field is not a valid date
+    private long parseDate(int start, int end) {
+      if (end - start != 16 || buffer.get(start + 2) != '-' || buffer.get(start + 5) != '-'
+          || buffer.get(start + 10) != ' ' || buffer.get(start + 13) != ':') {
+        return Long.MIN_VALUE;
+      }
+      int day = digits(start, 2);
+      int month = digits(start + 3, 2);
+      int year = digits(start + 6, 4);
+      int hour = digits(start + 11, 2);
+      int minute = digits(start + 14, 2);
+      if (day < 0 || month < 0 || year < 0 || hour < 0 || minute < 0) {
+        return Long.MIN_VALUE;
+      }
+      long key = (((year * 100L + month) * 100L + day) * 100L + hour) * 100L + minute;
+      if (key != cachedMinuteKey) {
+        try {
+          cachedMinuteMillis = LocalDateTime.of(year, month, day, hour, minute).atZone(zone).toInstant().toEpochMilli();
+        } catch (RuntimeException e) {
+          // e.g. 31-02-2025
+          return Long.MIN_VALUE;
+        }
+        cachedMinuteKey = key;
+      }
+      return cachedMinuteMillis;
+    }
+
+    private int digits(int start, int count) {
+      int value = 0;
+      for (int i = start; i < start + count; i++) {
+        int digit = buffer.get(i) - '0';
+        if (digit < 0 || digit > 9) {
+          return -1;
+        }
+        value = value * 10 + digit;
+      }
+      return value;
+    }
+
+    // Parses a plain decimal such as 100 or 100.25, returning NaN if the field is not a number
+    private double parseAmount(int start, int end) {
+      long mantissa = 0;
+      int digitCount = 0;
+      int fractionDigits = -1;
+      for (int i = start; i < end; i++) {
+        byte b = buffer.get(i);
+        if (b >= '0' && b <= '9') {
+          if (++digitCount > 15) {
+            return parseAmountSlowly(start, end);
+          }
+          mantissa = mantissa * 10 + (b - '0');
+          if (fractionDigits >= 0) {
+            fractionDigits++;
+          }
+        } else if (b == '.' && fractionDigits < 0) {
+          fractionDigits = 0;
+        } else {
+          return parseAmountSlowly(start, end);
+        }
+      }
+      if (digitCount == 0) {
+        return Double.NaN;
+      }
+      // With at most 15 digits both operands are exact doubles, so the division
+      // is correctly rounded, giving the same result as Double.parseDouble
+      return fractionDigits <= 0 ? mantissa : mantissa / (double) POWERS_OF_TEN[fractionDigits];
+    }
+
+    // Handles the rare forms the fast path does not, such as exponents or a sign
+    private double parseAmountSlowly(int start, int end) {
+      try {
+        return Double.parseDouble(decode(start, end).trim());
+      } catch (NumberFormatException e) {
+        return Double.NaN;
+      }
+    }
+
+    // Returns the validated category, or null if it is not valid
+    private String parseCategory(int start, int end) {
+      if (end - start >= 2 && buffer.get(start) == '"' && buffer.get(end - 1) == '"') {
+        start++;
+        end--;
+      }
+      int length = end - start;
+      for (int i = 0; i < categoryBytes.size(); i++) {
+        if (matches(categoryBytes.get(i), start, length)) {
+          return categoryValues.get(i);
+        }
+      }
+      String category = decode(start, end);
+      String valid = InputValidation.isValidCategory(category) ? category : null;
+      if (categoryBytes.size() < MAX_CACHED_CATEGORIES) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+          bytes[i] = buffer.get(start + i);
+        }
+        categoryBytes.add(bytes);
+        categoryValues.add(valid);
+      }
+      return valid;
+    }
+
+    private boolean matches(byte[] bytes, int start, int length) {
+      if (bytes.length != length) {
+        return false;
+      }
+      for (int i = 0; i < length; i++) {
+        if (bytes[i] != buffer.get(start + i)) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    private String decode(int start, int end) {
+      byte[] bytes = new byte[end - start];
+      for (int i = 0; i < bytes.length; i++) {
+        bytes[i] = buffer.get(start + i);
+      }
+      return new String(bytes, StandardCharsets.UTF_8);
+    }
+  }
+
+}
@@ -2,23 +2,35 @@ package controller;
 
 import view.ExpenseTrackerView;
 
-import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 //
-import java.io.BufferedWriter;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.PrintWriter;
 
 import javax.swing.JOptionPane;
+import javax.swing.SwingUtilities;
 
+import metrics.Counter;
+import metrics.Gauge;
+import metrics.LatencyTimer;
+import metrics.MetricsRegistry;
 import model.ExpenseTrackerModel;
 import model.Transaction;
+import model.TransactionChangeEvent;
 import model.Filter.TransactionFilter;
 
+/**
+ * Connects the Swing view to an ExpenseTrackerService: runs the operations the
+ * user asks for through the service and shows their results in the view.
+ * The controller and its service are confined to the Event Dispatch Thread.
+ * Changes the controller did not make, e.g. the chunks a background import
+ * hands to the Event Dispatch Thread, reach the view as one coalesced update
+ * per repaint window.
+ */
 public class ExpenseTrackerController {
   
+  private final ExpenseTrackerService service;
   private ExpenseTrackerModel model;
   private ExpenseTrackerView view;
   /** 
@@ -27,10 +39,39 @@ public class ExpenseTrackerController {
    * being used in the applyFilter method.
    */
   private TransactionFilter filter;
+  // The export running in the background, if any
+  private CsvExportWorker exportWorker;
+  // The import running in the background, if any
+  private CsvImportWorker importWorker;
+  // The model version the view shows, so changes the controller has already shown are not shown again
+  private long shownVersion;
+
+  // Changes are collected for about one frame at 60 Hz, so the view repaints at most once per frame
+  private static final long REPAINT_WINDOW_MILLIS = 16;
+
+  // Shared by every controller, so all of them report under the same names
+  private static final MetricsRegistry METRICS = MetricsRegistry.getDefault();
+  private static final LatencyTimer ADD_TIMER = METRICS.timer("controller.addTransaction");
+  private static final Counter REJECTED_ADDS = METRICS.counter("controller.addTransaction.rejected");
+  private static final LatencyTimer FILTER_TIMER = METRICS.timer("controller.applyFilter");
+  private static final LatencyTimer EXPORT_TIMER = METRICS.timer("controller.exportCsv");
+  private static final Counter EXPORTED_ROWS = METRICS.counter("controller.exportCsv.rows");
+  private static final Counter FAILED_EXPORTS = METRICS.counter("controller.exportCsv.failed");
+  private static final Gauge TRANSACTION_COUNT = METRICS.gauge("model.transactions");
 
   public ExpenseTrackerController(ExpenseTrackerModel model, ExpenseTrackerView view) {
-    this.model = model;
+    this(new ExpenseTrackerService(model), view);
+  }
+
+  public ExpenseTrackerController(ExpenseTrackerService service, ExpenseTrackerView view) {
+    this.service = service;
+    this.model = service.getModel();
     this.view = view;
+    service.addChangeListener(this::modelChanged, REPAINT_WINDOW_MILLIS, SwingUtilities::invokeLater);
+  }
+
+  public ExpenseTrackerService getService() {
+    return service;
   }
 
   /**
@@ -44,21 +85,45 @@ public class ExpenseTrackerController {
 
   public void refresh() {
     List<Transaction> transactions = model.getTransactions();
-    view.refreshTable(transactions);
+    // The model keeps a running total, so the view does not have to sum the list
+    view.refreshTable(transactions, model.getTotalCost());
+    markShown();
   }
 
   public boolean addTransaction(double amount, String category) {
-    if (!InputValidation.isValidAmount(amount)) {
+    return addTransactionWithMessage(amount, category) == null;
+  }
+
+  /**
+   * Adds a batch of transactions and updates the view once for all of them.
+   * The model checks the whole batch first, so nothing is added if any of
+   * the transactions is rejected.
+   *
+   * @return true if all of the transactions were added
+   */
+  public boolean addTransactions(Collection<Transaction> transactions) {
+    try {
+      service.addTransactions(transactions);
+    } catch (IllegalArgumentException e) {
       return false;
     }
-    if (!InputValidation.isValidCategory(category)) {
+    view.transactionsAdded(model.getTransactions(), transactions.size(), model.getTotalCost());
+    markShown();
+    return true;
+  }
+
+  /**
+   * Removes a transaction, deleting only its row from the table.
+   *
+   * @return true if the transaction was held by the model
+   */
+  public boolean removeTransaction(Transaction t) {
+    int row = model.getRowOf(t.getId());
+    if (!service.removeTransaction(t)) {
       return false;
     }
-    
-    Transaction t = new Transaction(amount, category);
-    model.addTransaction(t);
-    view.getTableModel().addRow(new Object[]{t.getAmount(), t.getCategory(), t.getTimestamp()});
-    refresh();
+    view.transactionRemoved(model.getTransactions(), row, t);
+    markShown();
     return true;
   }
 
@@ -67,23 +132,18 @@ public class ExpenseTrackerController {
    * Returns null when the add was successful.
    */
   public String addTransactionWithMessage(double amount, String category) {
-    if (!InputValidation.isValidAmount(amount)) {
-      return "Amount must be > 0 and <= 1000";
-    }
-    if (!InputValidation.isValidCategory(category)) {
-      return "Category must be one of: food, travel, bills, entertainment, other";
-    }
-
+    long start = ADD_TIMER.start();
+    Transaction t;
     try {
-      Transaction t = new Transaction(amount, category);
-      model.addTransaction(t);
-      view.getTableModel().addRow(new Object[]{t.getAmount(), t.getCategory(), t.getTimestamp()});
-      refresh();
-      return null;
+      t = service.addTransaction(amount, category);
     } catch (IllegalArgumentException ex) {
-      // Return the constructor's message if validation inside Transaction fails
+      REJECTED_ADDS.increment();
       return ex.getMessage();
     }
+    view.transactionAdded(model.getTransactions(), t);
+    markShown();
+    ADD_TIMER.stop(start);
+    return null;
   }
 
   /**
@@ -92,18 +152,32 @@ public class ExpenseTrackerController {
    * NOTE) This is applying the Strategy design pattern. This is the core method using the strategy helper method.
    */
   public void applyFilter() {
-    List<Transaction> filteredTransactions;
+    long start = FILTER_TIMER.start();
     // If no filter is specified, show all transactions.
     if (filter == null) {
-      filteredTransactions = model.getTransactions();
-    }
-    // If a filter is specified, show only the transactions accepted by that filter.
-    else {
+      refresh();
+    } else {
+      // If a filter is specified, show only the transactions accepted by that filter.
       // Use the Strategy class to perform the desired filtering
-      List<Transaction> transactions = model.getTransactions();
-      filteredTransactions = filter.filter(transactions);
+      List<Transaction> filteredTransactions = service.filter(filter);
+      view.displayFilteredTransactions(filteredTransactions);
+      markShown();
+    }
+    FILTER_TIMER.stop(start);
+  }
+
+  // Records that the view now shows the model as it is
+  private void markShown() {
+    shownVersion = model.getVersion();
+    TRANSACTION_COUNT.set(model.getTransactionCount());
+  }
+
+  // Called on the Event Dispatch Thread at most once per repaint window. Shows the
+  // changes the controller has not pushed to the view itself, e.g. from another writer.
+  private void modelChanged(TransactionChangeEvent event) {
+    if (event.getVersion() > shownVersion) {
+      applyFilter();
     }
-    view.displayFilteredTransactions(filteredTransactions);
   }
 
   /**
@@ -115,49 +189,85 @@ public class ExpenseTrackerController {
       view.displayExportStatusMessage("Invalid file name. Please provide a valid .csv name.");
       return;
     }
-    List<Transaction> transactions = model.getTransactions();
-    String content = generateCsvContent(transactions);
-    try (PrintWriter writer = new PrintWriter(new BufferedWriter(new FileWriter(filename)))) {
-      writer.print(content);
+    long start = EXPORT_TIMER.start();
+    try {
+      EXPORTED_ROWS.add(service.exportToCsv(filename));
+      EXPORT_TIMER.stop(start);
       view.displayExportStatusMessage("File" + filename + "Exported Successfully");
     } catch (IOException e) {
+      FAILED_EXPORTS.increment();
       view.displayExportStatusMessage("CSV File Export Failed" + e.getMessage());
     }
   }
 
   /**
-   * To validate the provided csv file name.
+   * To export all transactions to a CSV file on a background thread, so the
+   * user can keep working while a large file is written. The export covers
+   * the transactions present when it starts. The status message is shown
+   * once it completes.
+   *
+   * @return false if the file name is invalid or another export is still running
    */
-  public boolean isValidCsvFilename(String fileName) {
-
-    if (fileName == null) {
+  public boolean exportTransactionsListToCsvInBackground(String filename) {
+    if (!isValidCsvFilename(filename)) {
+      view.displayExportStatusMessage("Invalid file name. Please provide a valid .csv name.");
       return false;
     }
-
-    String trimmedFileName = fileName.trim();
-    if (trimmedFileName.isEmpty()) {
+    // isDone() turns true as soon as a worker is cancelled, so wait for it to report instead
+    if (exportWorker != null && !exportWorker.isFinished()) {
+      view.displayExportStatusMessage("An export is already running. Please wait for it to finish.");
       return false;
     }
-    if (!trimmedFileName.matches("[A-Za-z0-9 _\\-\\.]+")) {
-      return false;
+    exportWorker = new CsvExportWorker(model.snapshot(), InputValidation.toCsvPath(filename), view);
+    view.showExportProgress(0, "Starting export...");
+    exportWorker.execute();
+    return true;
+  }
+
+  /**
+   * Cancels the export running in the background, if any. The target file
+   * is left as it was unless the export had already completed.
+   */
+  public void cancelExport() {
+    if (exportWorker != null) {
+      exportWorker.requestCancel();
     }
-    if (trimmedFileName.contains("/") || trimmedFileName.contains("\\") || trimmedFileName.contains("..")) {
+  }
+
+  /**
+   * Adds the transactions stored in a CSV file (in the format written by the
+   * export) to the model, keeping their original dates. Invalid lines are
+   * skipped. The file is read and parsed on a background thread, and the
+   * status message is shown once the import completes.
+   *
+   * @return false if the file name is invalid or another import is still running
+   */
+  public boolean importTransactionsFromCsv(String filename) {
+    if (!isValidCsvFilename(filename)) {
+      view.displayImportStatusMessage("Invalid file name. Please provide a valid .csv name.");
       return false;
     }
-
-    String convertFileNameToLowercaseString = trimmedFileName.toLowerCase();
-    if (!convertFileNameToLowercaseString.endsWith(".csv")) {
+    if (importWorker != null && !importWorker.isDone()) {
+      view.displayImportStatusMessage("An import is already running. Please wait for it to finish.");
       return false;
     }
-   
+    importWorker = new CsvImportWorker(model, InputValidation.toCsvPath(filename), view);
+    importWorker.execute();
     return true;
   }
 
+  /**
+   * To validate the provided csv file name.
+   */
+  public boolean isValidCsvFilename(String fileName) {
+    return InputValidation.isValidCsvFilename(fileName);
+  }
+
   /**
    * To generate content from the provided transactions list to add .
    */
   public String generateCsvContent(List<Transaction> transactions) {
-    StringBuilder stringBuilder = new StringBuilder("Date,Amount,Category" + "\n");
+    StringBuilder stringBuilder = new StringBuilder(CsvExporter.HEADER + "\n");
     for (Transaction t : transactions) {
       String date = t.getTimestamp();
       String convertAmountToString = String.format("%.2f", t.getAmount());
@@ -172,11 +282,7 @@ public class ExpenseTrackerController {
    */
   public String formatStringForCSV(String str) {
 
-    if (str == null) {
-      return "\"\"";
-    }
-
-    return "\"" + str.replace("\"", "\"\"") + "\"";
+    return CsvExporter.quote(str);
   }
     
 }
@@ -0,0 +1,248 @@
+package controller;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import model.Category;
+import model.CoalescingChangeListener;
+import model.ConcurrentTransactionModel;
+import model.ExpenseTrackerModel;
+import model.Transaction;
+import model.TransactionChangeListener;
+import model.TransactionVersion;
+import model.Filter.QueryPlanner;
+import model.Filter.TransactionFilter;
+import model.Filter.TransactionPredicate;
+
+/**
+ * The operations of the expense tracker, without any user interface: adding,
+ * removing, filtering, exporting and importing transactions. Every caller goes
+ * through the service: the ExpenseTrackerController, which shows the results
+ * in the view, the ExpenseTrackerServer, tests and other headless callers.
+ *
+ * The threading contract depends on the model behind the service:
+ * <ul>
+ * <li>Over an ExpenseTrackerModel the service is confined to the thread that
+ * owns the model, the Event Dispatch Thread in the app, and only that thread
+ * may call it. Other threads hand their work to the owner, e.g. with
+ * SwingUtilities.invokeAndWait as the CsvImportWorker does for each chunk.
+ * Consumers learn about changes through TransactionChangeListeners; one that
+ * only needs to catch up now and then, like the view, registers with a time
+ * window and receives one coalesced event per window.</li>
+ * <li>Over a ConcurrentTransactionModel the service is thread-safe: any thread
+ * may call it, writers take turns and reads work on the latest published
+ * TransactionVersion without waiting. There are no change events.</li>
+ * </ul>
+ */
+public class ExpenseTrackerService {
+
+  // Exactly one of these is set
+  private final ExpenseTrackerModel model;
+  private final ConcurrentTransactionModel shared;
+
+  /**
+   * Creates a service confined to the thread that owns the model.
+   */
+  public ExpenseTrackerService(ExpenseTrackerModel model) {
+    if (model == null) {
+      throw new IllegalArgumentException("Invalid model");
+    }
+    this.model = model;
+    this.shared = null;
+  }
+
+  /**
+   * Creates a service that any thread may call.
+   */
+  public ExpenseTrackerService(ConcurrentTransactionModel model) {
+    if (model == null) {
+      throw new IllegalArgumentException("Invalid model");
+    }
+    this.model = null;
+    this.shared = model;
+  }
+
+  /**
+   * @return true if any thread may call the service
+   */
+  public boolean isThreadSafe() {
+    return shared != null;
+  }
+
+  /**
+   * @throws IllegalStateException If the service is over a ConcurrentTransactionModel
+   */
+  public ExpenseTrackerModel getModel() {
+    if (model == null) {
+      throw new IllegalStateException("The service is over a ConcurrentTransactionModel");
+    }
+    return model;
+  }
+
+  /**
+   * Returns the latest published version. Never blocks.
+   *
+   * @throws IllegalStateException If the service is over an ExpenseTrackerModel
+   */
+  public TransactionVersion currentVersion() {
+    if (shared == null) {
+      throw new IllegalStateException("The service is over an ExpenseTrackerModel");
+    }
+    return shared.currentVersion();
+  }
+
+  /**
+   * Calls the listener after every change to the transactions.
+   */
+  public void addChangeListener(TransactionChangeListener listener) {
+    getModel().addChangeListener(listener);
+  }
+
+  /**
+   * Calls the listener at most once per window, through the given executor,
+   * with all the changes made during the window coalesced into one event.
+   *
+   * @return The listener that was registered, to pass to removeChangeListener
+   */
+  public CoalescingChangeListener addChangeListener(TransactionChangeListener listener, long windowMillis,
+      Executor delivery) {
+    CoalescingChangeListener coalescing = new CoalescingChangeListener(listener, windowMillis, delivery);
+    getModel().addChangeListener(coalescing);
+    return coalescing;
+  }
+
+  public void removeChangeListener(TransactionChangeListener listener) {
+    getModel().removeChangeListener(listener);
+  }
+
+  /**
+   * Validates and adds a transaction dated now.
+   *
+   * @return The transaction that was added
+   * @throws IllegalArgumentException With a message for the user if the amount or category is invalid
+   */
+  public Transaction addTransaction(double amount, String category) {
+    // Validated once here; the Transaction trusts the record
+    Transaction t = new Transaction(validate(amount, category));
+    add(t);
+    return t;
+  }
+
+  /**
+   * Validates and adds a transaction with the given date.
+   *
+   * @return The transaction that was added
+   * @throws IllegalArgumentException With a message for the user if the amount or category is invalid
+   */
+  public Transaction addTransaction(double amount, String category, long epochMillis) {
+    Transaction t = new Transaction(validate(amount, category), epochMillis);
+    add(t);
+    return t;
+  }
+
+  /**
+   * Adds a batch of transactions. The model checks the whole batch first, so
+   * nothing is added if any of the transactions is rejected.
+   *
+   * @throws IllegalArgumentException If any of the transactions is rejected
+   */
+  public void addTransactions(Collection<Transaction> transactions) {
+    if (shared != null) {
+      shared.addTransactions(transactions);
+    } else {
+      model.addTransactions(transactions);
+    }
+  }
+
+  /**
+   * @return true if the transaction was held by the model
+   */
+  public boolean removeTransaction(Transaction t) {
+    return shared != null ? shared.removeTransactionById(t.getId()) : model.removeTransaction(t);
+  }
+
+  /**
+   * @return true if the model held a transaction with that id
+   */
+  public boolean removeTransactionById(long id) {
+    return shared != null ? shared.removeTransactionById(id) : model.removeTransactionById(id);
+  }
+
+  /**
+   * Returns the transactions accepted by the filter, or all of them if the
+   * filter is null.
+   */
+  public List<Transaction> filter(TransactionFilter filter) {
+    if (shared == null) {
+      return filter == null ? model.getTransactions() : filter.filter(model);
+    }
+    // One version answers the whole query
+    TransactionVersion version = shared.currentVersion();
+    if (filter == null) {
+      return version.getTransactions();
+    }
+    if (filter instanceof TransactionPredicate) {
+      return version.getTransactions(QueryPlanner.matchingRows((TransactionPredicate) filter, version));
+    }
+    return filter.filter(version.getTransactions());
+  }
+
+  /**
+   * Writes every transaction to the named CSV file.
+   *
+   * @return The number of transactions written
+   * @throws IllegalArgumentException If the file name is not a valid CSV file name
+   */
+  public int exportToCsv(String filename) throws IOException {
+    Path path = InputValidation.toCsvPath(filename);
+    // Stream the rows to the file instead of building the whole file in memory first
+    return new CsvExporter().export(shared != null ? shared.currentVersion() : model, path);
+  }
+
+  /**
+   * Adds the transactions stored in the named CSV file (in the format written
+   * by the export), keeping their original dates. Invalid lines are skipped.
+   *
+   * @throws IllegalArgumentException If the file name is not a valid CSV file name
+   */
+  public CsvImporter.Result importFromCsv(String filename) throws IOException {
+    Path path = InputValidation.toCsvPath(filename);
+    if (shared == null) {
+      return new CsvImporter().importInto(model, path);
+    }
+    // Each chunk is published as one version. The importer has validated the
+    // rows, so they only need their Category looked up.
+    return new CsvImporter().importInto((amounts, categories, epochMillis, count) -> {
+      List<Transaction> chunk = new ArrayList<>(count);
+      for (int i = 0; i < count; i++) {
+        ValidatedRecord record = new ValidatedRecord(amounts[i], Category.lookup(categories[i]));
+        chunk.add(new Transaction(record, epochMillis[i]));
+      }
+      shared.addTransactions(chunk);
+    }, path);
+  }
+
+  private void add(Transaction t) {
+    if (shared != null) {
+      shared.addTransaction(t);
+    } else {
+      model.addTransaction(t);
+    }
+  }
+
+  private static ValidatedRecord validate(double amount, String category) {
+    ValidatedRecord record = InputValidation.validateRecord(amount, category);
+    if (record == null) {
+      if (!InputValidation.isValidAmount(amount)) {
+        throw new IllegalArgumentException("Amount must be > 0 and <= 1000");
+      }
+      throw new IllegalArgumentException("Category must be one of: food, travel, bills, entertainment, other");
+    }
+    return record;
+  }
+
+}
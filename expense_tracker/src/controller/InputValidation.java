@@ -1,7 +1,14 @@
 package controller;
 
-import java.util.Arrays;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 
+import model.Category;
+
+/**
+ * Checks user input. Every check is hand-rolled over the characters of its
+ * input, so validating allocates nothing and never compiles a regex.
+ */
 public class InputValidation {
 
   public static boolean isValidAmount(double amount) {
@@ -16,32 +23,88 @@ public class InputValidation {
     if (amount == 0){
       return false;
     }
+    // NaN fails every comparison above
+    if (Double.isNaN(amount)) {
+      return false;
+    }
     return true;
   }
 
   public static boolean isValidCategory(String category) {
+    // The registry matches the allowed words ignoring case, without a regex or allocation
+    return Category.lookup(category) != null;
+  }
 
-    if(category == null) {
-      return false; 
+  /**
+   * Validates the values of a transaction once, for the controller to build the
+   * Transaction from without checking them again.
+   *
+   * @return The validated record, or null if the amount or category is not valid
+   */
+  public static ValidatedRecord validateRecord(double amount, String category) {
+    if (!isValidAmount(amount)) {
+      return null;
     }
-  
-    if(category.trim().isEmpty()) {
-      return false;
+    return validateRecord(amount, Category.lookup(category));
+  }
+
+  /**
+   * Returns the record of a valid amount in a known Category, or null if
+   * either is invalid.
+   */
+  public static ValidatedRecord validateRecord(double amount, Category category) {
+    if (!isValidAmount(amount) || category == null) {
+      return null;
     }
+    return new ValidatedRecord(amount, category);
+  }
 
-    if(!category.matches("[a-zA-Z]+")) {
+  /**
+   * A valid CSV file name holds only letters, digits, spaces, '_', '-' and '.',
+   * with no "..", and ends in ".csv" in any case. Surrounding whitespace is ignored.
+   */
+  public static boolean isValidCsvFilename(String fileName) {
+    if (fileName == null) {
       return false;
     }
+    // The bounds of the trimmed name, found without creating a trimmed copy
+    int start = 0;
+    int end = fileName.length();
+    while (start < end && fileName.charAt(start) <= ' ') {
+      start++;
+    }
+    while (end > start && fileName.charAt(end - 1) <= ' ') {
+      end--;
+    }
+    for (int i = start; i < end; i++) {
+      char c = fileName.charAt(i);
+      if (!isFilenameChar(c)) {
+        return false;
+      }
+      if (c == '.' && i > start && fileName.charAt(i - 1) == '.') {
+        return false;
+      }
+    }
+    return end - start >= 4 && fileName.regionMatches(true, end - 4, ".csv", 0, 4);
+  }
 
-    String[] validWords = {"food", "travel", "bills", "entertainment", "other"};
-
-    if(!Arrays.asList(validWords).contains(category.toLowerCase())) {
-      // invalid word  
-      return false;
+  /**
+   * Returns the file a valid CSV file name refers to, with the surrounding
+   * whitespace removed, so an export and an import of the same name use the
+   * same file.
+   *
+   * @throws IllegalArgumentException If the name is not a valid CSV file name
+   */
+  public static Path toCsvPath(String fileName) {
+    if (!isValidCsvFilename(fileName)) {
+      throw new IllegalArgumentException("Invalid file name. Please provide a valid .csv name.");
     }
-  
-    return true;
-  
+    return Paths.get(fileName.trim());
+  }
+
+  private static boolean isFilenameChar(char c) {
+    return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+        || c == ' ' || c == '_' || c == '-' || c == '.';
   }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,38 @@
+package controller;
+
+import model.Category;
+
+/**
+ * The amount and category of a transaction that have passed InputValidation.
+ * Only InputValidation creates these, so a Transaction built from one does not
+ * check its values again and each record is validated exactly once.
+ */
+public final class ValidatedRecord {
+
+  private final double amount;
+  private final Category category;
+
+  ValidatedRecord(double amount, Category category) {
+    this.amount = amount;
+    this.category = category;
+  }
+
+  public double getAmount() {
+    return amount;
+  }
+
+  /**
+   * Returns the lowercase word of the Category the entered category matched.
+   */
+  public String getCategory() {
+    return category.getWord();
+  }
+
+  /**
+   * Returns the Category the entered category matched.
+   */
+  public Category getCategoryValue() {
+    return category;
+  }
+
+}
@@ -0,0 +1,29 @@
+package metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A count that only goes up, such as rejected inputs or exported rows. Threads
+ * add to separate cells of a LongAdder, so counting does not contend.
+ */
+public class Counter implements CounterMXBean {
+
+  private final LongAdder count = new LongAdder();
+
+  Counter() {
+  }
+
+  public void increment() {
+    count.increment();
+  }
+
+  public void add(long amount) {
+    count.add(amount);
+  }
+
+  @Override
+  public long getCount() {
+    return count.sum();
+  }
+
+}
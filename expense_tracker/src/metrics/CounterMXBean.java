@@ -0,0 +1,10 @@
+package metrics;
+
+/**
+ * The JMX view of a Counter.
+ */
+public interface CounterMXBean {
+
+  public long getCount();
+
+}
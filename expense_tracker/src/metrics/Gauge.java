@@ -0,0 +1,24 @@
+package metrics;
+
+/**
+ * The latest value of something, such as the number of transactions. The
+ * owner sets the value from its own thread, so reading it from JMX or the log
+ * dump never touches objects that are not thread-safe.
+ */
+public class Gauge implements GaugeMXBean {
+
+  private volatile long value;
+
+  Gauge() {
+  }
+
+  public void set(long value) {
+    this.value = value;
+  }
+
+  @Override
+  public long getValue() {
+    return value;
+  }
+
+}
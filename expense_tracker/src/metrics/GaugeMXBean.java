@@ -0,0 +1,10 @@
+package metrics;
+
+/**
+ * The JMX view of a Gauge.
+ */
+public interface GaugeMXBean {
+
+  public long getValue();
+
+}
@@ -0,0 +1,118 @@
+package metrics;
+
+import java.util.Arrays;
+
+/**
+ * Counts recorded values, such as latencies in nanoseconds, in log-linear
+ * buckets in the style of HdrHistogram: each power of two is split into 64
+ * buckets, so a percentile is reported within about 1.5% of the recorded value
+ * and recording is an array increment. Values up to about 73 minutes in
+ * nanoseconds are tracked; larger ones are counted as that maximum.
+ *
+ * A histogram is not thread-safe.
+ */
+public class LatencyHistogram {
+
+  private static final int SUB_BUCKET_BITS = 6;
+  private static final int SUB_BUCKET_HALF = 1 << SUB_BUCKET_BITS;
+  private static final long MAX_TRACKABLE = (1L << 42) - 1;
+  private static final int BUCKETS = indexOf(MAX_TRACKABLE) + 1;
+
+  private final long[] counts = new long[BUCKETS];
+  private long count;
+  private long sum;
+  private long min = Long.MAX_VALUE;
+  private long max;
+
+  /**
+   * Records a value; negative values are recorded as 0.
+   */
+  public void record(long value) {
+    long clamped = Math.min(Math.max(value, 0), MAX_TRACKABLE);
+    counts[indexOf(clamped)]++;
+    count++;
+    sum += clamped;
+    min = Math.min(min, clamped);
+    max = Math.max(max, clamped);
+  }
+
+  /**
+   * Adds every value recorded by the other histogram to this one.
+   */
+  public void add(LatencyHistogram other) {
+    for (int i = 0; i < BUCKETS; i++) {
+      counts[i] += other.counts[i];
+    }
+    count += other.count;
+    sum += other.sum;
+    min = Math.min(min, other.min);
+    max = Math.max(max, other.max);
+  }
+
+  public void reset() {
+    Arrays.fill(counts, 0);
+    count = 0;
+    sum = 0;
+    min = Long.MAX_VALUE;
+    max = 0;
+  }
+
+  public long getCount() {
+    return count;
+  }
+
+  /**
+   * Returns the smallest recorded value, or 0 if nothing was recorded.
+   */
+  public long getMin() {
+    return count == 0 ? 0 : min;
+  }
+
+  public long getMax() {
+    return max;
+  }
+
+  public double getMean() {
+    return count == 0 ? 0 : (double) sum / count;
+  }
+
+  /**
+   * Returns the value that the given percentage of the recorded values are at
+   * or below, as the highest value of its bucket, or 0 if nothing was recorded.
+   *
+   * @param percentile Between 0 and 100
+   */
+  public long getValueAtPercentile(double percentile) {
+    if (percentile < 0 || percentile > 100 || Double.isNaN(percentile)) {
+      throw new IllegalArgumentException("Invalid percentile");
+    }
+    if (count == 0) {
+      return 0;
+    }
+    long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += counts[i];
+      if (seen >= rank) {
+        return Math.min(Math.max(highestValueOf(i), min), max);
+      }
+    }
+    return max;
+  }
+
+  // Values below 128 get a bucket each; above that, the top 7 bits pick the bucket
+  private static int indexOf(long value) {
+    int shift = Math.max(0, 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS);
+    return (shift << SUB_BUCKET_BITS) + (int) (value >>> shift);
+  }
+
+  private static long highestValueOf(int index) {
+    if (index < 2 * SUB_BUCKET_HALF) {
+      return index;
+    }
+    int shift = (index >> SUB_BUCKET_BITS) - 1;
+    long subBucket = (index & (SUB_BUCKET_HALF - 1)) + SUB_BUCKET_HALF;
+    return ((subBucket + 1) << shift) - 1;
+  }
+
+}
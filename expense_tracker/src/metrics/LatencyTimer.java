@@ -0,0 +1,114 @@
+package metrics;
+
+/**
+ * Records how long an operation takes into a latency histogram:
+ *
+ * <pre>
+ * long start = timer.start();
+ * ... the operation ...
+ * timer.stop(start);
+ * </pre>
+ *
+ * Like a LongAdder, the histogram is striped: each thread records into one of
+ * several histograms picked by its id, each with its own lock, so threads
+ * rarely wait for each other, and the stripes are only merged when the timer
+ * is read. When the registry is disabled, start() does not read the clock and
+ * stop() records nothing.
+ */
+public class LatencyTimer implements LatencyTimerMXBean {
+
+  private static final long DISABLED = Long.MIN_VALUE;
+  private static final int MAX_STRIPES = 16;
+  private static final double NANOS_PER_MICRO = 1e3;
+
+  private final MetricsRegistry registry;
+  private final LatencyHistogram[] stripes;
+
+  LatencyTimer(MetricsRegistry registry) {
+    this.registry = registry;
+    int processors = Runtime.getRuntime().availableProcessors();
+    // A power of two, so a stripe is picked with a mask
+    int count = Math.min(MAX_STRIPES, Integer.highestOneBit(Math.max(1, processors - 1)) << 1);
+    stripes = new LatencyHistogram[count];
+    for (int i = 0; i < count; i++) {
+      stripes[i] = new LatencyHistogram();
+    }
+  }
+
+  /**
+   * Returns the start time to pass to stop().
+   */
+  public long start() {
+    return registry.isEnabled() ? System.nanoTime() : DISABLED;
+  }
+
+  /**
+   * Records the time since the given start().
+   */
+  public void stop(long start) {
+    if (start != DISABLED) {
+      record(System.nanoTime() - start);
+    }
+  }
+
+  /**
+   * Records a latency in nanoseconds.
+   */
+  public void record(long nanos) {
+    // Spread consecutive thread ids over the stripes
+    long id = Thread.currentThread().getId() * 0x9E3779B97F4A7C15L;
+    LatencyHistogram stripe = stripes[(int) (id >>> 32) & (stripes.length - 1)];
+    synchronized (stripe) {
+      stripe.record(nanos);
+    }
+  }
+
+  /**
+   * Returns a copy of every latency recorded so far.
+   */
+  public LatencyHistogram snapshot() {
+    LatencyHistogram merged = new LatencyHistogram();
+    for (LatencyHistogram stripe : stripes) {
+      synchronized (stripe) {
+        merged.add(stripe);
+      }
+    }
+    return merged;
+  }
+
+  @Override
+  public long getCount() {
+    return snapshot().getCount();
+  }
+
+  @Override
+  public double getMeanMicros() {
+    return snapshot().getMean() / NANOS_PER_MICRO;
+  }
+
+  @Override
+  public double getP50Micros() {
+    return snapshot().getValueAtPercentile(50) / NANOS_PER_MICRO;
+  }
+
+  @Override
+  public double getP90Micros() {
+    return snapshot().getValueAtPercentile(90) / NANOS_PER_MICRO;
+  }
+
+  @Override
+  public double getP99Micros() {
+    return snapshot().getValueAtPercentile(99) / NANOS_PER_MICRO;
+  }
+
+  @Override
+  public double getP999Micros() {
+    return snapshot().getValueAtPercentile(99.9) / NANOS_PER_MICRO;
+  }
+
+  @Override
+  public double getMaxMicros() {
+    return snapshot().getMax() / NANOS_PER_MICRO;
+  }
+
+}
@@ -0,0 +1,22 @@
+package metrics;
+
+/**
+ * The JMX view of a LatencyTimer, with latencies in microseconds.
+ */
+public interface LatencyTimerMXBean {
+
+  public long getCount();
+
+  public double getMeanMicros();
+
+  public double getP50Micros();
+
+  public double getP90Micros();
+
+  public double getP99Micros();
+
+  public double getP999Micros();
+
+  public double getMaxMicros();
+
+}
@@ -0,0 +1,155 @@
+package metrics;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Holds the app's named counters, gauges and latency timers. A metric is
+ * created the first time its name is asked for, and the same object is
+ * returned afterwards. The registry can publish its metrics as JMX MXBeans
+ * under the "expensetracker" domain and write them all to the log periodically.
+ */
+public class MetricsRegistry {
+
+  private static final String JMX_DOMAIN = "expensetracker";
+  private static final MetricsRegistry DEFAULT = new MetricsRegistry();
+  private static final Logger LOG = Logger.getLogger(MetricsRegistry.class.getName());
+
+  // Sorted, so the log dump lists metrics in a stable order
+  private final Map<String, Counter> counters = new ConcurrentSkipListMap<>();
+  private final Map<String, Gauge> gauges = new ConcurrentSkipListMap<>();
+  private final Map<String, LatencyTimer> timers = new ConcurrentSkipListMap<>();
+  private volatile boolean enabled = true;
+  private MBeanServer server;
+  private ScheduledExecutorService logDumper;
+
+  /**
+   * Returns the registry that the controller and view record into.
+   */
+  public static MetricsRegistry getDefault() {
+    return DEFAULT;
+  }
+
+  public Counter counter(String name) {
+    return getOrCreate(counters, name, "Counter", Counter::new);
+  }
+
+  public Gauge gauge(String name) {
+    return getOrCreate(gauges, name, "Gauge", Gauge::new);
+  }
+
+  public LatencyTimer timer(String name) {
+    return getOrCreate(timers, name, "Timer", () -> new LatencyTimer(this));
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Turns the timers on or off. Counters and gauges are always kept.
+   */
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  /**
+   * Registers every metric, and every metric created from now on, with the
+   * given MBeanServer, e.g. ManagementFactory.getPlatformMBeanServer().
+   */
+  public synchronized void registerMBeans(MBeanServer server) throws JMException {
+    if (this.server != null) {
+      throw new IllegalStateException("Metrics are already registered with an MBeanServer");
+    }
+    for (Map.Entry<String, Counter> entry : counters.entrySet()) {
+      server.registerMBean(entry.getValue(), objectName("Counter", entry.getKey()));
+    }
+    for (Map.Entry<String, Gauge> entry : gauges.entrySet()) {
+      server.registerMBean(entry.getValue(), objectName("Gauge", entry.getKey()));
+    }
+    for (Map.Entry<String, LatencyTimer> entry : timers.entrySet()) {
+      server.registerMBean(entry.getValue(), objectName("Timer", entry.getKey()));
+    }
+    this.server = server;
+  }
+
+  /**
+   * Writes dump() to the log at INFO level at the given interval, on a daemon
+   * thread, until the returned future is cancelled.
+   */
+  public synchronized ScheduledFuture<?> startLogDump(long period, TimeUnit unit) {
+    if (period <= 0) {
+      throw new IllegalArgumentException("Invalid log dump period");
+    }
+    if (logDumper == null) {
+      logDumper = Executors.newSingleThreadScheduledExecutor(task -> {
+        Thread thread = new Thread(task, "metrics-log-dump");
+        thread.setDaemon(true);
+        return thread;
+      });
+    }
+    return logDumper.scheduleAtFixedRate(() -> LOG.info(dump()), period, period, unit);
+  }
+
+  /**
+   * Returns every metric as text, one per line, with latencies in microseconds.
+   */
+  public String dump() {
+    StringBuilder dump = new StringBuilder("Metrics:");
+    for (Map.Entry<String, Counter> entry : counters.entrySet()) {
+      dump.append(String.format(Locale.ROOT, "%n  %s %d", entry.getKey(), entry.getValue().getCount()));
+    }
+    for (Map.Entry<String, Gauge> entry : gauges.entrySet()) {
+      dump.append(String.format(Locale.ROOT, "%n  %s %d", entry.getKey(), entry.getValue().getValue()));
+    }
+    for (Map.Entry<String, LatencyTimer> entry : timers.entrySet()) {
+      LatencyHistogram latencies = entry.getValue().snapshot();
+      dump.append(String.format(Locale.ROOT, "%n  %s count=%d mean=%.1f p50=%.1f p99=%.1f p99.9=%.1f max=%.1f",
+          entry.getKey(), latencies.getCount(), latencies.getMean() / 1e3,
+          latencies.getValueAtPercentile(50) / 1e3, latencies.getValueAtPercentile(99) / 1e3,
+          latencies.getValueAtPercentile(99.9) / 1e3, latencies.getMax() / 1e3));
+    }
+    return dump.toString();
+  }
+
+  private <T> T getOrCreate(Map<String, T> metrics, String name, String type, Supplier<T> factory) {
+    if (name == null || name.isEmpty()) {
+      throw new IllegalArgumentException("Invalid metric name");
+    }
+    T metric = metrics.get(name);
+    if (metric != null) {
+      return metric;
+    }
+    synchronized (this) {
+      metric = metrics.get(name);
+      if (metric == null) {
+        metric = factory.get();
+        if (server != null) {
+          try {
+            server.registerMBean(metric, objectName(type, name));
+          } catch (JMException e) {
+            throw new IllegalStateException("Metric " + name + " could not be registered", e);
+          }
+        }
+        metrics.put(name, metric);
+      }
+      return metric;
+    }
+  }
+
+  private static ObjectName objectName(String type, String name) throws JMException {
+    return new ObjectName(JMX_DOMAIN + ":type=" + type + ",name=" + ObjectName.quote(name));
+  }
+
+}
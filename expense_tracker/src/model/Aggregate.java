@@ -0,0 +1,131 @@
+package model;
+
+/**
+ * Running count, sum, minimum and maximum of a set of transaction amounts.
+ *
+ * The model keeps one Aggregate for all of its transactions and one per
+ * category, and updates them as transactions are added and removed, so the
+ * totals can be read in O(1). The sum is Kahan-compensated, so adding and
+ * removing millions of amounts does not let rounding errors accumulate.
+ * Instances returned by the model are copies and never change.
+ */
+public final class Aggregate {
+
+  private long count;
+  private double sum;
+  // Running compensation for the low-order bits lost from sum
+  private double compensation;
+  private double min = Double.POSITIVE_INFINITY;
+  private double max = Double.NEGATIVE_INFINITY;
+  // Removing the current minimum or maximum leaves them unknown until recomputed
+  private boolean minMaxValid = true;
+
+  Aggregate() {
+  }
+
+  private Aggregate(Aggregate other) {
+    count = other.count;
+    sum = other.sum;
+    compensation = other.compensation;
+    min = other.min;
+    max = other.max;
+    minMaxValid = other.minMaxValid;
+  }
+
+  public long getCount() {
+    return count;
+  }
+
+  public double getSum() {
+    return sum;
+  }
+
+  /**
+   * @return The average amount, or 0 if there are no transactions
+   */
+  public double getAverage() {
+    return count == 0 ? 0.0 : sum / count;
+  }
+
+  /**
+   * @return The smallest amount, or NaN if there are no transactions
+   */
+  public double getMin() {
+    return count == 0 ? Double.NaN : min;
+  }
+
+  /**
+   * @return The largest amount, or NaN if there are no transactions
+   */
+  public double getMax() {
+    return count == 0 ? Double.NaN : max;
+  }
+
+  void add(double amount) {
+    count++;
+    addToSum(amount);
+    if (minMaxValid) {
+      min = Math.min(min, amount);
+      max = Math.max(max, amount);
+    }
+  }
+
+  void remove(double amount) {
+    count--;
+    if (count == 0) {
+      // Start again from an exact zero
+      sum = 0;
+      compensation = 0;
+      resetMinMax();
+      minMaxValid = true;
+      return;
+    }
+    addToSum(-amount);
+    if (amount <= min || amount >= max) {
+      minMaxValid = false;
+    }
+  }
+
+  /**
+   * Adds the totals of another aggregate to this one.
+   */
+  void merge(Aggregate other) {
+    count += other.count;
+    addToSum(other.sum);
+    addToSum(-other.compensation);
+    min = Math.min(min, other.min);
+    max = Math.max(max, other.max);
+    minMaxValid &= other.minMaxValid;
+  }
+
+  boolean isMinMaxValid() {
+    return minMaxValid;
+  }
+
+  /**
+   * Starts recomputing the minimum and maximum; follow with includeInMinMax for every amount.
+   */
+  void resetMinMax() {
+    min = Double.POSITIVE_INFINITY;
+    max = Double.NEGATIVE_INFINITY;
+    minMaxValid = true;
+  }
+
+  void includeInMinMax(double amount) {
+    min = Math.min(min, amount);
+    max = Math.max(max, amount);
+  }
+
+  Aggregate copy() {
+    return new Aggregate(this);
+  }
+
+  // Kahan summation
+  private void addToSum(double value) {
+    double y = value - compensation;
+    double t = sum + y;
+    compensation = (t - sum) - y;
+    sum = t;
+  }
+
+}
@@ -0,0 +1,537 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Sorted index from amount to row: a B+tree keyed by (amount, row), with the
+ * keys of every node kept in parallel primitive arrays. Each inner node also
+ * keeps the number of entries under each of its children, so the entries in
+ * an amount range are counted in O(log n) without visiting them.
+ *
+ * Adding and removing an entry are O(log n). A range query finds its k
+ * matches in O(log n + k) by walking the linked leaves, then sorts them back
+ * into row order in O(k log k). A leaf that runs empty is unlinked, but nodes
+ * are not merged, since the model rebuilds the index whenever it compacts.
+ */
+final class AmountIndex {
+
+  private static final int LEAF_CAPACITY = 128;
+  private static final int INNER_CAPACITY = 64;
+  // Bulk loads fill nodes to this fraction of their capacity, leaving room for later adds
+  private static final double LOAD_FACTOR = 0.75;
+
+  private Node root;
+  // The leftmost and rightmost leaves, which hold the smallest and largest amounts
+  private Leaf head;
+  private Leaf tail;
+  private int size;
+
+  AmountIndex() {
+    clear();
+  }
+
+  int size() {
+    return size;
+  }
+
+  void add(double amount, int row) {
+    Node sibling = insert(root, amount, row);
+    if (sibling != null) {
+      Inner newRoot = new Inner();
+      appendChild(newRoot, root);
+      appendChild(newRoot, sibling);
+      root = newRoot;
+    }
+    while (tail.next != null) {
+      tail = tail.next;
+    }
+    size++;
+  }
+
+  /**
+   * Removes the entry for a row in O(log n).
+   *
+   * @return false if the index holds no entry with that amount and row
+   */
+  boolean remove(double amount, int row) {
+    if (!delete(root, amount, row)) {
+      return false;
+    }
+    size--;
+    if (root.size == 0) {
+      clear();
+    }
+    while (root instanceof Inner && root.size == 1) {
+      root = ((Inner) root).children[0];
+    }
+    return true;
+  }
+
+  /**
+   * Adds the consecutive rows firstRow, firstRow + 1, ... with the given amounts.
+   * A batch that is large next to the index is sorted on its own and merged
+   * with the existing entries into a freshly built tree in a single pass,
+   * instead of being inserted one entry at a time.
+   */
+  void addAll(double[] amounts, int firstRow, int count) {
+    if (count < Math.max(LEAF_CAPACITY, size >>> 3)) {
+      for (int i = 0; i < count; i++) {
+        add(amounts[i], firstRow + i);
+      }
+      return;
+    }
+    double[] batchAmounts = Arrays.copyOf(amounts, count);
+    int[] batchRows = new int[count];
+    for (int i = 0; i < count; i++) {
+      batchRows[i] = firstRow + i;
+    }
+    sort(batchAmounts, batchRows, new double[count], new int[count], 0, count);
+
+    int mergedSize = size + count;
+    double[] mergedAmounts = new double[mergedSize];
+    int[] mergedRows = new int[mergedSize];
+    int j = 0;
+    int k = 0;
+    for (Leaf leaf = head; leaf != null; leaf = leaf.next) {
+      for (int i = 0; i < leaf.size; i++) {
+        while (j < count && compare(batchAmounts[j], batchRows[j], leaf.amounts[i], leaf.rows[i]) < 0) {
+          mergedAmounts[k] = batchAmounts[j];
+          mergedRows[k++] = batchRows[j++];
+        }
+        mergedAmounts[k] = leaf.amounts[i];
+        mergedRows[k++] = leaf.rows[i];
+      }
+    }
+    while (j < count) {
+      mergedAmounts[k] = batchAmounts[j];
+      mergedRows[k++] = batchRows[j++];
+    }
+    build(mergedAmounts, mergedRows, mergedSize);
+  }
+
+  /**
+   * Fills an empty index from rows that are already in ascending order of amount.
+   */
+  void load(int[] sortedRows, double[] amounts, int size) {
+    if (this.size > 0) {
+      throw new IllegalStateException("Only an empty index can be loaded.");
+    }
+    double[] sortedAmounts = new double[size];
+    for (int i = 0; i < size; i++) {
+      sortedAmounts[i] = amounts[sortedRows[i]];
+    }
+    build(sortedAmounts, Arrays.copyOf(sortedRows, size), size);
+  }
+
+  /**
+   * Renumbers the rows after the store has been compacted, dropping removed rows.
+   * The relative order of the remaining rows is unchanged, so the keys stay
+   * sorted and the tree is rebuilt from them in one pass.
+   */
+  void compact(int[] newRows) {
+    double[] amounts = new double[size];
+    int[] rows = new int[size];
+    int kept = 0;
+    for (Leaf leaf = head; leaf != null; leaf = leaf.next) {
+      for (int i = 0; i < leaf.size; i++) {
+        int row = newRows[leaf.rows[i]];
+        if (row >= 0) {
+          amounts[kept] = leaf.amounts[i];
+          rows[kept++] = row;
+        }
+      }
+    }
+    build(amounts, rows, kept);
+  }
+
+  /**
+   * Returns the rows whose amount lies in [min, max], in ascending row order.
+   */
+  int[] rowsBetween(double min, double max) {
+    int count = countBetween(min, max);
+    int[] rows = new int[count];
+    if (count == 0) {
+      return rows;
+    }
+    Node node = root;
+    while (node instanceof Inner) {
+      Inner inner = (Inner) node;
+      node = inner.children[childIndex(inner, min, -1)];
+    }
+    Leaf leaf = (Leaf) node;
+    int position = lowerBound(leaf, min, -1);
+    for (int k = 0; k < count; ) {
+      if (position == leaf.size) {
+        leaf = leaf.next;
+        position = 0;
+      } else {
+        rows[k++] = leaf.rows[position++];
+      }
+    }
+    Arrays.sort(rows);
+    return rows;
+  }
+
+  /**
+   * Counts the entries whose amount lies in [min, max] in O(log n).
+   */
+  int countBetween(double min, double max) {
+    return Math.max(0, rank(max, Integer.MAX_VALUE) - rank(min, -1));
+  }
+
+  /**
+   * @return The smallest indexed amount, or +Infinity if the index is empty
+   */
+  double minAmount() {
+    return size == 0 ? Double.POSITIVE_INFINITY : head.amounts[0];
+  }
+
+  /**
+   * @return The largest indexed amount, or -Infinity if the index is empty
+   */
+  double maxAmount() {
+    return size == 0 ? Double.NEGATIVE_INFINITY : tail.amounts[tail.size - 1];
+  }
+
+  private void clear() {
+    Leaf leaf = new Leaf();
+    root = leaf;
+    head = leaf;
+    tail = leaf;
+    size = 0;
+  }
+
+  // Replaces the contents with the given entries, which are in ascending key order
+  private void build(double[] amounts, int[] rows, int count) {
+    clear();
+    if (count == 0) {
+      return;
+    }
+    int perLeaf = (int) (LEAF_CAPACITY * LOAD_FACTOR);
+    List<Node> level = new ArrayList<>();
+    Leaf previous = null;
+    for (int from = 0; from < count; from += perLeaf) {
+      Leaf leaf = new Leaf();
+      leaf.size = Math.min(perLeaf, count - from);
+      System.arraycopy(amounts, from, leaf.amounts, 0, leaf.size);
+      System.arraycopy(rows, from, leaf.rows, 0, leaf.size);
+      if (previous == null) {
+        head = leaf;
+      } else {
+        previous.next = leaf;
+        leaf.previous = previous;
+      }
+      previous = leaf;
+      level.add(leaf);
+    }
+    tail = previous;
+    int perInner = (int) (INNER_CAPACITY * LOAD_FACTOR);
+    while (level.size() > 1) {
+      List<Node> parents = new ArrayList<>();
+      for (int from = 0; from < level.size(); from += perInner) {
+        Inner inner = new Inner();
+        for (int i = from; i < Math.min(level.size(), from + perInner); i++) {
+          appendChild(inner, level.get(i));
+        }
+        parents.add(inner);
+      }
+      level = parents;
+    }
+    root = level.get(0);
+    size = count;
+  }
+
+  // Adds the entry under the node, returning the node's new right sibling if it had to split
+  private Node insert(Node node, double amount, int row) {
+    if (node instanceof Leaf) {
+      Leaf leaf = (Leaf) node;
+      Leaf sibling = null;
+      if (leaf.size == LEAF_CAPACITY) {
+        sibling = splitLeaf(leaf);
+        if (compare(amount, row, sibling.amounts[0], sibling.rows[0]) >= 0) {
+          leaf = sibling;
+        }
+      }
+      int position = lowerBound(leaf, amount, row);
+      System.arraycopy(leaf.amounts, position, leaf.amounts, position + 1, leaf.size - position);
+      System.arraycopy(leaf.rows, position, leaf.rows, position + 1, leaf.size - position);
+      leaf.amounts[position] = amount;
+      leaf.rows[position] = row;
+      leaf.size++;
+      return sibling;
+    }
+    Inner inner = (Inner) node;
+    int index = childIndex(inner, amount, row);
+    Node split = insert(inner.children[index], amount, row);
+    inner.counts[index]++;
+    if (split == null) {
+      return null;
+    }
+    int moved = count(split);
+    inner.counts[index] -= moved;
+    Inner sibling = null;
+    if (inner.size == INNER_CAPACITY) {
+      sibling = splitInner(inner);
+      if (index >= inner.size) {
+        index -= inner.size;
+        inner = sibling;
+      }
+    }
+    insertChild(inner, index + 1, split, moved);
+    return sibling;
+  }
+
+  // Removes the entry under the node, returning false if it was not found
+  private boolean delete(Node node, double amount, int row) {
+    if (node instanceof Leaf) {
+      Leaf leaf = (Leaf) node;
+      int position = lowerBound(leaf, amount, row);
+      if (position == leaf.size || leaf.amounts[position] != amount || leaf.rows[position] != row) {
+        return false;
+      }
+      System.arraycopy(leaf.amounts, position + 1, leaf.amounts, position, leaf.size - position - 1);
+      System.arraycopy(leaf.rows, position + 1, leaf.rows, position, leaf.size - position - 1);
+      leaf.size--;
+      return true;
+    }
+    Inner inner = (Inner) node;
+    int index = childIndex(inner, amount, row);
+    Node child = inner.children[index];
+    if (!delete(child, amount, row)) {
+      return false;
+    }
+    inner.counts[index]--;
+    if (child.size == 0) {
+      if (child instanceof Leaf) {
+        unlink((Leaf) child);
+      }
+      removeChild(inner, index);
+    }
+    return true;
+  }
+
+  // The number of entries whose key is less than (amount, row)
+  private int rank(double amount, int row) {
+    int rank = 0;
+    Node node = root;
+    while (node instanceof Inner) {
+      Inner inner = (Inner) node;
+      int index = childIndex(inner, amount, row);
+      for (int i = 0; i < index; i++) {
+        rank += inner.counts[i];
+      }
+      node = inner.children[index];
+    }
+    return rank + lowerBound((Leaf) node, amount, row);
+  }
+
+  // Moves the upper half of a full leaf into a new leaf linked after it
+  private static Leaf splitLeaf(Leaf leaf) {
+    Leaf sibling = new Leaf();
+    int half = leaf.size / 2;
+    sibling.size = leaf.size - half;
+    System.arraycopy(leaf.amounts, half, sibling.amounts, 0, sibling.size);
+    System.arraycopy(leaf.rows, half, sibling.rows, 0, sibling.size);
+    leaf.size = half;
+    sibling.next = leaf.next;
+    sibling.previous = leaf;
+    if (leaf.next != null) {
+      leaf.next.previous = sibling;
+    }
+    leaf.next = sibling;
+    return sibling;
+  }
+
+  // Moves the upper half of a full inner node into a new node
+  private static Inner splitInner(Inner inner) {
+    Inner sibling = new Inner();
+    int half = inner.size / 2;
+    sibling.size = inner.size - half;
+    System.arraycopy(inner.children, half, sibling.children, 0, sibling.size);
+    System.arraycopy(inner.counts, half, sibling.counts, 0, sibling.size);
+    System.arraycopy(inner.amounts, half, sibling.amounts, 0, sibling.size);
+    System.arraycopy(inner.rows, half, sibling.rows, 0, sibling.size);
+    Arrays.fill(inner.children, half, inner.size, null);
+    inner.size = half;
+    return sibling;
+  }
+
+  private void unlink(Leaf leaf) {
+    if (leaf.previous == null) {
+      head = leaf.next;
+    } else {
+      leaf.previous.next = leaf.next;
+    }
+    if (leaf.next == null) {
+      tail = leaf.previous;
+    } else {
+      leaf.next.previous = leaf.previous;
+    }
+  }
+
+  private static void appendChild(Inner inner, Node child) {
+    insertChild(inner, inner.size, child, count(child));
+  }
+
+  // Inserts a child whose smallest key becomes its separator
+  private static void insertChild(Inner inner, int index, Node child, int count) {
+    int moved = inner.size - index;
+    System.arraycopy(inner.children, index, inner.children, index + 1, moved);
+    System.arraycopy(inner.counts, index, inner.counts, index + 1, moved);
+    System.arraycopy(inner.amounts, index, inner.amounts, index + 1, moved);
+    System.arraycopy(inner.rows, index, inner.rows, index + 1, moved);
+    inner.children[index] = child;
+    inner.counts[index] = count;
+    inner.amounts[index] = child.firstAmount();
+    inner.rows[index] = child.firstRow();
+    inner.size++;
+  }
+
+  private static void removeChild(Inner inner, int index) {
+    int moved = inner.size - index - 1;
+    System.arraycopy(inner.children, index + 1, inner.children, index, moved);
+    System.arraycopy(inner.counts, index + 1, inner.counts, index, moved);
+    System.arraycopy(inner.amounts, index + 1, inner.amounts, index, moved);
+    System.arraycopy(inner.rows, index + 1, inner.rows, index, moved);
+    inner.size--;
+    inner.children[inner.size] = null;
+  }
+
+  private static int count(Node node) {
+    if (node instanceof Leaf) {
+      return node.size;
+    }
+    Inner inner = (Inner) node;
+    int count = 0;
+    for (int i = 0; i < inner.size; i++) {
+      count += inner.counts[i];
+    }
+    return count;
+  }
+
+  // The last child whose separator is at most (amount, row), or the first child
+  private static int childIndex(Inner inner, double amount, int row) {
+    int low = 1;
+    int high = inner.size;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (compare(inner.amounts[mid], inner.rows[mid], amount, row) <= 0) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low - 1;
+  }
+
+  // First position in the leaf whose key is at least (amount, row)
+  private static int lowerBound(Leaf leaf, double amount, int row) {
+    int low = 0;
+    int high = leaf.size;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (compare(leaf.amounts[mid], leaf.rows[mid], amount, row) < 0) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  private static int compare(double amountA, int rowA, double amountB, int rowB) {
+    if (amountA < amountB) {
+      return -1;
+    }
+    if (amountA > amountB) {
+      return 1;
+    }
+    return Integer.compare(rowA, rowB);
+  }
+
+  // Stable merge sort of [from, to) by amount, so equal amounts keep ascending rows
+  private static void sort(double[] amounts, int[] rows, double[] tmpAmounts, int[] tmpRows, int from, int to) {
+    if (to - from < 2) {
+      return;
+    }
+    int middle = (from + to) >>> 1;
+    sort(amounts, rows, tmpAmounts, tmpRows, from, middle);
+    sort(amounts, rows, tmpAmounts, tmpRows, middle, to);
+    if (amounts[middle - 1] <= amounts[middle]) {
+      return;
+    }
+    System.arraycopy(amounts, from, tmpAmounts, from, to - from);
+    System.arraycopy(rows, from, tmpRows, from, to - from);
+    int i = from;
+    int j = middle;
+    for (int k = from; k < to; k++) {
+      if (j == to || (i < middle && tmpAmounts[i] <= tmpAmounts[j])) {
+        amounts[k] = tmpAmounts[i];
+        rows[k] = tmpRows[i++];
+      } else {
+        amounts[k] = tmpAmounts[j];
+        rows[k] = tmpRows[j++];
+      }
+    }
+  }
+
+  /**
+   * A node of the tree. size is the number of entries in a leaf and the
+   * number of children of an inner node.
+   */
+  private abstract static class Node {
+
+    int size;
+
+    abstract double firstAmount();
+
+    abstract int firstRow();
+
+  }
+
+  private static final class Leaf extends Node {
+
+    final double[] amounts = new double[LEAF_CAPACITY];
+    final int[] rows = new int[LEAF_CAPACITY];
+    Leaf previous;
+    Leaf next;
+
+    @Override
+    double firstAmount() {
+      return amounts[0];
+    }
+
+    @Override
+    int firstRow() {
+      return rows[0];
+    }
+
+  }
+
+  /**
+   * The key of each child is the smallest key it held when it was added, so
+   * every key under a child is at least its key and less than the next child's.
+   */
+  private static final class Inner extends Node {
+
+    final Node[] children = new Node[INNER_CAPACITY];
+    // The number of entries under each child
+    final int[] counts = new int[INNER_CAPACITY];
+    final double[] amounts = new double[INNER_CAPACITY];
+    final int[] rows = new int[INNER_CAPACITY];
+
+    @Override
+    double firstAmount() {
+      return amounts[0];
+    }
+
+    @Override
+    int firstRow() {
+      return rows[0];
+    }
+
+  }
+
+}
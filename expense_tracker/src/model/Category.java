@@ -0,0 +1,107 @@
+package model;
+
+/**
+ * The words a transaction's category may be, each with a small integer code.
+ * Transactions, the model's rows and the filters compare categories by code,
+ * so matching a category never compares strings.
+ *
+ * A category entered in any letter case, such as "Food", maps to the same
+ * category as its lowercase word. Transactions and the model keep only the
+ * Category, so they show every category as its lowercase word.
+ */
+public enum Category {
+
+  FOOD("food"),
+  TRAVEL("travel"),
+  BILLS("bills"),
+  ENTERTAINMENT("entertainment"),
+  OTHER("other");
+
+  private static final Category[] BY_CODE = values();
+
+  private final String word;
+
+  Category(String word) {
+    this.word = word;
+  }
+
+  /**
+   * Returns the category with the given code.
+   */
+  public static Category fromCode(int code) {
+    if (code < 0 || code >= BY_CODE.length) {
+      throw new IllegalArgumentException("Invalid category code");
+    }
+    return BY_CODE[code];
+  }
+
+  /**
+   * Returns the category matching the given text, ignoring case, or null if
+   * the text is not one of the words. The length and, for the two five letter
+   * words, the first letter pick the only candidate, which is then compared
+   * letter by letter, so a lookup allocates nothing.
+   */
+  public static Category lookup(CharSequence text) {
+    if (text == null) {
+      return null;
+    }
+    Category candidate;
+    switch (text.length()) {
+      case 4:
+        candidate = FOOD;
+        break;
+      case 5:
+        candidate = (text.charAt(0) | 0x20) == 'b' ? BILLS : OTHER;
+        break;
+      case 6:
+        candidate = TRAVEL;
+        break;
+      case 13:
+        candidate = ENTERTAINMENT;
+        break;
+      default:
+        return null;
+    }
+    return candidate.matches(text) ? candidate : null;
+  }
+
+  /**
+   * Returns the category matching the given text, ignoring case. Every
+   * category that enters the model is checked here.
+   *
+   * @throws IllegalArgumentException If the text is not one of the words
+   */
+  public static Category parse(CharSequence text) {
+    Category category = lookup(text);
+    if (category == null) {
+      throw new IllegalArgumentException("The category is not valid.");
+    }
+    return category;
+  }
+
+  public int getCode() {
+    return ordinal();
+  }
+
+  /**
+   * Returns the lowercase word for this category.
+   */
+  public String getWord() {
+    return word;
+  }
+
+  // Compares ASCII letters ignoring case; anything else never matches a word
+  private boolean matches(CharSequence text) {
+    for (int i = 0; i < word.length(); i++) {
+      char c = text.charAt(i);
+      if (c >= 'A' && c <= 'Z') {
+        c += 'a' - 'A';
+      }
+      if (c != word.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+}
@@ -0,0 +1,69 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Per-category posting lists: for each category code, a RowBitmap of the rows
+ * holding that category. Rows are appended in order, so adding a row is O(1),
+ * and a category that covers most rows costs one bit per row.
+ * Removed rows are dropped from the bitmaps as they are removed.
+ */
+final class CategoryIndex {
+
+  private final List<RowBitmap> postings = new ArrayList<>();
+
+  void add(int categoryCode, int row) {
+    while (postings.size() <= categoryCode) {
+      postings.add(new RowBitmap());
+    }
+    postings.get(categoryCode).add(row);
+  }
+
+  void remove(int categoryCode, int row) {
+    postings.get(categoryCode).remove(row);
+  }
+
+  /**
+   * Fills an empty index from a column of category codes.
+   */
+  void load(short[] categoryCodes, int size) {
+    for (int row = 0; row < size; row++) {
+      add(categoryCodes[row], row);
+    }
+  }
+
+  /**
+   * Renumbers the rows after the store has been compacted, dropping removed rows.
+   */
+  void compact(int[] newRows) {
+    for (int code = 0; code < postings.size(); code++) {
+      postings.set(code, postings.get(code).remap(newRows));
+    }
+  }
+
+  /**
+   * Returns a copy of the rows for a category code.
+   */
+  RowBitmap bitmap(int categoryCode) {
+    if (categoryCode >= postings.size()) {
+      return new RowBitmap();
+    }
+    return postings.get(categoryCode).copy();
+  }
+
+  /**
+   * Returns the ascending rows for a category code.
+   */
+  int[] rows(int categoryCode) {
+    if (categoryCode >= postings.size()) {
+      return new int[0];
+    }
+    return postings.get(categoryCode).toArray();
+  }
+
+  int count(int categoryCode) {
+    return categoryCode < postings.size() ? postings.get(categoryCode).getCardinality() : 0;
+  }
+
+}
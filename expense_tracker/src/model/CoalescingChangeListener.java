@@ -0,0 +1,75 @@
+package model;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects change events for a time window and passes them on as one, so a
+ * writer that changes the model thousands of times a second causes at most
+ * one delivery per window, e.g. one repaint per frame.
+ *
+ * The first event after a delivery opens a window. When the window closes, the
+ * event it collected, or a BULK event adding up all of them, is handed to the
+ * delivery executor (such as SwingUtilities::invokeLater), which calls the
+ * target listener.
+ */
+public final class CoalescingChangeListener implements TransactionChangeListener {
+
+  // Closes the windows of every coalescing listener
+  private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(r -> {
+    Thread thread = new Thread(r, "change-coalescer");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  private final TransactionChangeListener target;
+  private final long windowMillis;
+  private final Executor delivery;
+  // The events of the open window, coalesced; guarded by this
+  private TransactionChangeEvent pending;
+
+  /**
+   * @param windowMillis How long to collect events before delivering them
+   * @param delivery Runs the deliveries, e.g. on the Event Dispatch Thread
+   */
+  public CoalescingChangeListener(TransactionChangeListener target, long windowMillis, Executor delivery) {
+    if (target == null || delivery == null) {
+      throw new IllegalArgumentException("The target and delivery must be non-null.");
+    }
+    if (windowMillis < 0) {
+      throw new IllegalArgumentException("The window must not be negative.");
+    }
+    this.target = target;
+    this.windowMillis = windowMillis;
+    this.delivery = delivery;
+  }
+
+  @Override
+  public void transactionsChanged(TransactionChangeEvent event) {
+    boolean opensWindow;
+    synchronized (this) {
+      opensWindow = pending == null;
+      pending = opensWindow ? event : pending.coalesce(event);
+    }
+    if (opensWindow) {
+      TIMER.schedule(this::flush, windowMillis, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+   * Delivers the collected events now instead of when the window closes.
+   */
+  public void flush() {
+    final TransactionChangeEvent event;
+    synchronized (this) {
+      event = pending;
+      pending = null;
+    }
+    if (event != null) {
+      delivery.execute(() -> target.transactionsChanged(event));
+    }
+  }
+
+}
@@ -0,0 +1,283 @@
+package model;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Transaction storage for many threads at once: background threads add and
+ * remove transactions while the UI, exports and queries read them.
+ *
+ * Writers take turns through a lock, and every change publishes a new
+ * immutable TransactionVersion through a volatile field. Readers only read
+ * that field, so they never lock or wait for a writer and reads scale across
+ * cores. A reader keeps seeing the version it took, however the model changes
+ * afterwards.
+ *
+ * Rows are stored in chunks of CHUNK_SIZE rows, one array per column. An
+ * append fills the free tail of the last chunk, which no published version
+ * can see yet, so it copies nothing. A removal marks the row in a copy of its
+ * chunk's tombstone bitset (copy-on-write), so the bitsets held by older
+ * versions never change. Removed rows keep their place in the chunks until
+ * they make up more than MAX_TOMBSTONE_RATIO of the rows; the next publish
+ * then copies the live rows into new chunks, which older versions never see.
+ */
+public final class ConcurrentTransactionModel {
+
+  static final int CHUNK_SHIFT = 12;
+  static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+  static final int CHUNK_MASK = CHUNK_SIZE - 1;
+  // Compact when publishing once more than this fraction of the rows are removed
+  private static final double MAX_TOMBSTONE_RATIO = 0.5;
+
+  private final ReentrantLock writeLock = new ReentrantLock();
+
+  // Writer state, guarded by writeLock. Published versions share these arrays,
+  // so entries a version can see are never changed in place.
+  private Chunk[] chunks = new Chunk[16];
+  private long[][] tombstones = new long[16][];
+  // Live rows in the chunks before each chunk
+  private int[] liveBefore = new int[16];
+  private int chunkCount;
+  private int rowCount;
+  private int liveCount;
+  // Set once the arrays above are shared with a published version
+  private boolean published;
+  private final LongIntHashMap rowById = new LongIntHashMap();
+  // One per Category code, then the one over all transactions
+  private final Aggregate[] aggregates = newAggregates();
+
+  private volatile TransactionVersion current = new TransactionVersion(0, new Chunk[0], new long[0][],
+      new int[0], 0, 0, 0, newAggregates());
+
+  /**
+   * Returns the latest version. Never blocks, and can be called from any thread.
+   */
+  public TransactionVersion currentVersion() {
+    return current;
+  }
+
+  public void addTransaction(Transaction t) {
+    writeLock.lock();
+    try {
+      append(t);
+      publish();
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  /**
+   * Adds all of the transactions and publishes them as a single version,
+   * so readers see either none or all of them. The whole batch is checked
+   * first, so nothing is added if any of the transactions is rejected.
+   *
+   * @throws IllegalArgumentException If a transaction is null or has already been added
+   */
+  public void addTransactions(Collection<Transaction> transactions) {
+    if (transactions == null) {
+      throw new IllegalArgumentException("The transactions must be non-null.");
+    }
+    writeLock.lock();
+    try {
+      LongIntHashMap batchIds = new LongIntHashMap();
+      batchIds.ensureCapacity(transactions.size());
+      for (Transaction t : transactions) {
+        if (t == null) {
+          throw new IllegalArgumentException("The transactions must be non-null.");
+        }
+        if (rowById.get(t.getId()) != LongIntHashMap.NO_VALUE || batchIds.get(t.getId()) != LongIntHashMap.NO_VALUE) {
+          throw new IllegalArgumentException("The transaction has already been added.");
+        }
+        batchIds.put(t.getId(), 0);
+      }
+      for (Transaction t : transactions) {
+        append(t);
+      }
+      publish();
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  /**
+   * @return true if the model held a transaction with that id
+   */
+  public boolean removeTransactionById(long id) {
+    writeLock.lock();
+    try {
+      if (!remove(id)) {
+        return false;
+      }
+      publish();
+      return true;
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  /**
+   * Removes all of the given transactions and publishes the result as a single version.
+   *
+   * @return The number of transactions that were removed
+   */
+  public int removeTransactions(Collection<Transaction> transactions) {
+    writeLock.lock();
+    try {
+      int removed = 0;
+      for (Transaction t : transactions) {
+        if (remove(t.getId())) {
+          removed++;
+        }
+      }
+      if (removed > 0) {
+        publish();
+      }
+      return removed;
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  private void append(Transaction t) {
+    if (rowById.get(t.getId()) != LongIntHashMap.NO_VALUE) {
+      throw new IllegalArgumentException("The transaction has already been added.");
+    }
+    int chunkIndex = rowCount >>> CHUNK_SHIFT;
+    if (chunkIndex == chunkCount) {
+      addChunk();
+    }
+    Chunk chunk = chunks[chunkIndex];
+    int offset = rowCount & CHUNK_MASK;
+    chunk.ids[offset] = t.getId();
+    chunk.amounts[offset] = t.getAmount();
+    chunk.categoryCodes[offset] = (byte) t.getCategoryCode();
+    chunk.timestamps[offset] = t.getEpochMillis();
+    rowById.put(t.getId(), rowCount);
+    rowCount++;
+    liveCount++;
+    aggregates[t.getCategoryCode()].add(t.getAmount());
+    aggregates[TransactionVersion.ALL].add(t.getAmount());
+  }
+
+  private void addChunk() {
+    if (chunkCount == chunks.length) {
+      // Versions keep the old arrays, which still hold every chunk they can see
+      int capacity = chunkCount * 2;
+      chunks = Arrays.copyOf(chunks, capacity);
+      tombstones = Arrays.copyOf(tombstones, capacity);
+      liveBefore = Arrays.copyOf(liveBefore, capacity);
+      published = false;
+    }
+    chunks[chunkCount] = new Chunk();
+    liveBefore[chunkCount] = liveCount;
+    chunkCount++;
+  }
+
+  private boolean remove(long id) {
+    int row = rowById.remove(id);
+    if (row == LongIntHashMap.NO_VALUE) {
+      return false;
+    }
+    if (published) {
+      tombstones = tombstones.clone();
+      liveBefore = liveBefore.clone();
+      published = false;
+    }
+    int chunkIndex = row >>> CHUNK_SHIFT;
+    long[] bits = tombstones[chunkIndex];
+    bits = bits == null ? new long[CHUNK_SIZE / 64] : bits.clone();
+    int offset = row & CHUNK_MASK;
+    bits[offset >>> 6] |= 1L << offset;
+    tombstones[chunkIndex] = bits;
+    for (int i = chunkIndex + 1; i < chunkCount; i++) {
+      liveBefore[i]--;
+    }
+    liveCount--;
+    double amount = chunks[chunkIndex].amounts[offset];
+    aggregates[chunks[chunkIndex].categoryCodes[offset]].remove(amount);
+    aggregates[TransactionVersion.ALL].remove(amount);
+    return true;
+  }
+
+  private void publish() {
+    if (rowCount - liveCount > rowCount * MAX_TOMBSTONE_RATIO) {
+      compact();
+    }
+    current = new TransactionVersion(current.getVersion() + 1, chunks, tombstones, liveBefore,
+        chunkCount, rowCount, liveCount, copyAggregates());
+    published = true;
+  }
+
+  // Copies the live rows into new chunks, so removed rows stop taking up memory
+  // and reads stop skipping them. Published versions keep the old chunks.
+  private void compact() {
+    int newChunkCount = (liveCount + CHUNK_MASK) >>> CHUNK_SHIFT;
+    int capacity = Math.max(16, newChunkCount);
+    Chunk[] newChunks = new Chunk[capacity];
+    int row = 0;
+    for (int chunkIndex = 0; chunkIndex < chunkCount; chunkIndex++) {
+      Chunk chunk = chunks[chunkIndex];
+      long[] bits = tombstones[chunkIndex];
+      int rows = Math.min(CHUNK_SIZE, rowCount - (chunkIndex << CHUNK_SHIFT));
+      for (int offset = 0; offset < rows; offset++) {
+        if (bits != null && (bits[offset >>> 6] & (1L << offset)) != 0) {
+          continue;
+        }
+        Chunk target = newChunks[row >>> CHUNK_SHIFT];
+        if (target == null) {
+          target = new Chunk();
+          newChunks[row >>> CHUNK_SHIFT] = target;
+        }
+        int targetOffset = row & CHUNK_MASK;
+        target.ids[targetOffset] = chunk.ids[offset];
+        target.amounts[targetOffset] = chunk.amounts[offset];
+        target.categoryCodes[targetOffset] = chunk.categoryCodes[offset];
+        target.timestamps[targetOffset] = chunk.timestamps[offset];
+        rowById.put(chunk.ids[offset], row);
+        row++;
+      }
+    }
+    chunks = newChunks;
+    tombstones = new long[capacity][];
+    liveBefore = new int[capacity];
+    for (int i = 0; i < newChunkCount; i++) {
+      liveBefore[i] = i << CHUNK_SHIFT;
+    }
+    chunkCount = newChunkCount;
+    rowCount = liveCount;
+    published = false;
+  }
+
+  private static Aggregate[] newAggregates() {
+    Aggregate[] aggregates = new Aggregate[TransactionVersion.ALL + 1];
+    for (int i = 0; i < aggregates.length; i++) {
+      aggregates[i] = new Aggregate();
+    }
+    return aggregates;
+  }
+
+  // The writer keeps changing its aggregates, so every version gets copies
+  private Aggregate[] copyAggregates() {
+    Aggregate[] copies = new Aggregate[aggregates.length];
+    for (int i = 0; i < aggregates.length; i++) {
+      copies[i] = aggregates[i].copy();
+    }
+    return copies;
+  }
+
+  /**
+   * One chunk of rows, stored column by column. Rows are written once, before
+   * the first version that contains them is published, and never change.
+   */
+  static final class Chunk {
+
+    final long[] ids = new long[CHUNK_SIZE];
+    final double[] amounts = new double[CHUNK_SIZE];
+    // Category codes
+    final byte[] categoryCodes = new byte[CHUNK_SIZE];
+    final long[] timestamps = new long[CHUNK_SIZE];
+
+  }
+
+}
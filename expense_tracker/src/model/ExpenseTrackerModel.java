@@ -1,29 +1,588 @@
 package model;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
 
-public class ExpenseTrackerModel {
+public class ExpenseTrackerModel implements TransactionRows {
 
-  private List<Transaction> transactions;
+  // Compact as soon as a removal leaves more tombstones than this fraction of the rows
+  private static final double MAX_TOMBSTONE_RATIO = 0.5;
+
+  private final TransactionStore store;
+  private final List<Transaction> transactionsView;
+
+  // Maps a transaction id to the row that holds it
+  private final LongIntHashMap rowById;
+
+  // Secondary indexes, kept up to date by addTransaction and removeTransaction
+  private final CategoryIndex categoryIndex;
+  private final AmountIndex amountIndex;
+
+  // Running aggregates over all transactions and per category code
+  private final Aggregate totals;
+  private final List<Aggregate> categoryTotals;
+
+  // Incremented whenever a removal renumbers the rows that follow it
+  private int rowLayout;
+
+  // Records every change once set, see TransactionJournal
+  private TransactionJournal journal;
+
+  // Increased by every change, and passed on to the change listeners
+  private long version;
+  private final List<TransactionChangeListener> changeListeners = new CopyOnWriteArrayList<>();
 
   public ExpenseTrackerModel() {
-    transactions = new ArrayList<>(); 
+    store = new TransactionStore();
+    transactionsView = new TransactionListView();
+    rowById = new LongIntHashMap();
+    categoryIndex = new CategoryIndex();
+    amountIndex = new AmountIndex();
+    totals = new Aggregate();
+    categoryTotals = new ArrayList<>();
   }
 
   public void addTransaction(Transaction t) {
-    transactions.add(t);
+    if (rowById.get(t.getId()) != LongIntHashMap.NO_VALUE) {
+      throw new IllegalArgumentException("The transaction has already been added.");
+    }
+    if (journal != null) {
+      journal.logAdd(t.getId(), t.getAmount(), t.getCategory(), t.getEpochMillis());
+    }
+    addRow(t.getId(), t.getAmount(), t.getCategoryValue(), t.getEpochMillis());
+    version++;
+    if (!changeListeners.isEmpty()) {
+      fireChange(TransactionChangeEvent.added(t, version));
+    }
   }
 
-  public void removeTransaction(Transaction t) {
-    transactions.remove(t);
+  /**
+   * Adds a batch of transactions in one pass. The whole batch is checked before
+   * anything is added, so if it is rejected the model is unchanged. Storage
+   * and the id map grow once, the amount index merges the sorted batch in a
+   * single pass, and each aggregate is updated once per batch.
+   *
+   * @throws IllegalArgumentException if a transaction is null, already held
+   *         by the model or repeated in the batch
+   */
+  public void addTransactions(Collection<Transaction> transactions) {
+    if (transactions == null) {
+      throw new IllegalArgumentException("The transactions must be non-null.");
+    }
+    int count = transactions.size();
+    LongIntHashMap batchIds = new LongIntHashMap();
+    batchIds.ensureCapacity(count);
+    for (Transaction t : transactions) {
+      if (t == null) {
+        throw new IllegalArgumentException("The transactions must be non-null.");
+      }
+      if (rowById.get(t.getId()) != LongIntHashMap.NO_VALUE || batchIds.get(t.getId()) != LongIntHashMap.NO_VALUE) {
+        throw new IllegalArgumentException("The transaction has already been added.");
+      }
+      batchIds.put(t.getId(), 0);
+    }
+    if (count == 0) {
+      return;
+    }
+    // Logged as a whole first, so a checkpoint cannot fall in the middle of the batch
+    if (journal != null) {
+      journal.logAdds(transactions);
+    }
+    int firstRow = store.size();
+    store.ensureCapacity(firstRow + count);
+    rowById.ensureCapacity(rowById.size() + count);
+    double[] amounts = new double[count];
+    Aggregate batchTotal = new Aggregate();
+    List<Aggregate> batchCategoryTotals = new ArrayList<>();
+    int i = 0;
+    for (Transaction t : transactions) {
+      int row = store.append(t.getId(), t.getAmount(), t.getCategoryValue(), t.getEpochMillis());
+      rowById.put(t.getId(), row);
+      int categoryCode = store.categoryCodeAt(row);
+      categoryIndex.add(categoryCode, row);
+      amounts[i++] = t.getAmount();
+      batchTotal.add(t.getAmount());
+      while (batchCategoryTotals.size() <= categoryCode) {
+        batchCategoryTotals.add(null);
+      }
+      if (batchCategoryTotals.get(categoryCode) == null) {
+        batchCategoryTotals.set(categoryCode, new Aggregate());
+      }
+      batchCategoryTotals.get(categoryCode).add(t.getAmount());
+    }
+    amountIndex.addAll(amounts, firstRow, count);
+    totals.merge(batchTotal);
+    for (int code = 0; code < batchCategoryTotals.size(); code++) {
+      if (batchCategoryTotals.get(code) != null) {
+        categoryTotal(code).merge(batchCategoryTotals.get(code));
+      }
+    }
+    bulkChanged(count, 0);
+  }
+
+  /**
+   * Appends a batch of rows straight into the columnar storage, without
+   * creating a Transaction for each of them. Storage grows once for the whole
+   * batch. Used by bulk imports, which have already checked every row
+   * against the InputValidation rules. The categories are still parsed
+   * before anything is added or journaled, so a bad batch leaves the model
+   * unchanged.
+   *
+   * @param count The number of rows to take from the front of the arrays
+   * @throws IllegalArgumentException If one of the categories is not valid
+   */
+  public void appendRows(double[] amounts, String[] categories, long[] epochMillis, int count) {
+    if (count > amounts.length || count > categories.length || count > epochMillis.length) {
+      throw new IllegalArgumentException("The arrays hold fewer than " + count + " rows.");
+    }
+    Category[] words = new Category[count];
+    for (int i = 0; i < count; i++) {
+      words[i] = Category.parse(categories[i]);
+    }
+    long firstId = Transaction.allocateIds(count);
+    store.ensureCapacity(store.size() + count);
+    for (int i = 0; i < count; i++) {
+      if (journal != null) {
+        journal.logAdd(firstId + i, amounts[i], words[i].getWord(), epochMillis[i]);
+      }
+      addRow(firstId + i, amounts[i], words[i], epochMillis[i]);
+    }
+    bulkChanged(count, 0);
+  }
+
+  public boolean removeTransaction(Transaction t) {
+    return removeTransactionById(t.getId());
+  }
+
+  /**
+   * Removes the transaction with the given id in O(log n). The row is dropped
+   * from the indexes and marked as removed in the store, and reads skip it from
+   * then on. The store is only compacted, in a single pass, once removed rows
+   * make up more than MAX_TOMBSTONE_RATIO of it.
+   *
+   * @return true if the model held a transaction with that id
+   */
+  public boolean removeTransactionById(long id) {
+    Transaction removed = changeListeners.isEmpty() ? null : getTransactionById(id);
+    if (!removeRow(id)) {
+      return false;
+    }
+    if (removed != null) {
+      fireChange(TransactionChangeEvent.removed(removed, version));
+    }
+    return true;
+  }
+
+  /**
+   * Removes all of the given transactions, each in O(log n).
+   *
+   * @return The number of transactions that were removed
+   */
+  public int removeTransactions(Collection<Transaction> transactions) {
+    int removed = 0;
+    for (Transaction t : transactions) {
+      if (removeRow(t.getId())) {
+        removed++;
+      }
+    }
+    if (removed > 0) {
+      bulkChanged(0, removed);
+    }
+    return removed;
+  }
+
+  /**
+   * Returns a number that every change to the model increases, whether a
+   * single add or remove or a bulk one.
+   */
+  public long getVersion() {
+    return version;
+  }
+
+  /**
+   * Registers a listener to be told about every later change. Listeners are
+   * called on the thread that made the change; wrap one in a
+   * CoalescingChangeListener to receive at most one event per time window.
+   */
+  public void addChangeListener(TransactionChangeListener listener) {
+    if (listener == null) {
+      throw new IllegalArgumentException("The listener must be non-null.");
+    }
+    changeListeners.add(listener);
+  }
+
+  public void removeChangeListener(TransactionChangeListener listener) {
+    changeListeners.remove(listener);
+  }
+
+  /**
+   * Returns the transaction with the given id, or null if the model does not hold it.
+   */
+  public Transaction getTransactionById(long id) {
+    int row = rowById.get(id);
+    return row == LongIntHashMap.NO_VALUE ? null : store.transactionAt(row);
+  }
+
+  /**
+   * Returns the row of the transaction with the given id, i.e. its index in
+   * getTransactions(), or -1 if the model does not hold it.
+   */
+  public int getRowOf(long id) {
+    int row = rowById.get(id);
+    return row == LongIntHashMap.NO_VALUE ? -1 : store.liveRow(row);
   }
 
   public List<Transaction> getTransactions() {
-    // Alternative 1: Apply the decorator design pattern (see below)
-    // Alternative 2: Return a copy of the list
-    return Collections.unmodifiableList(transactions);
+    // The transactions are kept in columnar storage, so this returns a
+    // read-only list view that creates a Transaction for each row on access.
+    return transactionsView;
+  }
+
+  /**
+   * Returns the transactions stored at the given rows, in the given order.
+   */
+  public List<Transaction> getTransactions(int[] rows) {
+    List<Transaction> transactions = new ArrayList<>(rows.length);
+    for (int row : rows) {
+      transactions.add(store.transactionAt(store.physicalRow(row)));
+    }
+    return transactions;
+  }
+
+  /**
+   * Returns a lazy list of the transactions at the ascending rows found by the
+   * query, e.g. the rows accepted by a filter. Transactions are only created
+   * for the positions that are read, and the query runs again when a removal
+   * has renumbered the rows.
+   */
+  public FilteredTransactions selectRows(Function<ExpenseTrackerModel, int[]> query) {
+    return new FilteredTransactions(this, query);
+  }
+
+  /**
+   * Returns the transactions whose category matches the given one, ignoring case,
+   * in the order they were added. Answered from the category index in O(k).
+   */
+  public List<Transaction> getTransactionsInCategory(String category) {
+    return getTransactions(getRowsInCategory(category));
+  }
+
+  /**
+   * Returns the transactions whose amount lies in [min, max], in the order they
+   * were added. Answered from the amount index in O(log n + k log k).
+   */
+  public List<Transaction> getTransactionsWithAmountBetween(double min, double max) {
+    return getTransactions(getRowsWithAmountBetween(min, max));
+  }
+
+  /**
+   * Returns an immutable copy of the current transactions, for readers that
+   * run while the model keeps changing. Taking it costs O(n / 64), since the
+   * columns are shared until the model next compacts.
+   */
+  public TransactionSnapshot snapshot() {
+    return new TransactionSnapshot(store.frozenCopy());
+  }
+
+  /**
+   * Returns the sum of all transaction amounts in O(1).
+   */
+  public double getTotalCost() {
+    return totals.getSum();
+  }
+
+  /**
+   * Returns the count, sum, minimum and maximum over all transactions.
+   */
+  public Aggregate getAggregate() {
+    if (!totals.isMinMaxValid()) {
+      totals.resetMinMax();
+      totals.includeInMinMax(amountIndex.minAmount());
+      totals.includeInMinMax(amountIndex.maxAmount());
+    }
+    return totals.copy();
+  }
+
+  /**
+   * Returns the count, sum, minimum and maximum over the transactions whose
+   * category matches the given one, ignoring case.
+   */
+  public Aggregate getAggregate(String category) {
+    Category word = Category.lookup(category);
+    return word == null ? new Aggregate() : validCategoryTotal(word.getCode()).copy();
+  }
+
+  /**
+   * Returns the aggregates for every category held by the model, keyed by category.
+   */
+  public Map<String, Aggregate> getCategoryAggregates() {
+    Map<String, Aggregate> aggregates = new LinkedHashMap<>();
+    for (Category category : Category.values()) {
+      Aggregate aggregate = validCategoryTotal(category.getCode());
+      if (aggregate.getCount() > 0) {
+        aggregates.put(category.getWord(), aggregate.copy());
+      }
+    }
+    return aggregates;
+  }
+
+  // Row level access, used by the filters to evaluate predicates without creating Transactions.
+  // Rows are numbered in the order the transactions were added, skipping removed ones.
+  // While removed rows wait for compaction, finding a row's place in the store is O(log n).
+
+  @Override
+  public int getTransactionCount() {
+    return store.liveCount();
+  }
+
+  @Override
+  public double getAmount(int row) {
+    return store.amountAt(store.physicalRow(row));
+  }
+
+  @Override
+  public String getCategory(int row) {
+    return store.categoryAt(store.physicalRow(row)).getWord();
+  }
+
+  @Override
+  public int getCategoryCode(int row) {
+    return store.categoryCodeAt(store.physicalRow(row));
+  }
+
+  @Override
+  public long getEpochMillis(int row) {
+    return store.timestampAt(store.physicalRow(row));
+  }
+
+  /**
+   * Returns the ascending rows whose category matches the given one, ignoring case.
+   */
+  public int[] getRowsInCategory(String category) {
+    return getBitmapInCategory(category).toArray();
+  }
+
+  /**
+   * Returns the rows whose category matches the given one, ignoring case, as a
+   * bitmap that later changes to the model do not affect.
+   */
+  public RowBitmap getBitmapInCategory(String category) {
+    Category word = Category.lookup(category);
+    return word == null ? new RowBitmap() : getBitmapInCategory(word);
+  }
+
+  /**
+   * Returns the rows holding the given category as a bitmap that later
+   * changes to the model do not affect.
+   */
+  public RowBitmap getBitmapInCategory(Category category) {
+    RowBitmap rows = categoryIndex.bitmap(category.getCode());
+    // The index holds rows of the store, which only match the row numbers without tombstones
+    return store.tombstoneCount() == 0 ? rows : RowBitmap.fromRows(store.liveRows(rows.toArray()));
+  }
+
+  /**
+   * Returns the ascending rows whose amount lies in [min, max].
+   */
+  public int[] getRowsWithAmountBetween(double min, double max) {
+    return store.liveRows(amountIndex.rowsBetween(min, max));
+  }
+
+  /**
+   * Returns the rows whose amount lies in [min, max] as a bitmap.
+   */
+  public RowBitmap getBitmapWithAmountBetween(double min, double max) {
+    return RowBitmap.fromRows(getRowsWithAmountBetween(min, max));
+  }
+
+  public int countInCategory(String category) {
+    Category word = Category.lookup(category);
+    return word == null ? 0 : countInCategory(word);
+  }
+
+  public int countInCategory(Category category) {
+    return categoryIndex.count(category.getCode());
+  }
+
+  public int countWithAmountBetween(double min, double max) {
+    return amountIndex.countBetween(min, max);
+  }
+
+  /**
+   * Adds a transaction read back from a journal, keeping its id.
+   *
+   * @throws IllegalArgumentException If the id is already held or the category is not valid
+   */
+  void restoreTransaction(long id, double amount, String category, long epochMillis) {
+    if (rowById.get(id) != LongIntHashMap.NO_VALUE) {
+      throw new IllegalArgumentException("Transaction " + id + " has already been added.");
+    }
+    addRow(id, amount, Category.parse(category), epochMillis);
+    version++;
+    if (!changeListeners.isEmpty()) {
+      fireChange(TransactionChangeEvent.added(store.transactionAt(rowById.get(id)), version));
+    }
+  }
+
+  /**
+   * Fills an empty model from a snapshot image in a few linear passes,
+   * taking over its arrays.
+   */
+  void loadImage(ModelImage image) {
+    if (!isEmpty()) {
+      throw new IllegalStateException("Only an empty model can be loaded.");
+    }
+    for (int i = 0; i < image.size; i++) {
+      if (image.amountOrder[i] < 0 || image.amountOrder[i] >= image.size
+          || image.categoryCodes[i] < 0 || image.categoryCodes[i] >= Category.values().length) {
+        throw new IllegalArgumentException("The image is corrupt.");
+      }
+    }
+    store.load(image);
+    rowById.ensureCapacity(image.size);
+    long maxId = 0;
+    for (int row = 0; row < image.size; row++) {
+      long id = image.ids[row];
+      if (id == 0 || rowById.get(id) != LongIntHashMap.NO_VALUE) {
+        throw new IllegalArgumentException("The image is corrupt.");
+      }
+      rowById.put(id, row);
+      maxId = Math.max(maxId, id);
+      totals.add(image.amounts[row]);
+      categoryTotal(image.categoryCodes[row]).add(image.amounts[row]);
+    }
+    categoryIndex.load(image.categoryCodes, image.size);
+    amountIndex.load(image.amountOrder, image.amounts, image.size);
+    Transaction.reserveIdsThrough(maxId);
+    bulkChanged(image.size, 0);
+  }
+
+  int getRowLayout() {
+    return rowLayout;
+  }
+
+  Transaction transactionAtRow(int row) {
+    return store.transactionAt(store.physicalRow(row));
+  }
+
+  void reserveCapacity(int rows) {
+    store.ensureCapacity(rows);
+  }
+
+  boolean isEmpty() {
+    return rowById.size() == 0;
+  }
+
+  TransactionJournal getJournal() {
+    return journal;
+  }
+
+  void setJournal(TransactionJournal journal) {
+    this.journal = journal;
+  }
+
+  private void addRow(long id, double amount, Category category, long epochMillis) {
+    int row = store.append(id, amount, category, epochMillis);
+    rowById.put(id, row);
+    int categoryCode = store.categoryCodeAt(row);
+    categoryIndex.add(categoryCode, row);
+    amountIndex.add(amount, row);
+    totals.add(amount);
+    categoryTotal(categoryCode).add(amount);
+  }
+
+  // Removes a row without telling the listeners
+  private boolean removeRow(long id) {
+    if (rowById.get(id) == LongIntHashMap.NO_VALUE) {
+      return false;
+    }
+    if (journal != null) {
+      journal.logRemove(id);
+    }
+    int row = rowById.remove(id);
+    double amount = store.amountAt(row);
+    int categoryCode = store.categoryCodeAt(row);
+    totals.remove(amount);
+    categoryTotal(categoryCode).remove(amount);
+    categoryIndex.remove(categoryCode, row);
+    amountIndex.remove(amount, row);
+    store.markRemoved(row);
+    rowLayout++;
+    version++;
+    // Compacting here, on the write path, keeps every read free of side effects
+    if (store.tombstoneCount() > store.size() * MAX_TOMBSTONE_RATIO) {
+      compact();
+    }
+    return true;
+  }
+
+  private void bulkChanged(int addedCount, int removedCount) {
+    if (addedCount == 0 && removedCount == 0) {
+      return;
+    }
+    version++;
+    if (!changeListeners.isEmpty()) {
+      fireChange(TransactionChangeEvent.bulk(addedCount, removedCount, version));
+    }
+  }
+
+  private void fireChange(TransactionChangeEvent event) {
+    for (TransactionChangeListener listener : changeListeners) {
+      listener.transactionsChanged(event);
+    }
+  }
+
+  private Aggregate categoryTotal(int categoryCode) {
+    while (categoryTotals.size() <= categoryCode) {
+      categoryTotals.add(new Aggregate());
+    }
+    return categoryTotals.get(categoryCode);
+  }
+
+  // Returns the category's aggregate, rescanning its rows if its minimum or maximum was removed
+  private Aggregate validCategoryTotal(int categoryCode) {
+    Aggregate aggregate = categoryTotal(categoryCode);
+    if (!aggregate.isMinMaxValid()) {
+      aggregate.resetMinMax();
+      for (int row : categoryIndex.rows(categoryCode)) {
+        aggregate.includeInMinMax(store.amountAt(row));
+      }
+    }
+    return aggregate;
+  }
+
+  // Squeezes the removed rows out of the store and renumbers the stored rows in the indexes.
+  // The rows readers see do not change, since they already skip the removed ones.
+  private void compact() {
+    final int[] newRows = store.compact();
+    categoryIndex.compact(newRows);
+    amountIndex.compact(newRows);
+    rowById.replaceValues(row -> newRows[row]);
+  }
+
+  /**
+   * Read-only list over the columnar store. Rows are materialized as
+   * Transaction objects only when they are requested.
+   */
+  private class TransactionListView extends AbstractList<Transaction> implements RandomAccess {
+
+    @Override
+    public Transaction get(int index) {
+      return store.transactionAt(store.physicalRow(index));
+    }
+
+    @Override
+    public int size() {
+      return store.liveCount();
+    }
+
   }
 
-}
\ No newline at end of file
+}
@@ -1,9 +1,9 @@
 package model.Filter;
 
-import java.util.ArrayList;
-import java.util.List;
-
+import model.ExpenseTrackerModel;
+import model.RowBitmap;
 import model.Transaction;
+import model.TransactionRows;
 import controller.InputValidation;
 
 /**
@@ -11,9 +11,11 @@ import controller.InputValidation;
  *
  * NOTE) The Strategy design pattern is being applied. This is a concrete strategy class.
  */
-public class AmountFilter implements TransactionFilter{
-    private double amountFilter;
+public class AmountFilter implements TransactionPredicate{
     private static final double EPSILON = 1e-6;
+    // The accepted amounts are [min, max]; the amount index is queried with the same bounds
+    private final double min;
+    private final double max;
 
     public AmountFilter(double amountFilter){
         // Since the AmountFilter constructor is public, 
@@ -21,23 +23,43 @@ public class AmountFilter implements TransactionFilter{
         if(!InputValidation.isValidAmount(amountFilter)){
             throw new IllegalArgumentException("Invalid amount filter");
         } else {
-            this.amountFilter = amountFilter;
+            this.min = amountFilter - EPSILON;
+            this.max = amountFilter + EPSILON;
         }
     }
+
     @Override
-    public List<Transaction> filter(List<Transaction> transactions){
-	// Perform input validation
-	if (transactions == null) {
-	    throw new IllegalArgumentException("The transactions list must be non-null.");
-	}
-        List<Transaction> filteredTransactions = new ArrayList<>();
-        for(Transaction transaction : transactions){
-            // Your solution could use a different comparison here.
-            if (Math.abs(transaction.getAmount() - amountFilter) < EPSILON) {
-                filteredTransactions.add(transaction);
-            }
-        }
-        return filteredTransactions;
+    public boolean test(Transaction transaction){
+        return accepts(transaction.getAmount());
+    }
+
+    @Override
+    public boolean test(TransactionRows rows, int row){
+        return accepts(rows.getAmount(row));
+    }
+
+    @Override
+    public double estimateSelectivity(ExpenseTrackerModel model){
+        return QueryPlanner.fraction(model.countWithAmountBetween(min, max), model);
+    }
+
+    @Override
+    public RowBitmap indexedBitmap(ExpenseTrackerModel model){
+        return model.getBitmapWithAmountBetween(min, max);
+    }
+
+    @Override
+    public int[] indexedRows(ExpenseTrackerModel model){
+        // Answer from the model's amount index instead of scanning every transaction
+        return model.getRowsWithAmountBetween(min, max);
+    }
+
+    @Override
+    public int count(ExpenseTrackerModel model){
+        return model.countWithAmountBetween(min, max);
+    }
+
+    private boolean accepts(double amount){
+        return amount >= min && amount <= max;
     }
-    
 }
@@ -0,0 +1,53 @@
+package model.Filter;
+
+import model.ExpenseTrackerModel;
+import model.RowBitmap;
+import model.Transaction;
+import model.TransactionRows;
+
+/**
+ * The AmountRangeFilter only shows the Transactions whose amount lies in [min, max].
+ */
+public class AmountRangeFilter implements TransactionPredicate {
+    private final double min;
+    private final double max;
+
+    public AmountRangeFilter(double min, double max) {
+        if (Double.isNaN(min) || Double.isNaN(max) || min > max) {
+            throw new IllegalArgumentException("Invalid amount range");
+        }
+        this.min = min;
+        this.max = max;
+    }
+
+    @Override
+    public boolean test(Transaction transaction) {
+        return transaction.getAmount() >= min && transaction.getAmount() <= max;
+    }
+
+    @Override
+    public boolean test(TransactionRows rows, int row) {
+        double amount = rows.getAmount(row);
+        return amount >= min && amount <= max;
+    }
+
+    @Override
+    public double estimateSelectivity(ExpenseTrackerModel model) {
+        return QueryPlanner.fraction(model.countWithAmountBetween(min, max), model);
+    }
+
+    @Override
+    public RowBitmap indexedBitmap(ExpenseTrackerModel model) {
+        return model.getBitmapWithAmountBetween(min, max);
+    }
+
+    @Override
+    public int[] indexedRows(ExpenseTrackerModel model) {
+        return model.getRowsWithAmountBetween(min, max);
+    }
+
+    @Override
+    public int count(ExpenseTrackerModel model) {
+        return model.countWithAmountBetween(min, max);
+    }
+}
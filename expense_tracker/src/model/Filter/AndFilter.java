@@ -0,0 +1,59 @@
+package model.Filter;
+
+import java.util.Collections;
+import java.util.List;
+
+import model.ExpenseTrackerModel;
+import model.RowBitmap;
+import model.Transaction;
+import model.TransactionRows;
+
+/**
+ * The AndFilter only shows the Transactions accepted by all of its operands.
+ */
+public class AndFilter implements TransactionPredicate {
+    private final List<TransactionPredicate> operands;
+
+    public AndFilter(TransactionPredicate... operands) {
+        this.operands = QueryPlanner.checkOperands(operands);
+    }
+
+    public List<TransactionPredicate> getOperands() {
+        return Collections.unmodifiableList(operands);
+    }
+
+    @Override
+    public boolean test(Transaction transaction) {
+        for (TransactionPredicate operand : operands) {
+            if (!operand.test(transaction)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean test(TransactionRows rows, int row) {
+        for (TransactionPredicate operand : operands) {
+            if (!operand.test(rows, row)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public double estimateSelectivity(ExpenseTrackerModel model) {
+        // Assume the operands are independent
+        double selectivity = 1.0;
+        for (TransactionPredicate operand : operands) {
+            selectivity *= operand.estimateSelectivity(model);
+        }
+        return selectivity;
+    }
+
+    @Override
+    public RowBitmap indexedBitmap(ExpenseTrackerModel model) {
+        return QueryPlanner.indexedBitmap(this, model);
+    }
+}
@@ -1,43 +1,52 @@
 package model.Filter;
 
-import java.util.ArrayList;
-import java.util.List;
-
+import model.Category;
+import model.ExpenseTrackerModel;
+import model.RowBitmap;
 import model.Transaction;
-import controller.InputValidation;
+import model.TransactionRows;
 
 /**
  * The CategoryFilter class only shows the Transactions with categories equal to the specified category.
  *
  * NOTE) This is applying the Strategy design pattern. This is a concrete strategy class.
  */
-public class CategoryFilter implements TransactionFilter {
-    private String categoryFilter;
+public class CategoryFilter implements TransactionPredicate {
+    private final Category categoryFilter;
 
     public CategoryFilter(String categoryFilter) {
         // Since the CategoryFilter constructor is public, 
         // the input validation needs to be performed again.
-        if(!InputValidation.isValidCategory(categoryFilter)){
+        // The lookup also gives the code that every transaction is compared with.
+        this.categoryFilter = Category.lookup(categoryFilter);
+        if(this.categoryFilter == null){
             throw new IllegalArgumentException("Invalid category filter");
-        }else{
-            this.categoryFilter = categoryFilter;
         }
     }
 
     @Override
-    public List<Transaction> filter(List<Transaction> transactions) {
-	// Perform input validation
-        if (transactions == null) {
-            throw new IllegalArgumentException("The transactions list must be non-null.");
-	}
-	
-        List<Transaction> filteredTransactions = new ArrayList<>();
-        for (Transaction transaction : transactions) {
-            if (transaction.getCategory().equalsIgnoreCase(categoryFilter)) {
-                filteredTransactions.add(transaction);
-            }
-        }
+    public boolean test(Transaction transaction) {
+        return transaction.getCategoryCode() == categoryFilter.getCode();
+    }
 
-        return filteredTransactions;
+    @Override
+    public boolean test(TransactionRows rows, int row) {
+        return rows.getCategoryCode(row) == categoryFilter.getCode();
+    }
+
+    @Override
+    public double estimateSelectivity(ExpenseTrackerModel model) {
+        return QueryPlanner.fraction(model.countInCategory(categoryFilter), model);
+    }
+
+    @Override
+    public RowBitmap indexedBitmap(ExpenseTrackerModel model) {
+        // Answer from the model's category index instead of scanning every transaction
+        return model.getBitmapInCategory(categoryFilter);
+    }
+
+    @Override
+    public int count(ExpenseTrackerModel model) {
+        return model.countInCategory(categoryFilter);
     }
 }
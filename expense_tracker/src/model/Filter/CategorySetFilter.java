@@ -0,0 +1,70 @@
+package model.Filter;
+
+import java.util.Collection;
+
+import model.Category;
+import model.ExpenseTrackerModel;
+import model.RowBitmap;
+import model.Transaction;
+import model.TransactionRows;
+
+/**
+ * The CategorySetFilter only shows the Transactions whose category is one of
+ * the specified categories, ignoring case.
+ */
+public class CategorySetFilter implements TransactionPredicate {
+    // One bit per accepted Category code, so duplicates (ignoring case) collapse
+    private final int codeMask;
+
+    public CategorySetFilter(Collection<String> categories) {
+        if (categories == null || categories.isEmpty()) {
+            throw new IllegalArgumentException("Invalid category set filter");
+        }
+        int mask = 0;
+        for (String category : categories) {
+            Category word = Category.lookup(category);
+            if (word == null) {
+                throw new IllegalArgumentException("Invalid category filter");
+            }
+            mask |= 1 << word.getCode();
+        }
+        this.codeMask = mask;
+    }
+
+    @Override
+    public boolean test(Transaction transaction) {
+        return accepts(transaction.getCategoryCode());
+    }
+
+    @Override
+    public boolean test(TransactionRows rows, int row) {
+        return accepts(rows.getCategoryCode(row));
+    }
+
+    @Override
+    public double estimateSelectivity(ExpenseTrackerModel model) {
+        int count = 0;
+        for (Category category : Category.values()) {
+            if (accepts(category.getCode())) {
+                count += model.countInCategory(category);
+            }
+        }
+        return QueryPlanner.fraction(count, model);
+    }
+
+    @Override
+    public RowBitmap indexedBitmap(ExpenseTrackerModel model) {
+        RowBitmap rows = null;
+        for (Category category : Category.values()) {
+            if (accepts(category.getCode())) {
+                RowBitmap categoryRows = model.getBitmapInCategory(category);
+                rows = rows == null ? categoryRows : rows.or(categoryRows);
+            }
+        }
+        return rows;
+    }
+
+    private boolean accepts(int categoryCode) {
+        return (codeMask & (1 << categoryCode)) != 0;
+    }
+}
@@ -0,0 +1,44 @@
+package model.Filter;
+
+import model.ExpenseTrackerModel;
+import model.Transaction;
+import model.TransactionRows;
+
+/**
+ * The DateRangeFilter only shows the Transactions whose timestamp lies in
+ * [from, to), both given as milliseconds since the epoch.
+ */
+public class DateRangeFilter implements TransactionPredicate {
+    // There is no date index, so assume a date range keeps half of the transactions
+    private static final double ESTIMATED_SELECTIVITY = 0.5;
+
+    private final long fromEpochMillis;
+    private final long toEpochMillis;
+
+    public DateRangeFilter(long fromEpochMillis, long toEpochMillis) {
+        if (fromEpochMillis > toEpochMillis) {
+            throw new IllegalArgumentException("Invalid date range");
+        }
+        this.fromEpochMillis = fromEpochMillis;
+        this.toEpochMillis = toEpochMillis;
+    }
+
+    @Override
+    public boolean test(Transaction transaction) {
+        return inRange(transaction.getEpochMillis());
+    }
+
+    @Override
+    public boolean test(TransactionRows rows, int row) {
+        return inRange(rows.getEpochMillis(row));
+    }
+
+    @Override
+    public double estimateSelectivity(ExpenseTrackerModel model) {
+        return ESTIMATED_SELECTIVITY;
+    }
+
+    private boolean inRange(long epochMillis) {
+        return epochMillis >= fromEpochMillis && epochMillis < toEpochMillis;
+    }
+}
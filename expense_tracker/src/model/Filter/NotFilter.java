@@ -0,0 +1,44 @@
+package model.Filter;
+
+import model.ExpenseTrackerModel;
+import model.RowBitmap;
+import model.Transaction;
+import model.TransactionRows;
+
+/**
+ * The NotFilter only shows the Transactions rejected by its operand.
+ */
+public class NotFilter implements TransactionPredicate {
+    private final TransactionPredicate operand;
+
+    public NotFilter(TransactionPredicate operand) {
+        if (operand == null) {
+            throw new IllegalArgumentException("The operand must be non-null.");
+        }
+        this.operand = operand;
+    }
+
+    public TransactionPredicate getOperand() {
+        return operand;
+    }
+
+    @Override
+    public boolean test(Transaction transaction) {
+        return !operand.test(transaction);
+    }
+
+    @Override
+    public boolean test(TransactionRows rows, int row) {
+        return !operand.test(rows, row);
+    }
+
+    @Override
+    public double estimateSelectivity(ExpenseTrackerModel model) {
+        return 1.0 - operand.estimateSelectivity(model);
+    }
+
+    @Override
+    public RowBitmap indexedBitmap(ExpenseTrackerModel model) {
+        return QueryPlanner.indexedBitmap(this, model);
+    }
+}
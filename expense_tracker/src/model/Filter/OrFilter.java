@@ -0,0 +1,59 @@
+package model.Filter;
+
+import java.util.Collections;
+import java.util.List;
+
+import model.ExpenseTrackerModel;
+import model.RowBitmap;
+import model.Transaction;
+import model.TransactionRows;
+
+/**
+ * The OrFilter only shows the Transactions accepted by at least one of its operands.
+ */
+public class OrFilter implements TransactionPredicate {
+    private final List<TransactionPredicate> operands;
+
+    public OrFilter(TransactionPredicate... operands) {
+        this.operands = QueryPlanner.checkOperands(operands);
+    }
+
+    public List<TransactionPredicate> getOperands() {
+        return Collections.unmodifiableList(operands);
+    }
+
+    @Override
+    public boolean test(Transaction transaction) {
+        for (TransactionPredicate operand : operands) {
+            if (operand.test(transaction)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean test(TransactionRows rows, int row) {
+        for (TransactionPredicate operand : operands) {
+            if (operand.test(rows, row)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public double estimateSelectivity(ExpenseTrackerModel model) {
+        // Assume the operands are independent
+        double rejected = 1.0;
+        for (TransactionPredicate operand : operands) {
+            rejected *= 1.0 - operand.estimateSelectivity(model);
+        }
+        return 1.0 - rejected;
+    }
+
+    @Override
+    public RowBitmap indexedBitmap(ExpenseTrackerModel model) {
+        return QueryPlanner.indexedBitmap(this, model);
+    }
+}
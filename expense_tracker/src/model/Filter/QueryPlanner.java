@@ -0,0 +1,441 @@
+package model.Filter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import model.ExpenseTrackerModel;
+import model.RowBitmap;
+import model.TransactionRows;
+
+/**
+ * The QueryPlanner finds the rows of the model accepted by a TransactionPredicate.
+ *
+ * Conjuncts of an AndFilter are ordered by their estimated selectivity. The most
+ * selective conjunct that one of the model's indexes can answer drives the query,
+ * the bitmaps of the other indexed conjuncts are intersected with it while that
+ * is cheaper than testing its rows, and the remaining conjuncts are only tested
+ * against the rows left. OrFilter and NotFilter are answered with OR and ANDNOT
+ * on bitmaps when all of their operands are indexed. Anything else falls back to
+ * a single scan over the rows. Intermediate results are RowBitmaps or ascending
+ * arrays of row numbers, so no Transaction objects are created until the final
+ * result is built.
+ *
+ * Scans over at least PARALLEL_THRESHOLD rows are split into chunks that are
+ * tested on the common ForkJoinPool; the matches of each chunk are kept
+ * separately and concatenated in chunk order, so the result is the same as a
+ * sequential scan. Smaller scans stay on the calling thread. A parallel scan
+ * of the model reads a snapshot taken on the calling thread, so the pool's
+ * workers never touch the model itself; snapshots and versions are read as
+ * they are.
+ */
+public final class QueryPlanner {
+
+    // Scans over at least this many rows run in parallel
+    static final int PARALLEL_THRESHOLD = 1 << 17;
+    // The number of rows each parallel task tests
+    private static final int CHUNK_ROWS = 1 << 14;
+    // An indexed conjunct is intersected while it holds at most this many times
+    // the rows left, since testing a row costs more than reading its bit
+    private static final int INTERSECT_RATIO = 8;
+
+    private QueryPlanner() {
+    }
+
+    /**
+     * @return The ascending rows of the model accepted by the predicate
+     */
+    public static int[] matchingRows(TransactionPredicate predicate, ExpenseTrackerModel model) {
+        if (predicate == null || model == null) {
+            throw new IllegalArgumentException("The predicate and model must be non-null.");
+        }
+        int[] rows = predicate.indexedRows(model);
+        if (rows != null) {
+            return rows;
+        }
+        if (predicate instanceof AndFilter) {
+            return scan(bySelectivity(conjuncts((AndFilter) predicate), model), true, model);
+        }
+        if (predicate instanceof OrFilter) {
+            // Most selective last, so the most likely operand is tested first
+            List<TransactionPredicate> disjuncts = bySelectivity(((OrFilter) predicate).getOperands(), model);
+            Collections.reverse(disjuncts);
+            return scan(disjuncts, false, model);
+        }
+        return scan(Collections.singletonList(predicate), true, model);
+    }
+
+    /**
+     * @return The rows of the model accepted by the predicate, as a bitmap
+     */
+    public static RowBitmap matchingBitmap(TransactionPredicate predicate, ExpenseTrackerModel model) {
+        if (predicate == null || model == null) {
+            throw new IllegalArgumentException("The predicate and model must be non-null.");
+        }
+        RowBitmap rows = predicate.indexedBitmap(model);
+        return rows != null ? rows : RowBitmap.fromRows(matchingRows(predicate, model));
+    }
+
+    /**
+     * Finds the accepted rows of any set of rows, such as a snapshot, with a
+     * single scan, since only the model has indexes.
+     *
+     * @return The ascending rows accepted by the predicate
+     */
+    public static int[] matchingRows(TransactionPredicate predicate, TransactionRows rows) {
+        if (rows instanceof ExpenseTrackerModel) {
+            return matchingRows(predicate, (ExpenseTrackerModel) rows);
+        }
+        if (predicate == null || rows == null) {
+            throw new IllegalArgumentException("The predicate and rows must be non-null.");
+        }
+        return scan(Collections.singletonList(predicate), true, rows);
+    }
+
+    /**
+     * Counts the rows accepted by the predicate and returns the ascending rows
+     * of the matches at positions [offset, offset + limit). The rows are first
+     * counted chunk by chunk, then only the chunks holding the page are tested
+     * again, so a page of a broad query over a version or snapshot allocates
+     * O(limit) instead of O(matches).
+     */
+    public static Page matchingPage(TransactionPredicate predicate, TransactionRows rows, int offset, int limit) {
+        if (predicate == null || rows == null) {
+            throw new IllegalArgumentException("The predicate and rows must be non-null.");
+        }
+        if (offset < 0 || limit < 0) {
+            throw new IllegalArgumentException("The offset and limit must be >= 0.");
+        }
+        if (rows instanceof ExpenseTrackerModel) {
+            // The model's indexes answer most queries without a scan
+            int[] matches = matchingRows(predicate, (ExpenseTrackerModel) rows);
+            int end = (int) Math.min(matches.length, (long) offset + limit);
+            return new Page(matches.length, Arrays.copyOfRange(matches, Math.min(offset, end), end));
+        }
+        List<TransactionPredicate> predicates = Collections.singletonList(predicate);
+        int total = rows.getTransactionCount();
+        int[] chunkCounts = new int[(total + CHUNK_ROWS - 1) / CHUNK_ROWS];
+        if (total < PARALLEL_THRESHOLD || ForkJoinPool.getCommonPoolParallelism() < 2) {
+            for (int chunk = 0; chunk < chunkCounts.length; chunk++) {
+                chunkCounts[chunk] = countRange(predicates, rows, chunk * CHUNK_ROWS,
+                        Math.min(total, (chunk + 1) * CHUNK_ROWS));
+            }
+        } else {
+            ForkJoinPool.commonPool().invoke(new CountTask(predicates, rows, total, chunkCounts, 0, chunkCounts.length));
+        }
+        int count = 0;
+        for (int chunkCount : chunkCounts) {
+            count += chunkCount;
+        }
+
+        int[] page = new int[(int) Math.max(0, Math.min(count, (long) offset + limit) - offset)];
+        int k = 0;
+        // Matches before the row being tested
+        int skipped = 0;
+        for (int chunk = 0; chunk < chunkCounts.length && k < page.length; chunk++) {
+            if (skipped + chunkCounts[chunk] <= offset) {
+                skipped += chunkCounts[chunk];
+                continue;
+            }
+            int to = Math.min(total, (chunk + 1) * CHUNK_ROWS);
+            for (int row = chunk * CHUNK_ROWS; row < to && k < page.length; row++) {
+                if (predicate.test(rows, row)) {
+                    if (skipped < offset) {
+                        skipped++;
+                    } else {
+                        page[k++] = row;
+                    }
+                }
+            }
+        }
+        return new Page(count, page);
+    }
+
+    /**
+     * One page of the rows accepted by a query, and the number of rows it accepts in all.
+     */
+    public static final class Page {
+        private final int count;
+        private final int[] rows;
+
+        Page(int count, int[] rows) {
+            this.count = count;
+            this.rows = rows;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        /**
+         * @return The ascending rows on the page
+         */
+        public int[] getRows() {
+            return rows;
+        }
+    }
+
+    static RowBitmap indexedBitmap(AndFilter and, ExpenseTrackerModel model) {
+        RowBitmap rows = null;
+        List<TransactionPredicate> remaining = new ArrayList<>();
+        List<TransactionPredicate> conjuncts = conjuncts(and);
+        // Estimated once, for both the order and the intersect check
+        double[] selectivity = new double[conjuncts.size()];
+        conjuncts = bySelectivity(conjuncts, model, selectivity);
+        for (int i = 0; i < conjuncts.size(); i++) {
+            TransactionPredicate conjunct = conjuncts.get(i);
+            RowBitmap conjunctRows = null;
+            if (rows == null || selectivity[i] * model.getTransactionCount()
+                    <= (double) INTERSECT_RATIO * rows.getCardinality()) {
+                conjunctRows = conjunct.indexedBitmap(model);
+            }
+            if (conjunctRows == null) {
+                remaining.add(conjunct);
+            } else {
+                rows = rows == null ? conjunctRows : rows.and(conjunctRows);
+            }
+        }
+        if (rows == null || remaining.isEmpty()) {
+            return rows;
+        }
+        return RowBitmap.fromRows(filterRows(rows.toArray(), remaining, model));
+    }
+
+    static RowBitmap indexedBitmap(OrFilter or, ExpenseTrackerModel model) {
+        RowBitmap rows = null;
+        for (TransactionPredicate operand : or.getOperands()) {
+            RowBitmap operandRows = operand.indexedBitmap(model);
+            if (operandRows == null) {
+                return null;
+            }
+            rows = rows == null ? operandRows : rows.or(operandRows);
+        }
+        return rows;
+    }
+
+    static RowBitmap indexedBitmap(NotFilter not, ExpenseTrackerModel model) {
+        RowBitmap operandRows = not.getOperand().indexedBitmap(model);
+        if (operandRows == null) {
+            return null;
+        }
+        return RowBitmap.range(0, model.getTransactionCount()).andNot(operandRows);
+    }
+
+    static double fraction(int count, ExpenseTrackerModel model) {
+        int total = model.getTransactionCount();
+        return total == 0 ? 0.0 : (double) count / total;
+    }
+
+    static List<TransactionPredicate> checkOperands(TransactionPredicate[] operands) {
+        if (operands == null || operands.length == 0) {
+            throw new IllegalArgumentException("At least one operand is required.");
+        }
+        for (TransactionPredicate operand : operands) {
+            if (operand == null) {
+                throw new IllegalArgumentException("The operands must be non-null.");
+            }
+        }
+        return new ArrayList<>(Arrays.asList(operands));
+    }
+
+    // Keeps the rows accepted by every predicate
+    private static int[] filterRows(int[] rows, List<TransactionPredicate> predicates, ExpenseTrackerModel model) {
+        if (predicates.isEmpty()) {
+            return rows;
+        }
+        return scan(predicates, true, model, rows, rows.length);
+    }
+
+    private static int[] scan(List<TransactionPredicate> predicates, boolean allOf, TransactionRows rows) {
+        return scan(predicates, allOf, rows, null, rows.getTransactionCount());
+    }
+
+    // Tests the candidate rows, or every row if there are no candidates
+    private static int[] scan(List<TransactionPredicate> predicates, boolean allOf, TransactionRows rows,
+            int[] candidates, int count) {
+        if (count < PARALLEL_THRESHOLD || ForkJoinPool.getCommonPoolParallelism() < 2) {
+            return scanRange(predicates, allOf, rows, candidates, 0, count);
+        }
+        // The model is confined to the calling thread, so the workers read a snapshot of it
+        TransactionRows scanned = rows instanceof ExpenseTrackerModel ? ((ExpenseTrackerModel) rows).snapshot() : rows;
+        int[][] chunkRows = new int[(count + CHUNK_ROWS - 1) / CHUNK_ROWS][];
+        ForkJoinPool.commonPool().invoke(new ScanTask(predicates, allOf, scanned, candidates, count,
+                chunkRows, 0, chunkRows.length));
+        int total = 0;
+        for (int[] accepted : chunkRows) {
+            total += accepted.length;
+        }
+        int[] accepted = new int[total];
+        int k = 0;
+        for (int[] chunk : chunkRows) {
+            System.arraycopy(chunk, 0, accepted, k, chunk.length);
+            k += chunk.length;
+        }
+        return accepted;
+    }
+
+    // Tests the rows, or candidates, at positions [from, to)
+    private static int[] scanRange(List<TransactionPredicate> predicates, boolean allOf, TransactionRows rows,
+            int[] candidates, int from, int to) {
+        int[] accepted = new int[Math.min(to - from, 1024)];
+        int k = 0;
+        for (int i = from; i < to; i++) {
+            int row = candidates == null ? i : candidates[i];
+            boolean matches = allOf ? acceptsAll(predicates, rows, row) : acceptsAny(predicates, rows, row);
+            if (matches) {
+                if (k == accepted.length) {
+                    accepted = Arrays.copyOf(accepted, Math.min(to - from, k * 2));
+                }
+                accepted[k++] = row;
+            }
+        }
+        return Arrays.copyOf(accepted, k);
+    }
+
+    // Counts the rows at [from, to) accepted by every predicate
+    private static int countRange(List<TransactionPredicate> predicates, TransactionRows rows, int from, int to) {
+        int count = 0;
+        for (int row = from; row < to; row++) {
+            if (acceptsAll(predicates, rows, row)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static boolean acceptsAll(List<TransactionPredicate> predicates, TransactionRows rows, int row) {
+        for (TransactionPredicate predicate : predicates) {
+            if (!predicate.test(rows, row)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean acceptsAny(List<TransactionPredicate> predicates, TransactionRows rows, int row) {
+        for (TransactionPredicate predicate : predicates) {
+            if (predicate.test(rows, row)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Flattens nested AndFilters into a single list of conjuncts
+    private static List<TransactionPredicate> conjuncts(AndFilter and) {
+        List<TransactionPredicate> conjuncts = new ArrayList<>();
+        for (TransactionPredicate operand : and.getOperands()) {
+            if (operand instanceof AndFilter) {
+                conjuncts.addAll(conjuncts((AndFilter) operand));
+            } else {
+                conjuncts.add(operand);
+            }
+        }
+        return conjuncts;
+    }
+
+    // Orders the predicates from most to least selective
+    private static List<TransactionPredicate> bySelectivity(List<TransactionPredicate> predicates, ExpenseTrackerModel model) {
+        return bySelectivity(predicates, model, new double[predicates.size()]);
+    }
+
+    // Orders the predicates from most to least selective, and stores their estimates in that order
+    private static List<TransactionPredicate> bySelectivity(List<TransactionPredicate> predicates, ExpenseTrackerModel model,
+            double[] orderedSelectivity) {
+        final double[] selectivity = new double[predicates.size()];
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < predicates.size(); i++) {
+            selectivity[i] = predicates.get(i).estimateSelectivity(model);
+            order.add(i);
+        }
+        order.sort(Comparator.comparingDouble(i -> selectivity[i]));
+        List<TransactionPredicate> ordered = new ArrayList<>();
+        for (int i : order) {
+            orderedSelectivity[ordered.size()] = selectivity[i];
+            ordered.add(predicates.get(i));
+        }
+        return ordered;
+    }
+
+    /**
+     * Scans a range of chunks, splitting it in half until a single chunk is left.
+     * Each chunk's matches go into its own slot, so no merging is needed.
+     */
+    private static final class ScanTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<TransactionPredicate> predicates;
+        private final boolean allOf;
+        private final TransactionRows rows;
+        private final int[] candidates;
+        private final int count;
+        private final int[][] chunkRows;
+        private final int fromChunk;
+        private final int toChunk;
+
+        ScanTask(List<TransactionPredicate> predicates, boolean allOf, TransactionRows rows, int[] candidates,
+                int count, int[][] chunkRows, int fromChunk, int toChunk) {
+            this.predicates = predicates;
+            this.allOf = allOf;
+            this.rows = rows;
+            this.candidates = candidates;
+            this.count = count;
+            this.chunkRows = chunkRows;
+            this.fromChunk = fromChunk;
+            this.toChunk = toChunk;
+        }
+
+        @Override
+        protected void compute() {
+            if (toChunk - fromChunk == 1) {
+                int from = fromChunk * CHUNK_ROWS;
+                chunkRows[fromChunk] = scanRange(predicates, allOf, rows, candidates, from,
+                        Math.min(count, from + CHUNK_ROWS));
+                return;
+            }
+            int middle = (fromChunk + toChunk) >>> 1;
+            invokeAll(new ScanTask(predicates, allOf, rows, candidates, count, chunkRows, fromChunk, middle),
+                    new ScanTask(predicates, allOf, rows, candidates, count, chunkRows, middle, toChunk));
+        }
+    }
+
+    /**
+     * Counts the matches of a range of chunks, like ScanTask but without keeping the rows.
+     */
+    private static final class CountTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<TransactionPredicate> predicates;
+        private final TransactionRows rows;
+        private final int count;
+        private final int[] chunkCounts;
+        private final int fromChunk;
+        private final int toChunk;
+
+        CountTask(List<TransactionPredicate> predicates, TransactionRows rows, int count, int[] chunkCounts,
+                int fromChunk, int toChunk) {
+            this.predicates = predicates;
+            this.rows = rows;
+            this.count = count;
+            this.chunkCounts = chunkCounts;
+            this.fromChunk = fromChunk;
+            this.toChunk = toChunk;
+        }
+
+        @Override
+        protected void compute() {
+            if (toChunk - fromChunk == 1) {
+                int from = fromChunk * CHUNK_ROWS;
+                chunkCounts[fromChunk] = countRange(predicates, rows, from, Math.min(count, from + CHUNK_ROWS));
+                return;
+            }
+            int middle = (fromChunk + toChunk) >>> 1;
+            invokeAll(new CountTask(predicates, rows, count, chunkCounts, fromChunk, middle),
+                    new CountTask(predicates, rows, count, chunkCounts, middle, toChunk));
+        }
+    }
+}
@@ -2,6 +2,7 @@ package model.Filter;
 
 import java.util.List;
 
+import model.ExpenseTrackerModel;
 import model.Transaction;
 
 /**
@@ -13,4 +14,15 @@ public interface TransactionFilter {
 
   public List<Transaction> filter(List<Transaction> transactions);
 
+  /**
+   * Filters all of the transactions held by the model. Strategies that can be
+   * answered from one of the model's indexes override this to avoid a full scan.
+   *
+   * @param model The model whose transactions are filtered
+   * @return The accepted transactions, in the order they were added
+   */
+  public default List<Transaction> filter(ExpenseTrackerModel model) {
+    return filter(model.getTransactions());
+  }
+
 }
@@ -0,0 +1,87 @@
+package model.Filter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import model.ExpenseTrackerModel;
+import model.RowBitmap;
+import model.Transaction;
+import model.TransactionRows;
+
+/**
+ * A TransactionPredicate is a TransactionFilter that decides each transaction
+ * on its own, so predicates can be composed with AndFilter, OrFilter and
+ * NotFilter and planned together by the QueryPlanner.
+ *
+ * NOTE) This extends the Strategy interface, so any predicate can be given to the controller.
+ */
+public interface TransactionPredicate extends TransactionFilter {
+
+    /**
+     * @return true if the transaction is accepted by this predicate
+     */
+    public boolean test(Transaction transaction);
+
+    /**
+     * Evaluates the predicate directly against a row of the model, or of any
+     * other set of rows such as a snapshot, without creating a Transaction for it.
+     */
+    public boolean test(TransactionRows rows, int row);
+
+    /**
+     * Estimates the fraction of the model's transactions accepted by this predicate.
+     * The QueryPlanner uses it to evaluate the most selective predicates first.
+     */
+    public double estimateSelectivity(ExpenseTrackerModel model);
+
+    /**
+     * Returns the rows accepted by this predicate as a bitmap if the model's
+     * indexes can answer it, or null if the rows have to be found with a scan.
+     * The QueryPlanner combines these bitmaps with AND, OR and ANDNOT.
+     */
+    public default RowBitmap indexedBitmap(ExpenseTrackerModel model) {
+        return null;
+    }
+
+    /**
+     * Returns the ascending rows accepted by this predicate if one of the model's
+     * indexes can answer it, or null if the rows have to be found with a scan.
+     */
+    public default int[] indexedRows(ExpenseTrackerModel model) {
+        RowBitmap rows = indexedBitmap(model);
+        return rows == null ? null : rows.toArray();
+    }
+
+    @Override
+    public default List<Transaction> filter(List<Transaction> transactions) {
+        // Perform input validation
+        if (transactions == null) {
+            throw new IllegalArgumentException("The transactions list must be non-null.");
+        }
+        List<Transaction> filteredTransactions = new ArrayList<>();
+        for (Transaction transaction : transactions) {
+            if (test(transaction)) {
+                filteredTransactions.add(transaction);
+            }
+        }
+        return filteredTransactions;
+    }
+
+    /**
+     * Returns the transactions accepted by this predicate as a lazy list, which
+     * only creates a Transaction for each position that is read. The list is
+     * filtered again if a removal renumbers the model's rows.
+     */
+    @Override
+    public default List<Transaction> filter(ExpenseTrackerModel model) {
+        return model.selectRows(m -> QueryPlanner.matchingRows(this, m));
+    }
+
+    /**
+     * Counts the model's transactions accepted by this predicate.
+     */
+    public default int count(ExpenseTrackerModel model) {
+        return QueryPlanner.matchingRows(this, model).length;
+    }
+
+}
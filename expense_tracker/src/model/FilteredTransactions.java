@@ -0,0 +1,78 @@
+package model;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+import java.util.function.Function;
+
+/**
+ * The transactions at a set of rows of the model, e.g. the result of a filter.
+ *
+ * Only the ascending row numbers are kept, and a Transaction is created when
+ * its position is read. A result with millions of matches therefore costs 4
+ * bytes per match and nothing for the rows that are never looked at, such as
+ * those a user never scrolls to. size() is O(1), and getTotalCost() sums the
+ * amounts straight from the model's columns.
+ *
+ * The rows are found by a query over the model. Appending transactions does
+ * not affect them, but a removal renumbers the model's rows, so the next read
+ * after one runs the query again and the result then shows the model as it is.
+ */
+public final class FilteredTransactions extends AbstractList<Transaction> implements RandomAccess {
+
+  private final ExpenseTrackerModel model;
+  private final Function<ExpenseTrackerModel, int[]> query;
+  private int[] rows;
+  // The model's row layout when the query last ran
+  private int rowLayout;
+  // Summed on first use
+  private double totalCost = Double.NaN;
+
+  FilteredTransactions(ExpenseTrackerModel model, Function<ExpenseTrackerModel, int[]> query) {
+    this.model = model;
+    this.query = query;
+    currentRows();
+  }
+
+  @Override
+  public Transaction get(int index) {
+    return model.transactionAtRow(currentRows()[index]);
+  }
+
+  @Override
+  public int size() {
+    return currentRows().length;
+  }
+
+  /**
+   * Returns the model row of the transaction at the given index.
+   */
+  public int getRow(int index) {
+    return currentRows()[index];
+  }
+
+  /**
+   * Returns the sum of the amounts, without creating any Transaction.
+   */
+  public double getTotalCost() {
+    int[] current = currentRows();
+    if (Double.isNaN(totalCost)) {
+      double sum = 0;
+      for (int row : current) {
+        sum += model.getAmount(row);
+      }
+      totalCost = sum;
+    }
+    return totalCost;
+  }
+
+  // Runs the query again if a removal has renumbered the model's rows since it last ran
+  private int[] currentRows() {
+    if (rows == null || model.getRowLayout() != rowLayout) {
+      rowLayout = model.getRowLayout();
+      rows = query.apply(model);
+      totalCost = Double.NaN;
+    }
+    return rows;
+  }
+
+}
@@ -0,0 +1,149 @@
+package model;
+
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Open addressing hash map from long keys to int values, used to find the
+ * slot of a transaction from its id without boxing either of them.
+ * Collisions are resolved with linear probing, and removal shifts the
+ * following entries back so no deleted markers are left behind.
+ */
+final class LongIntHashMap {
+
+  static final int NO_VALUE = -1;
+
+  private static final long EMPTY_KEY = 0L;
+  private static final float LOAD_FACTOR = 0.5f;
+
+  private long[] keys;
+  private int[] values;
+  private int size;
+  private int mask;
+
+  LongIntHashMap() {
+    allocate(16);
+  }
+
+  int size() {
+    return size;
+  }
+
+  /**
+   * Returns the value for the key, or NO_VALUE if the key is absent.
+   */
+  int get(long key) {
+    checkKey(key);
+    for (int i = slotFor(key); keys[i] != EMPTY_KEY; i = (i + 1) & mask) {
+      if (keys[i] == key) {
+        return values[i];
+      }
+    }
+    return NO_VALUE;
+  }
+
+  /**
+   * Grows the table ahead of adding many keys, so it is rehashed at most once.
+   */
+  void ensureCapacity(int expectedSize) {
+    int capacity = keys.length;
+    while (expectedSize > capacity * LOAD_FACTOR) {
+      capacity *= 2;
+    }
+    if (capacity > keys.length) {
+      rehash(capacity);
+    }
+  }
+
+  void put(long key, int value) {
+    checkKey(key);
+    if (size + 1 > keys.length * LOAD_FACTOR) {
+      rehash(keys.length * 2);
+    }
+    int i = slotFor(key);
+    while (keys[i] != EMPTY_KEY) {
+      if (keys[i] == key) {
+        values[i] = value;
+        return;
+      }
+      i = (i + 1) & mask;
+    }
+    keys[i] = key;
+    values[i] = value;
+    size++;
+  }
+
+  /**
+   * Removes the key and returns its value, or NO_VALUE if the key was absent.
+   */
+  int remove(long key) {
+    checkKey(key);
+    int i = slotFor(key);
+    while (keys[i] != key) {
+      if (keys[i] == EMPTY_KEY) {
+        return NO_VALUE;
+      }
+      i = (i + 1) & mask;
+    }
+    int removed = values[i];
+    // Shift back any following entries that probed past the freed slot
+    int gap = i;
+    for (int j = (gap + 1) & mask; keys[j] != EMPTY_KEY; j = (j + 1) & mask) {
+      int home = slotFor(keys[j]);
+      if (((j - home) & mask) >= ((j - gap) & mask)) {
+        keys[gap] = keys[j];
+        values[gap] = values[j];
+        gap = j;
+      }
+    }
+    keys[gap] = EMPTY_KEY;
+    size--;
+    return removed;
+  }
+
+  /**
+   * Replaces every value. Used to renumber slots after compaction.
+   */
+  void replaceValues(IntUnaryOperator operator) {
+    for (int i = 0; i < keys.length; i++) {
+      if (keys[i] != EMPTY_KEY) {
+        values[i] = operator.applyAsInt(values[i]);
+      }
+    }
+  }
+
+  // Ids are handed out consecutively, so their low bits are already spread
+  // evenly; using them directly puts consecutive ids in consecutive slots,
+  // which keeps bulk loads and lookups of recent ids cache friendly
+  private int slotFor(long key) {
+    return (int) (key ^ (key >>> 32)) & mask;
+  }
+
+  private void rehash(int capacity) {
+    long[] oldKeys = keys;
+    int[] oldValues = values;
+    allocate(capacity);
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldKeys[i] != EMPTY_KEY) {
+        int j = slotFor(oldKeys[i]);
+        while (keys[j] != EMPTY_KEY) {
+          j = (j + 1) & mask;
+        }
+        keys[j] = oldKeys[i];
+        values[j] = oldValues[i];
+      }
+    }
+  }
+
+  private void allocate(int capacity) {
+    keys = new long[capacity];
+    values = new int[capacity];
+    mask = capacity - 1;
+  }
+
+  private static void checkKey(long key) {
+    if (key == EMPTY_KEY) {
+      throw new IllegalArgumentException("0 is not a valid key.");
+    }
+  }
+
+}
@@ -0,0 +1,243 @@
+package model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Copy of the columns of a model together with the row order of its amount
+ * index, and its binary file format.
+ *
+ * A snapshot file holds a small header and the category dictionary followed
+ * by each column as one contiguous little-endian array: ids, amounts, epoch
+ * millis, the rows sorted by amount, and the category codes. Loading maps each
+ * column and copies it into a Java array in bulk, and the amount order lets the
+ * amount index be rebuilt without sorting, so loading is a few linear passes.
+ *
+ * The file ends with a CRC32 of everything before it, which loading checks, so
+ * a damaged file is reported instead of producing wrong totals or a wrong
+ * amount index. Files of the first format have no checksum; loading checks
+ * their amount order and sorts the rows again if it is wrong.
+ */
+final class ModelImage {
+
+  // "ETSNAP02", written since the files carry a checksum
+  private static final long MAGIC = 0x4554534E41503032L;
+  // "ETSNAP01", without a checksum
+  private static final long MAGIC_UNCHECKED = 0x4554534E41503031L;
+  private static final int HEADER_SIZE = 16;
+  private static final int BUFFER_SIZE = 1 << 20;
+
+  final int size;
+  final long[] ids;
+  final double[] amounts;
+  final long[] timestamps;
+  // Rows in ascending order of amount, ties in ascending row order
+  final int[] amountOrder;
+  // Category codes
+  final short[] categoryCodes;
+
+  ModelImage(int size, long[] ids, double[] amounts, long[] timestamps, int[] amountOrder,
+      short[] categoryCodes) {
+    this.size = size;
+    this.ids = ids;
+    this.amounts = amounts;
+    this.timestamps = timestamps;
+    this.amountOrder = amountOrder;
+    this.categoryCodes = categoryCodes;
+  }
+
+  /**
+   * Writes the image to the file, replacing its contents, and forces it to disk.
+   */
+  void writeTo(Path path) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+      ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+      CRC32 crc = new CRC32();
+      buffer.putLong(MAGIC);
+      buffer.putInt(size);
+      Category[] categories = Category.values();
+      buffer.putInt(categories.length);
+      for (Category category : categories) {
+        byte[] bytes = category.getWord().getBytes(StandardCharsets.UTF_8);
+        ensureRoom(channel, buffer, crc, 4 + bytes.length);
+        buffer.putInt(bytes.length);
+        buffer.put(bytes);
+      }
+      ensureRoom(channel, buffer, crc, 8);
+      while (buffer.position() % 8 != 0) {
+        buffer.put((byte) 0);
+      }
+      for (int i = 0; i < size; i++) {
+        ensureRoom(channel, buffer, crc, 8);
+        buffer.putLong(ids[i]);
+      }
+      for (int i = 0; i < size; i++) {
+        ensureRoom(channel, buffer, crc, 8);
+        buffer.putDouble(amounts[i]);
+      }
+      for (int i = 0; i < size; i++) {
+        ensureRoom(channel, buffer, crc, 8);
+        buffer.putLong(timestamps[i]);
+      }
+      for (int i = 0; i < size; i++) {
+        ensureRoom(channel, buffer, crc, 4);
+        buffer.putInt(amountOrder[i]);
+      }
+      for (int i = 0; i < size; i++) {
+        ensureRoom(channel, buffer, crc, 2);
+        buffer.putShort(categoryCodes[i]);
+      }
+      flush(channel, buffer, crc);
+      buffer.putLong(crc.getValue());
+      // Written last, so a file cut short is recognized
+      buffer.putLong(MAGIC);
+      buffer.flip();
+      write(channel, buffer);
+      channel.force(true);
+    }
+  }
+
+  /**
+   * Reads an image written by writeTo.
+   *
+   * @throws IOException If the file is not a complete snapshot or fails its checksum
+   */
+  static ModelImage readFrom(Path path) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      long fileSize = channel.size();
+      if (fileSize < HEADER_SIZE) {
+        throw new IOException("The snapshot " + path + " is incomplete.");
+      }
+      MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(fileSize, 1 << 16));
+      header.order(ByteOrder.LITTLE_ENDIAN);
+      long magic = header.getLong();
+      if (magic != MAGIC && magic != MAGIC_UNCHECKED) {
+        throw new IOException("The file " + path + " is not a snapshot.");
+      }
+      boolean checked = magic == MAGIC;
+      int size = header.getInt();
+      int categoryCount = header.getInt();
+      if (size < 0 || categoryCount < 0 || categoryCount > Short.MAX_VALUE + 1) {
+        throw new IOException("The snapshot " + path + " is corrupt.");
+      }
+      String[] categoryNames = new String[categoryCount];
+      try {
+        for (int i = 0; i < categoryCount; i++) {
+          byte[] bytes = new byte[header.getInt()];
+          header.get(bytes);
+          categoryNames[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+      } catch (RuntimeException e) {
+        throw new IOException("The snapshot " + path + " is corrupt.", e);
+      }
+      long position = (header.position() + 7) & ~7L;
+      if (fileSize != position + (long) size * 30 + (checked ? 16 : 8)) {
+        throw new IOException("The snapshot " + path + " is incomplete.");
+      }
+
+      CRC32 crc = new CRC32();
+      crc.update(column(channel, 0, position));
+      long[] ids = new long[size];
+      column(channel, position, size * 8L, crc).asLongBuffer().get(ids);
+      position += size * 8L;
+      double[] amounts = new double[size];
+      column(channel, position, size * 8L, crc).asDoubleBuffer().get(amounts);
+      position += size * 8L;
+      long[] timestamps = new long[size];
+      column(channel, position, size * 8L, crc).asLongBuffer().get(timestamps);
+      position += size * 8L;
+      int[] amountOrder = new int[size];
+      column(channel, position, size * 4L, crc).asIntBuffer().get(amountOrder);
+      position += size * 4L;
+      short[] categoryCodes = new short[size];
+      column(channel, position, size * 2L, crc).asShortBuffer().get(categoryCodes);
+      position += size * 2L;
+      if (checked) {
+        if (column(channel, position, 8).getLong() != crc.getValue()) {
+          throw new IOException("The snapshot " + path + " is corrupt.");
+        }
+        position += 8;
+      }
+      if (column(channel, position, 8).getLong() != magic) {
+        throw new IOException("The snapshot " + path + " is incomplete.");
+      }
+      if (!checked && !isAmountOrder(amountOrder, amounts)) {
+        amountOrder = TransactionStore.amountOrder(amounts);
+      }
+      // The file's codes index its dictionary, which older files wrote in any letter case
+      short[] wordCodes = new short[categoryCount];
+      for (int i = 0; i < categoryCount; i++) {
+        Category category = Category.lookup(categoryNames[i]);
+        wordCodes[i] = category == null ? -1 : (short) category.getCode();
+      }
+      for (int i = 0; i < size; i++) {
+        int code = categoryCodes[i];
+        if (code < 0 || code >= categoryCount || wordCodes[code] < 0) {
+          throw new IOException("The snapshot " + path + " is corrupt.");
+        }
+        categoryCodes[i] = wordCodes[code];
+      }
+      return new ModelImage(size, ids, amounts, timestamps, amountOrder, categoryCodes);
+    }
+  }
+
+  // Returns true if the order holds every row once, in ascending order of amount and ties in row order
+  private static boolean isAmountOrder(int[] order, double[] amounts) {
+    long[] seen = new long[(amounts.length + 63) >>> 6];
+    for (int i = 0; i < order.length; i++) {
+      int row = order[i];
+      if (row < 0 || row >= amounts.length || (seen[row >>> 6] & (1L << row)) != 0) {
+        return false;
+      }
+      seen[row >>> 6] |= 1L << row;
+      if (i > 0) {
+        int previous = order[i - 1];
+        if (!(amounts[previous] < amounts[row] || (amounts[previous] == amounts[row] && previous < row))) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  private static ByteBuffer column(FileChannel channel, long position, long length) throws IOException {
+    return channel.map(FileChannel.MapMode.READ_ONLY, position, length).order(ByteOrder.LITTLE_ENDIAN);
+  }
+
+  // Maps a column and adds its bytes to the checksum
+  private static ByteBuffer column(FileChannel channel, long position, long length, CRC32 crc) throws IOException {
+    ByteBuffer column = column(channel, position, length);
+    crc.update(column.duplicate());
+    return column;
+  }
+
+  private static void ensureRoom(FileChannel channel, ByteBuffer buffer, CRC32 crc, int bytes) throws IOException {
+    if (buffer.remaining() < bytes) {
+      flush(channel, buffer, crc);
+    }
+  }
+
+  // Writes the buffered bytes and adds them to the checksum
+  private static void flush(FileChannel channel, ByteBuffer buffer, CRC32 crc) throws IOException {
+    buffer.flip();
+    crc.update(buffer.duplicate());
+    write(channel, buffer);
+  }
+
+  // Writes a flipped buffer and clears it
+  private static void write(FileChannel channel, ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    buffer.clear();
+  }
+
+}
@@ -0,0 +1,616 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * A compressed set of row numbers, used by the model's indexes and by the
+ * filters to combine their results without comparing Transactions.
+ *
+ * Rows are split Roaring-style into containers of 2^16 rows keyed by the high
+ * 16 bits of the row. A container holding at most ARRAY_LIMIT rows stores the
+ * low 16 bits of each as a sorted char array; a fuller one is a 65536-bit
+ * bitmap. Sparse sets stay small, dense sets cost one bit per row, and AND, OR
+ * and ANDNOT work container by container on sorted runs or whole words.
+ *
+ * The set operations return new bitmaps and never change their operands.
+ */
+public final class RowBitmap {
+
+  // A container holding more rows than this is stored as a bitmap
+  static final int ARRAY_LIMIT = 4096;
+  private static final int WORDS = (1 << 16) / 64;
+
+  // The high 16 bits of the rows in each container, ascending
+  private char[] keys;
+  private Container[] containers;
+  private int size;
+  private int cardinality;
+
+  RowBitmap() {
+    this(4);
+  }
+
+  private RowBitmap(int capacity) {
+    keys = new char[Math.max(capacity, 1)];
+    containers = new Container[keys.length];
+  }
+
+  /**
+   * Returns a bitmap holding the given rows, which may be in any order.
+   */
+  public static RowBitmap fromRows(int[] rows) {
+    if (rows == null) {
+      throw new IllegalArgumentException("The rows must be non-null.");
+    }
+    for (int i = 1; i < rows.length; i++) {
+      if (rows[i - 1] >= rows[i]) {
+        rows = rows.clone();
+        Arrays.sort(rows);
+        break;
+      }
+    }
+    RowBitmap bitmap = new RowBitmap();
+    for (int row : rows) {
+      bitmap.add(row);
+    }
+    return bitmap;
+  }
+
+  /**
+   * Returns a bitmap holding the rows from, from + 1, ..., to - 1.
+   */
+  public static RowBitmap range(int from, int to) {
+    if (from < 0 || to < from) {
+      throw new IllegalArgumentException("Invalid row range");
+    }
+    if (from == to) {
+      // (to - 1) >>> 16 would size the key arrays for every possible key
+      return new RowBitmap();
+    }
+    RowBitmap bitmap = new RowBitmap(((to - 1) >>> 16) - (from >>> 16) + 1);
+    int start = from;
+    while (start < to) {
+      int end = Math.min(to, ((start >>> 16) + 1) << 16);
+      Container container;
+      if (end - start <= ARRAY_LIMIT) {
+        ArrayContainer array = new ArrayContainer(end - start);
+        for (int row = start; row < end; row++) {
+          array.values[array.cardinality++] = (char) row;
+        }
+        container = array;
+      } else {
+        BitmapContainer bits = new BitmapContainer();
+        bits.setRange(start & 0xFFFF, ((end - 1) & 0xFFFF) + 1);
+        container = bits;
+      }
+      bitmap.append((char) (start >>> 16), container);
+      start = end;
+    }
+    return bitmap;
+  }
+
+  public int getCardinality() {
+    return cardinality;
+  }
+
+  public boolean isEmpty() {
+    return cardinality == 0;
+  }
+
+  public boolean contains(int row) {
+    if (row < 0) {
+      return false;
+    }
+    int index = indexOf((char) (row >>> 16));
+    return index >= 0 && containers[index].contains((char) row);
+  }
+
+  /**
+   * Returns the rows held by this bitmap in ascending order.
+   */
+  public int[] toArray() {
+    int[] rows = new int[cardinality];
+    int k = 0;
+    for (int i = 0; i < size; i++) {
+      k = containers[i].copyTo(keys[i] << 16, rows, k);
+    }
+    return rows;
+  }
+
+  /**
+   * Returns the rows held by both bitmaps.
+   */
+  public RowBitmap and(RowBitmap other) {
+    RowBitmap result = new RowBitmap(Math.min(size, other.size));
+    int i = 0;
+    int j = 0;
+    while (i < size && j < other.size) {
+      if (keys[i] < other.keys[j]) {
+        i++;
+      } else if (keys[i] > other.keys[j]) {
+        j++;
+      } else {
+        result.append(keys[i], and(containers[i], other.containers[j]));
+        i++;
+        j++;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns the rows held by either bitmap.
+   */
+  public RowBitmap or(RowBitmap other) {
+    RowBitmap result = new RowBitmap(size + other.size);
+    int i = 0;
+    int j = 0;
+    while (i < size || j < other.size) {
+      if (j == other.size || (i < size && keys[i] < other.keys[j])) {
+        result.append(keys[i], containers[i].copy());
+        i++;
+      } else if (i == size || keys[i] > other.keys[j]) {
+        result.append(other.keys[j], other.containers[j].copy());
+        j++;
+      } else {
+        result.append(keys[i], or(containers[i], other.containers[j]));
+        i++;
+        j++;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns the rows held by this bitmap but not by the other one.
+   */
+  public RowBitmap andNot(RowBitmap other) {
+    RowBitmap result = new RowBitmap(size);
+    int j = 0;
+    for (int i = 0; i < size; i++) {
+      while (j < other.size && other.keys[j] < keys[i]) {
+        j++;
+      }
+      if (j < other.size && other.keys[j] == keys[i]) {
+        result.append(keys[i], andNot(containers[i], other.containers[j]));
+      } else {
+        result.append(keys[i], containers[i].copy());
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Adds a row. Adding rows in ascending order, as the indexes do, is O(1).
+   */
+  void add(int row) {
+    if (row < 0) {
+      throw new IllegalArgumentException("Rows must be non-negative.");
+    }
+    char key = (char) (row >>> 16);
+    int index;
+    if (size > 0 && keys[size - 1] == key) {
+      index = size - 1;
+    } else if (size == 0 || keys[size - 1] < key) {
+      index = size;
+      insert(index, key, new ArrayContainer(4));
+    } else {
+      index = indexOf(key);
+      if (index < 0) {
+        index = -index - 1;
+        insert(index, key, new ArrayContainer(4));
+      }
+    }
+    Container container = containers[index];
+    int before = container.cardinality;
+    containers[index] = container.add((char) row);
+    cardinality += containers[index].cardinality - before;
+  }
+
+  /**
+   * Removes a row, if present.
+   */
+  void remove(int row) {
+    if (row < 0) {
+      return;
+    }
+    int index = indexOf((char) (row >>> 16));
+    if (index < 0) {
+      return;
+    }
+    Container container = containers[index];
+    int before = container.cardinality;
+    container = container.remove((char) row);
+    cardinality -= before - container.cardinality;
+    if (container.cardinality > 0) {
+      containers[index] = container;
+      return;
+    }
+    System.arraycopy(keys, index + 1, keys, index, size - index - 1);
+    System.arraycopy(containers, index + 1, containers, index, size - index - 1);
+    size--;
+    containers[size] = null;
+  }
+
+  /**
+   * Returns a copy that later changes to this bitmap do not affect.
+   */
+  RowBitmap copy() {
+    RowBitmap copy = new RowBitmap(size);
+    for (int i = 0; i < size; i++) {
+      copy.append(keys[i], containers[i].copy());
+    }
+    return copy;
+  }
+
+  /**
+   * Returns a bitmap holding newRows[r] for every row r of this one, dropping
+   * the rows mapped to -1. Used to renumber rows after the store has been compacted.
+   */
+  RowBitmap remap(int[] newRows) {
+    RowBitmap remapped = new RowBitmap();
+    for (int row : toArray()) {
+      int newRow = newRows[row];
+      if (newRow >= 0) {
+        remapped.add(newRow);
+      }
+    }
+    return remapped;
+  }
+
+  private int indexOf(char key) {
+    return Arrays.binarySearch(keys, 0, size, key);
+  }
+
+  // Appends a container with a key above every other key, skipping empty ones
+  private void append(char key, Container container) {
+    if (container.cardinality == 0) {
+      return;
+    }
+    insert(size, key, container);
+  }
+
+  private void insert(int index, char key, Container container) {
+    if (size == keys.length) {
+      keys = Arrays.copyOf(keys, size * 2);
+      containers = Arrays.copyOf(containers, size * 2);
+    }
+    System.arraycopy(keys, index, keys, index + 1, size - index);
+    System.arraycopy(containers, index, containers, index + 1, size - index);
+    keys[index] = key;
+    containers[index] = container;
+    size++;
+    cardinality += container.cardinality;
+  }
+
+  private static Container and(Container a, Container b) {
+    if (a instanceof ArrayContainer && b instanceof ArrayContainer) {
+      return ((ArrayContainer) a).and((ArrayContainer) b);
+    }
+    if (a instanceof ArrayContainer) {
+      return ((ArrayContainer) a).retain((BitmapContainer) b, true);
+    }
+    if (b instanceof ArrayContainer) {
+      return ((ArrayContainer) b).retain((BitmapContainer) a, true);
+    }
+    long[] words = new long[WORDS];
+    long[] x = ((BitmapContainer) a).words;
+    long[] y = ((BitmapContainer) b).words;
+    for (int i = 0; i < WORDS; i++) {
+      words[i] = x[i] & y[i];
+    }
+    return BitmapContainer.of(words);
+  }
+
+  private static Container or(Container a, Container b) {
+    if (a instanceof ArrayContainer && b instanceof ArrayContainer
+        && a.cardinality + b.cardinality <= ARRAY_LIMIT) {
+      return ((ArrayContainer) a).or((ArrayContainer) b);
+    }
+    long[] words = a.toWords();
+    if (b instanceof ArrayContainer) {
+      ArrayContainer array = (ArrayContainer) b;
+      for (int i = 0; i < array.cardinality; i++) {
+        char low = array.values[i];
+        words[low >>> 6] |= 1L << low;
+      }
+    } else {
+      long[] y = ((BitmapContainer) b).words;
+      for (int i = 0; i < WORDS; i++) {
+        words[i] |= y[i];
+      }
+    }
+    return BitmapContainer.of(words);
+  }
+
+  private static Container andNot(Container a, Container b) {
+    if (a instanceof ArrayContainer && b instanceof ArrayContainer) {
+      return ((ArrayContainer) a).andNot((ArrayContainer) b);
+    }
+    if (a instanceof ArrayContainer) {
+      return ((ArrayContainer) a).retain((BitmapContainer) b, false);
+    }
+    long[] words = ((BitmapContainer) a).words.clone();
+    if (b instanceof ArrayContainer) {
+      ArrayContainer array = (ArrayContainer) b;
+      for (int i = 0; i < array.cardinality; i++) {
+        char low = array.values[i];
+        words[low >>> 6] &= ~(1L << low);
+      }
+    } else {
+      long[] y = ((BitmapContainer) b).words;
+      for (int i = 0; i < WORDS; i++) {
+        words[i] &= ~y[i];
+      }
+    }
+    return BitmapContainer.of(words);
+  }
+
+  /**
+   * The rows of a bitmap that share their high 16 bits, stored by their low 16 bits.
+   */
+  private abstract static class Container {
+
+    int cardinality;
+
+    abstract boolean contains(char low);
+
+    // Adds a row, returning the container that now holds it
+    abstract Container add(char low);
+
+    // Removes a row, returning the container that now holds the rest
+    abstract Container remove(char low);
+
+    // Copies the rows, offset by high, into rows from position k; returns the next position
+    abstract int copyTo(int high, int[] rows, int k);
+
+    abstract long[] toWords();
+
+    abstract Container copy();
+
+  }
+
+  private static final class ArrayContainer extends Container {
+
+    char[] values;
+
+    ArrayContainer(int capacity) {
+      values = new char[capacity];
+    }
+
+    @Override
+    boolean contains(char low) {
+      return Arrays.binarySearch(values, 0, cardinality, low) >= 0;
+    }
+
+    @Override
+    Container add(char low) {
+      int index = cardinality;
+      if (cardinality > 0 && values[cardinality - 1] >= low) {
+        index = Arrays.binarySearch(values, 0, cardinality, low);
+        if (index >= 0) {
+          return this;
+        }
+        index = -index - 1;
+      }
+      if (cardinality == ARRAY_LIMIT) {
+        BitmapContainer bitmap = new BitmapContainer(toWords());
+        bitmap.cardinality = cardinality;
+        return bitmap.add(low);
+      }
+      if (cardinality == values.length) {
+        values = Arrays.copyOf(values, Math.min(ARRAY_LIMIT, cardinality * 2));
+      }
+      System.arraycopy(values, index, values, index + 1, cardinality - index);
+      values[index] = low;
+      cardinality++;
+      return this;
+    }
+
+    @Override
+    Container remove(char low) {
+      int index = Arrays.binarySearch(values, 0, cardinality, low);
+      if (index >= 0) {
+        System.arraycopy(values, index + 1, values, index, cardinality - index - 1);
+        cardinality--;
+      }
+      return this;
+    }
+
+    @Override
+    int copyTo(int high, int[] rows, int k) {
+      for (int i = 0; i < cardinality; i++) {
+        rows[k++] = high | values[i];
+      }
+      return k;
+    }
+
+    @Override
+    long[] toWords() {
+      long[] words = new long[WORDS];
+      for (int i = 0; i < cardinality; i++) {
+        words[values[i] >>> 6] |= 1L << values[i];
+      }
+      return words;
+    }
+
+    @Override
+    Container copy() {
+      ArrayContainer copy = new ArrayContainer(Math.max(cardinality, 1));
+      System.arraycopy(values, 0, copy.values, 0, cardinality);
+      copy.cardinality = cardinality;
+      return copy;
+    }
+
+    ArrayContainer and(ArrayContainer other) {
+      ArrayContainer result = new ArrayContainer(Math.max(Math.min(cardinality, other.cardinality), 1));
+      int i = 0;
+      int j = 0;
+      while (i < cardinality && j < other.cardinality) {
+        if (values[i] < other.values[j]) {
+          i++;
+        } else if (values[i] > other.values[j]) {
+          j++;
+        } else {
+          result.values[result.cardinality++] = values[i];
+          i++;
+          j++;
+        }
+      }
+      return result;
+    }
+
+    ArrayContainer or(ArrayContainer other) {
+      ArrayContainer result = new ArrayContainer(Math.max(cardinality + other.cardinality, 1));
+      char[] merged = result.values;
+      int i = 0;
+      int j = 0;
+      int k = 0;
+      while (i < cardinality && j < other.cardinality) {
+        if (values[i] < other.values[j]) {
+          merged[k++] = values[i++];
+        } else if (values[i] > other.values[j]) {
+          merged[k++] = other.values[j++];
+        } else {
+          merged[k++] = values[i++];
+          j++;
+        }
+      }
+      while (i < cardinality) {
+        merged[k++] = values[i++];
+      }
+      while (j < other.cardinality) {
+        merged[k++] = other.values[j++];
+      }
+      result.cardinality = k;
+      return result;
+    }
+
+    ArrayContainer andNot(ArrayContainer other) {
+      ArrayContainer result = new ArrayContainer(Math.max(cardinality, 1));
+      int j = 0;
+      for (int i = 0; i < cardinality; i++) {
+        while (j < other.cardinality && other.values[j] < values[i]) {
+          j++;
+        }
+        if (j == other.cardinality || other.values[j] != values[i]) {
+          result.values[result.cardinality++] = values[i];
+        }
+      }
+      return result;
+    }
+
+    // Keeps the rows that are (or, if present is false, are not) set in the bitmap
+    ArrayContainer retain(BitmapContainer bitmap, boolean present) {
+      ArrayContainer result = new ArrayContainer(Math.max(cardinality, 1));
+      for (int i = 0; i < cardinality; i++) {
+        if (bitmap.contains(values[i]) == present) {
+          result.values[result.cardinality++] = values[i];
+        }
+      }
+      return result;
+    }
+
+  }
+
+  private static final class BitmapContainer extends Container {
+
+    final long[] words;
+
+    BitmapContainer() {
+      this(new long[WORDS]);
+    }
+
+    BitmapContainer(long[] words) {
+      this.words = words;
+    }
+
+    // Wraps the words, converting them to an array container if only a few bits are set
+    static Container of(long[] words) {
+      int count = 0;
+      for (long word : words) {
+        count += Long.bitCount(word);
+      }
+      if (count <= ARRAY_LIMIT) {
+        ArrayContainer array = new ArrayContainer(Math.max(count, 1));
+        for (int i = 0; i < WORDS; i++) {
+          for (long word = words[i]; word != 0; word &= word - 1) {
+            array.values[array.cardinality++] = (char) ((i << 6) + Long.numberOfTrailingZeros(word));
+          }
+        }
+        return array;
+      }
+      BitmapContainer bitmap = new BitmapContainer(words);
+      bitmap.cardinality = count;
+      return bitmap;
+    }
+
+    // Sets the bits [from, to)
+    void setRange(int from, int to) {
+      int first = from >>> 6;
+      int last = (to - 1) >>> 6;
+      long firstMask = -1L << from;
+      long lastMask = -1L >>> -to;
+      if (first == last) {
+        words[first] |= firstMask & lastMask;
+      } else {
+        words[first] |= firstMask;
+        Arrays.fill(words, first + 1, last, -1L);
+        words[last] |= lastMask;
+      }
+      cardinality += to - from;
+    }
+
+    @Override
+    boolean contains(char low) {
+      return (words[low >>> 6] & (1L << low)) != 0;
+    }
+
+    @Override
+    Container add(char low) {
+      long bit = 1L << low;
+      if ((words[low >>> 6] & bit) == 0) {
+        words[low >>> 6] |= bit;
+        cardinality++;
+      }
+      return this;
+    }
+
+    @Override
+    Container remove(char low) {
+      long bit = 1L << low;
+      if ((words[low >>> 6] & bit) != 0) {
+        words[low >>> 6] &= ~bit;
+        cardinality--;
+        if (cardinality == ARRAY_LIMIT) {
+          return of(words);
+        }
+      }
+      return this;
+    }
+
+    @Override
+    int copyTo(int high, int[] rows, int k) {
+      for (int i = 0; i < WORDS; i++) {
+        for (long word = words[i]; word != 0; word &= word - 1) {
+          rows[k++] = high | ((i << 6) + Long.numberOfTrailingZeros(word));
+        }
+      }
+      return k;
+    }
+
+    @Override
+    long[] toWords() {
+      return words.clone();
+    }
+
+    @Override
+    Container copy() {
+      BitmapContainer copy = new BitmapContainer(words.clone());
+      copy.cardinality = cardinality;
+      return copy;
+    }
+
+  }
+
+}
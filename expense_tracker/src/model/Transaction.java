@@ -1,49 +1,185 @@
 package model;
 
 import controller.InputValidation;
+import controller.ValidatedRecord;
 
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class Transaction {
 
   private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("dd-MM-yyyy HH:mm");
+  private static final long MILLIS_PER_MINUTE = 60_000L;
+
+  // Recently formatted minutes, indexed by the low bits of the minute. Entries are
+  // immutable, so threads may race on a slot without seeing a half-built entry.
+  private static final FormattedMinute[] FORMATTED_MINUTES = new FormattedMinute[64];
+
+  // Source of the ids, which are unique and increase in creation order
+  private static final AtomicLong NEXT_ID = new AtomicLong(1);
     
   // final means that the variable cannot be changed
+  private final long id;
   private final double amount;
-  private final String category;
-  private final String timestamp;
+  private final Category category;
+  private final long epochMillis;
+  // Formatted on first use, since most transactions are never displayed
+  private String timestamp;
 
   public Transaction(double amount, String category) {
+    this(amount, category, System.currentTimeMillis());
+  }
+
+  /**
+   * Creates a transaction that happened at the given time instead of now,
+   * e.g. when loading historical data.
+   *
+   * @param epochMillis The time of the transaction in milliseconds since the epoch
+   */
+  public Transaction(double amount, String category, long epochMillis) {
     // Since this is a public constructor, perform input validation
     // to guarantee that the amount and category are both valid
     if (!InputValidation.isValidAmount(amount)) {
       throw new IllegalArgumentException("The amount is not valid.");
     }
-    if (!InputValidation.isValidCategory(category)) {
-      throw new IllegalArgumentException("The category is not valid.");
-    }
+    // Parsing the category validates it and finds its Category in one step
+    Category categoryValue = Category.parse(category);
       
+    this.id = NEXT_ID.getAndIncrement();
+    this.amount = amount;
+    this.category = categoryValue;
+    this.epochMillis = epochMillis;
+  }
+
+  /**
+   * Creates a transaction from values that InputValidation has already
+   * checked, without checking them again.
+   */
+  public Transaction(ValidatedRecord record) {
+    this(record, System.currentTimeMillis());
+  }
+
+  /**
+   * Creates a transaction from checked values that happened at the given time
+   * instead of now, without checking the values again.
+   */
+  public Transaction(ValidatedRecord record, long epochMillis) {
+    if (record == null) {
+      throw new IllegalArgumentException("The record must be non-null.");
+    }
+    this.id = NEXT_ID.getAndIncrement();
+    this.amount = record.getAmount();
+    this.category = record.getCategoryValue();
+    this.epochMillis = epochMillis;
+  }
+
+  /**
+   * Creates a transaction that happened at the given instant.
+   */
+  public static Transaction at(double amount, String category, Instant instant) {
+    return new Transaction(amount, category, instant.toEpochMilli());
+  }
+
+  /**
+   * Creates a view of a row that is already stored in the model.
+   * The values were validated when the row was added, so they are not checked again.
+   */
+  Transaction(long id, double amount, Category category, long epochMillis) {
+    this.id = id;
     this.amount = amount;
     this.category = category;
-    this.timestamp = generateTimestamp();
+    this.epochMillis = epochMillis;
+  }
+
+  /**
+   * Returns the id of this transaction. Ids are assigned when a transaction is
+   * created, never change and increase in creation order.
+   */
+  public long getId() {
+    return id;
+  }
+
+  /**
+   * Reserves a block of consecutive ids for rows that are added to the model
+   * without creating a Transaction for each of them, e.g. by a bulk import.
+   *
+   * @return The first id of the block
+   */
+  static long allocateIds(int count) {
+    return NEXT_ID.getAndAdd(count);
+  }
+
+  /**
+   * Makes sure later ids are greater than the given one, e.g. after
+   * transactions with their original ids have been read back from disk.
+   */
+  static void reserveIdsThrough(long id) {
+    NEXT_ID.accumulateAndGet(id + 1, Math::max);
   }
 
   public double getAmount() {
     return amount;
   }
 
+  /**
+   * Returns the lowercase word of this transaction's Category, whatever
+   * letter case it was entered in.
+   */
   public String getCategory() {
+    return category.getWord();
+  }
+
+  public Category getCategoryValue() {
     return category;
   }
+
+  /**
+   * Returns the code of this transaction's Category.
+   */
+  public int getCategoryCode() {
+    return category.getCode();
+  }
   
   public String getTimestamp() {
+    if (timestamp == null) {
+      timestamp = formatTimestamp(epochMillis);
+    }
     return timestamp;
   }
 
-  // private helper method to generate timestamp
-  private String generateTimestamp() {
-     return LocalDateTime.now().format(DATE_FORMATTER);
+  public long getEpochMillis() {
+    return epochMillis;
+  }
+
+  // private helper method to format a timestamp, reusing the text of recently formatted minutes
+  private static String formatTimestamp(long epochMillis) {
+    long minute = Math.floorDiv(epochMillis, MILLIS_PER_MINUTE);
+    ZoneId zone = ZoneId.systemDefault();
+    int slot = (int) (minute & (FORMATTED_MINUTES.length - 1));
+    FormattedMinute cached = FORMATTED_MINUTES[slot];
+    if (cached == null || cached.minute != minute || !cached.zone.equals(zone)) {
+      String text = LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), zone).format(DATE_FORMATTER);
+      cached = new FormattedMinute(minute, zone, text);
+      FORMATTED_MINUTES[slot] = cached;
+    }
+    return cached.text;
+  }
+
+  private static final class FormattedMinute {
+
+    private final long minute;
+    private final ZoneId zone;
+    private final String text;
+
+    FormattedMinute(long minute, ZoneId zone, String text) {
+      this.minute = minute;
+      this.zone = zone;
+      this.text = text;
+    }
+
   }
 
 }
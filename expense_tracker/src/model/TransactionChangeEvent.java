@@ -0,0 +1,76 @@
+package model;
+
+/**
+ * Describes a change to an ExpenseTrackerModel: a single transaction added or
+ * removed, or a bulk change such as a batch add, an import or several changes
+ * coalesced into one event.
+ */
+public final class TransactionChangeEvent {
+
+  public enum Type {
+    ADDED,
+    REMOVED,
+    BULK
+  }
+
+  private final Type type;
+  private final Transaction transaction;
+  private final int addedCount;
+  private final int removedCount;
+  private final long version;
+
+  private TransactionChangeEvent(Type type, Transaction transaction, int addedCount, int removedCount, long version) {
+    this.type = type;
+    this.transaction = transaction;
+    this.addedCount = addedCount;
+    this.removedCount = removedCount;
+    this.version = version;
+  }
+
+  static TransactionChangeEvent added(Transaction transaction, long version) {
+    return new TransactionChangeEvent(Type.ADDED, transaction, 1, 0, version);
+  }
+
+  static TransactionChangeEvent removed(Transaction transaction, long version) {
+    return new TransactionChangeEvent(Type.REMOVED, transaction, 0, 1, version);
+  }
+
+  static TransactionChangeEvent bulk(int addedCount, int removedCount, long version) {
+    return new TransactionChangeEvent(Type.BULK, null, addedCount, removedCount, version);
+  }
+
+  /**
+   * Returns a BULK event covering this event followed by the later one.
+   */
+  TransactionChangeEvent coalesce(TransactionChangeEvent later) {
+    return bulk(addedCount + later.addedCount, removedCount + later.removedCount,
+        Math.max(version, later.version));
+  }
+
+  public Type getType() {
+    return type;
+  }
+
+  /**
+   * Returns the transaction that was added or removed, or null for a BULK event.
+   */
+  public Transaction getTransaction() {
+    return transaction;
+  }
+
+  public int getAddedCount() {
+    return addedCount;
+  }
+
+  public int getRemovedCount() {
+    return removedCount;
+  }
+
+  /**
+   * Returns the model's version after the change, see ExpenseTrackerModel.getVersion().
+   */
+  public long getVersion() {
+    return version;
+  }
+
+}
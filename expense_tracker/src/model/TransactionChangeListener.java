@@ -0,0 +1,11 @@
+package model;
+
+/**
+ * Notified after the transactions held by an ExpenseTrackerModel change, on
+ * the thread that changed them.
+ */
+public interface TransactionChangeListener {
+
+  public void transactionsChanged(TransactionChangeEvent event);
+
+}
@@ -0,0 +1,597 @@
+package model;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only binary log of the changes made to an ExpenseTrackerModel, so its
+ * transactions survive a restart.
+ *
+ * Every added or removed transaction is written as one fixed-size record
+ * ending in a CRC32 of its contents. Appending a record only copies it into a
+ * buffer; a background thread writes the buffer to the file and forces it to
+ * disk at most maxCommitDelayMillis after the first pending record was
+ * appended, so records appended close together share one fsync (group commit).
+ * Persisting a transaction therefore costs O(1) I/O however many are stored.
+ *
+ * The journal lives in a directory as a series of numbered segment files.
+ * After checkpointRecords records the journal takes a checkpoint: it starts a
+ * new segment, takes a TransactionSnapshot of the model, and copies it into a
+ * snapshot file in the background (see ModelImage). Once the snapshot is on disk, the segments and
+ * snapshots it replaces are deleted, so the journal stays bounded.
+ *
+ * Opening a journal loads the newest snapshot into an empty model, replays the
+ * segments written after it, and then logs the model's later changes. Replay
+ * of a segment stops at the first record that is incomplete or fails its
+ * checksum, e.g. one torn by a crash during a write, and that record and
+ * anything after it are cut from the segment.
+ */
+public final class TransactionJournal implements Closeable {
+
+  public static final long DEFAULT_COMMIT_DELAY_MILLIS = 10;
+  public static final long DEFAULT_CHECKPOINT_RECORDS = 1 << 20;
+
+  // "ETJRNL01", written at the start of every segment
+  private static final long MAGIC = 0x45544A524E4C3031L;
+  private static final int HEADER_SIZE = 8;
+
+  // Record layout: type, category length, category (ASCII, zero padded),
+  // id, amount, epoch millis, unused, CRC32 of the bytes before it
+  static final int RECORD_SIZE = 48;
+  private static final int MAX_CATEGORY_LENGTH = 14;
+  private static final int CHECKSUM_OFFSET = RECORD_SIZE - 4;
+  private static final byte ADD = 1;
+  private static final byte REMOVE = 2;
+
+  private static final int BUFFER_RECORDS = 1024;
+
+  // Segment n holds the changes made after snapshot n was taken
+  private static final Pattern SEGMENT_NAME = Pattern.compile("journal-(\\d{16})\\.log");
+  private static final Pattern SNAPSHOT_NAME = Pattern.compile("snapshot-(\\d{16})\\.snap");
+
+  private final Path directory;
+  private final ExpenseTrackerModel model;
+  private final long maxCommitDelayMillis;
+  private final long checkpointRecords;
+  private final ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE * BUFFER_RECORDS);
+  private final CRC32 crc = new CRC32();
+  private final Thread committer;
+  // Writes snapshots one after another, off the thread that changes the model
+  private final ExecutorService snapshotWriter;
+  // Held while forcing or replacing the segment, so only one thread runs an fsync at a time
+  private final Object forceLock = new Object();
+
+  // The segment being appended to
+  private FileChannel channel;
+  private long segment;
+  private long segmentRecords;
+
+  // Records appended, records written to the channel and records forced to disk
+  private long appendedRecords;
+  private long writtenRecords;
+  private volatile long durableRecords;
+  // The first failed write or force; every later append fails with it
+  private volatile IOException failure;
+  // The last snapshot that could not be written; its segments are kept
+  private volatile IOException snapshotFailure;
+  private boolean closed;
+
+  private TransactionJournal(Path directory, ExpenseTrackerModel model, long maxCommitDelayMillis,
+      long checkpointRecords) {
+    this.directory = directory;
+    this.model = model;
+    this.maxCommitDelayMillis = maxCommitDelayMillis;
+    this.checkpointRecords = checkpointRecords;
+    if (maxCommitDelayMillis > 0) {
+      committer = new Thread(this::runCommitter, "transaction-journal-commit");
+      committer.setDaemon(true);
+    } else {
+      committer = null;
+    }
+    snapshotWriter = Executors.newSingleThreadExecutor(task -> {
+      Thread thread = new Thread(task, "transaction-journal-snapshot");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * Opens the journal with the default commit delay and checkpoint interval.
+   *
+   * @see #open(Path, ExpenseTrackerModel, long, long)
+   */
+  public static TransactionJournal open(Path directory, ExpenseTrackerModel model) throws IOException {
+    return open(directory, model, DEFAULT_COMMIT_DELAY_MILLIS, DEFAULT_CHECKPOINT_RECORDS);
+  }
+
+  /**
+   * Opens the journal with the default checkpoint interval.
+   *
+   * @see #open(Path, ExpenseTrackerModel, long, long)
+   */
+  public static TransactionJournal open(Path directory, ExpenseTrackerModel model,
+      long maxCommitDelayMillis) throws IOException {
+    return open(directory, model, maxCommitDelayMillis, DEFAULT_CHECKPOINT_RECORDS);
+  }
+
+  /**
+   * Opens or creates the journal in the directory, restores the model from its
+   * snapshot and segments and logs every later change of the model to it.
+   *
+   * @param model An empty model that has no journal yet
+   * @param maxCommitDelayMillis The longest time an appended record may wait
+   *        before it is forced to disk, or 0 to force every record as it is appended
+   * @param checkpointRecords The number of records after which a checkpoint is taken
+   */
+  public static TransactionJournal open(Path directory, ExpenseTrackerModel model,
+      long maxCommitDelayMillis, long checkpointRecords) throws IOException {
+    if (model.getJournal() != null) {
+      throw new IllegalArgumentException("The model already has a journal.");
+    }
+    if (!model.isEmpty()) {
+      throw new IllegalArgumentException("Only an empty model can be restored from a journal.");
+    }
+    if (maxCommitDelayMillis < 0) {
+      throw new IllegalArgumentException("The commit delay must not be negative.");
+    }
+    if (checkpointRecords <= 0) {
+      throw new IllegalArgumentException("The checkpoint interval must be positive.");
+    }
+    Files.createDirectories(directory);
+    TransactionJournal journal = new TransactionJournal(directory, model, maxCommitDelayMillis, checkpointRecords);
+    try {
+      journal.restore();
+    } catch (IOException | RuntimeException e) {
+      journal.snapshotWriter.shutdown();
+      if (journal.channel != null) {
+        journal.channel.close();
+      }
+      throw e;
+    }
+    model.setJournal(journal);
+    if (journal.committer != null) {
+      journal.committer.start();
+    }
+    return journal;
+  }
+
+  /**
+   * Writes and forces every record appended so far, returning once they are on disk.
+   */
+  public void sync() throws IOException {
+    long target;
+    synchronized (this) {
+      checkFailure();
+      writeBuffer();
+      target = writtenRecords;
+    }
+    force(target);
+  }
+
+  /**
+   * Starts a new segment and writes a snapshot of the model in the background.
+   * Once the snapshot is on disk, the older segments and snapshots are deleted.
+   * Must be called on the thread that changes the model.
+   */
+  public synchronized void checkpoint() throws IOException {
+    if (closed) {
+      throw new IllegalStateException("The journal has been closed.");
+    }
+    checkFailure();
+    writeBuffer();
+    synchronized (forceLock) {
+      try {
+        channel.force(false);
+        channel.close();
+        channel = createSegment(segment + 1);
+      } catch (IOException e) {
+        failure = e;
+        throw e;
+      }
+      segment++;
+      segmentRecords = 0;
+      durableRecords = writtenRecords;
+    }
+    // Snapshot n holds exactly the changes logged before segment n. Taking the
+    // snapshot costs O(n / 64); copying and sorting it happens on the writer.
+    final long snapshot = segment;
+    final TransactionSnapshot rows = model.snapshot();
+    snapshotWriter.execute(() -> writeSnapshot(snapshot, rows));
+  }
+
+  /**
+   * Forces every appended record to disk, waits for a snapshot being written,
+   * stops logging the model's changes and closes the journal.
+   */
+  @Override
+  public void close() throws IOException {
+    synchronized (this) {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      model.setJournal(null);
+      notifyAll();
+    }
+    try {
+      if (committer != null) {
+        committer.join();
+      }
+      synchronized (this) {
+        if (failure == null) {
+          writeBuffer();
+        }
+      }
+      if (failure == null) {
+        force(writtenRecords);
+      }
+      snapshotWriter.shutdown();
+      snapshotWriter.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      channel.close();
+    }
+    checkFailure();
+    IOException e = snapshotFailure;
+    if (e != null) {
+      throw new IOException("The last snapshot could not be written.", e);
+    }
+  }
+
+  void logAdd(long id, double amount, String category, long epochMillis) {
+    checkJournalable(category);
+    append(ADD, id, amount, category, epochMillis);
+  }
+
+  /**
+   * Logs the addition of a batch of transactions. A due checkpoint is only
+   * taken before the first record, so the model can apply the whole batch
+   * after this returns.
+   */
+  synchronized void logAdds(Collection<Transaction> transactions) {
+    for (Transaction t : transactions) {
+      checkJournalable(t.getCategory());
+    }
+    try {
+      boolean idle = prepareAppend();
+      for (Transaction t : transactions) {
+        putRecord(ADD, t.getId(), t.getAmount(), t.getCategory(), t.getEpochMillis());
+      }
+      commitAppended(idle);
+    } catch (IOException e) {
+      throw new UncheckedIOException("The transactions could not be journaled.", e);
+    }
+  }
+
+  void logRemove(long id) {
+    append(REMOVE, id, 0.0, "", 0L);
+  }
+
+  private static void checkJournalable(String category) {
+    int length = category.length();
+    if (length > MAX_CATEGORY_LENGTH) {
+      throw new IllegalArgumentException("The category is too long to be journaled.");
+    }
+    for (int i = 0; i < length; i++) {
+      if (category.charAt(i) > 0x7F) {
+        throw new IllegalArgumentException("Only ASCII categories can be journaled.");
+      }
+    }
+  }
+
+  private synchronized void append(byte type, long id, double amount, String category, long epochMillis) {
+    try {
+      boolean idle = prepareAppend();
+      putRecord(type, id, amount, category, epochMillis);
+      commitAppended(idle);
+    } catch (IOException e) {
+      throw new UncheckedIOException("The transaction could not be journaled.", e);
+    }
+  }
+
+  // Takes a due checkpoint before records are appended; the caller holds the lock.
+  // Returns true if no records were waiting to be committed.
+  private boolean prepareAppend() throws IOException {
+    if (closed) {
+      throw new IllegalStateException("The journal has been closed.");
+    }
+    checkFailure();
+    // The model has not applied these changes yet, so the checkpoint leaves them to the new segment
+    if (segmentRecords >= checkpointRecords) {
+      checkpoint();
+    }
+    return appendedRecords == durableRecords;
+  }
+
+  // Encodes one record into the buffer; the caller holds the lock
+  private void putRecord(byte type, long id, double amount, String category, long epochMillis) throws IOException {
+    if (buffer.remaining() < RECORD_SIZE) {
+      writeBuffer();
+    }
+    int start = buffer.position();
+    buffer.put(type);
+    buffer.put((byte) category.length());
+    for (int i = 0; i < MAX_CATEGORY_LENGTH; i++) {
+      buffer.put(i < category.length() ? (byte) category.charAt(i) : 0);
+    }
+    buffer.putLong(id);
+    buffer.putDouble(amount);
+    buffer.putLong(epochMillis);
+    buffer.putInt(0);
+    buffer.putInt(checksum(buffer.array(), start));
+    appendedRecords++;
+    segmentRecords++;
+  }
+
+  // Makes the appended records durable now, or wakes the committer; the caller holds the lock
+  private void commitAppended(boolean idle) throws IOException {
+    if (committer == null) {
+      writeBuffer();
+      force(writtenRecords);
+    } else if (idle) {
+      // The first pending record starts the commit delay
+      notifyAll();
+    }
+  }
+
+  // Writes the buffered records to the channel; the caller holds the lock
+  private void writeBuffer() throws IOException {
+    buffer.flip();
+    try {
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+    } catch (IOException e) {
+      failure = e;
+      throw e;
+    } finally {
+      buffer.clear();
+    }
+    writtenRecords = appendedRecords;
+  }
+
+  // Forces the channel unless the given number of records is already durable
+  private void force(long records) throws IOException {
+    synchronized (forceLock) {
+      if (records <= durableRecords) {
+        return;
+      }
+      try {
+        channel.force(false);
+      } catch (IOException e) {
+        failure = e;
+        throw e;
+      }
+      durableRecords = records;
+    }
+  }
+
+  private void runCommitter() {
+    try {
+      while (true) {
+        synchronized (this) {
+          while (!closed && appendedRecords == durableRecords) {
+            wait();
+          }
+          if (closed) {
+            return;
+          }
+        }
+        // Let the records appended during the delay share this commit
+        Thread.sleep(maxCommitDelayMillis);
+        sync();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (IOException e) {
+      // Kept in failure and reported by the next append
+    }
+  }
+
+  // Runs on the snapshot writer; the file only gets its final name once it is complete
+  private void writeSnapshot(long snapshot, TransactionSnapshot rows) {
+    try {
+      Path temporary = directory.resolve(snapshotName(snapshot) + ".tmp");
+      rows.toImage().writeTo(temporary);
+      Files.move(temporary, directory.resolve(snapshotName(snapshot)), StandardCopyOption.ATOMIC_MOVE);
+      deleteOlderThan(snapshot);
+      snapshotFailure = null;
+    } catch (IOException e) {
+      snapshotFailure = e;
+    }
+  }
+
+  private void checkFailure() throws IOException {
+    IOException e = failure;
+    if (e != null) {
+      throw new IOException("The journal could not be written.", e);
+    }
+  }
+
+  private int checksum(byte[] bytes, int start) {
+    crc.reset();
+    crc.update(bytes, start, CHECKSUM_OFFSET);
+    return (int) crc.getValue();
+  }
+
+  // Loads the newest snapshot, replays the later segments and opens the last one for appending
+  private void restore() throws IOException {
+    TreeSet<Long> segments = new TreeSet<>();
+    TreeSet<Long> snapshots = new TreeSet<>();
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+      for (Path file : files) {
+        String name = file.getFileName().toString();
+        Matcher segmentName = SEGMENT_NAME.matcher(name);
+        Matcher snapshotName = SNAPSHOT_NAME.matcher(name);
+        if (segmentName.matches()) {
+          segments.add(Long.parseLong(segmentName.group(1)));
+        } else if (snapshotName.matches()) {
+          snapshots.add(Long.parseLong(snapshotName.group(1)));
+        } else if (name.endsWith(".snap.tmp")) {
+          // A snapshot that was still being written
+          Files.delete(file);
+        }
+      }
+    }
+
+    long first = 1;
+    if (!snapshots.isEmpty()) {
+      first = snapshots.last();
+      try {
+        model.loadImage(ModelImage.readFrom(directory.resolve(snapshotName(first))));
+      } catch (IllegalArgumentException e) {
+        throw new IOException("The snapshot is corrupt.", e);
+      }
+    }
+    deleteOlderThan(first);
+
+    segments = new TreeSet<>(segments.tailSet(first));
+    if (segments.isEmpty()) {
+      segments.add(first);
+    }
+    for (long replayed : segments) {
+      if (channel != null) {
+        channel.close();
+      }
+      segment = replayed;
+      Path path = directory.resolve(segmentName(replayed));
+      channel = Files.exists(path) ? FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)
+          : createSegment(replayed);
+      segmentRecords = replay(channel);
+    }
+  }
+
+  private FileChannel createSegment(long number) throws IOException {
+    FileChannel created = FileChannel.open(directory.resolve(segmentName(number)), StandardOpenOption.CREATE_NEW,
+        StandardOpenOption.READ, StandardOpenOption.WRITE);
+    ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+    header.putLong(MAGIC).flip();
+    created.write(header);
+    created.force(true);
+    return created;
+  }
+
+  // Deletes the segments and snapshots that the given snapshot replaces
+  private void deleteOlderThan(long snapshot) throws IOException {
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+      for (Path file : files) {
+        String name = file.getFileName().toString();
+        Matcher segmentName = SEGMENT_NAME.matcher(name);
+        Matcher snapshotName = SNAPSHOT_NAME.matcher(name);
+        if ((segmentName.matches() && Long.parseLong(segmentName.group(1)) < snapshot)
+            || (snapshotName.matches() && Long.parseLong(snapshotName.group(1)) < snapshot)) {
+          Files.deleteIfExists(file);
+        }
+      }
+    }
+  }
+
+  private static String segmentName(long number) {
+    return String.format("journal-%016d.log", number);
+  }
+
+  private static String snapshotName(long number) {
+    return String.format("snapshot-%016d.snap", number);
+  }
+
+  // Reads every valid record of the segment into the model, cuts off whatever
+  // follows them and returns the number of records
+  private long replay(FileChannel segmentChannel) throws IOException {
+    long fileSize = segmentChannel.size();
+    if (fileSize < HEADER_SIZE) {
+      // A crash before the header was written
+      ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+      header.putLong(MAGIC).flip();
+      segmentChannel.truncate(0);
+      segmentChannel.write(header, 0);
+      segmentChannel.force(true);
+      segmentChannel.position(HEADER_SIZE);
+      return 0;
+    }
+    ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+    readFully(segmentChannel, header, 0);
+    if (header.getLong(0) != MAGIC) {
+      throw new IOException("The file is not a transaction journal.");
+    }
+    model.reserveCapacity((int) Math.min(Integer.MAX_VALUE,
+        model.getTransactionCount() + (fileSize - HEADER_SIZE) / RECORD_SIZE));
+
+    byte[] category = new byte[MAX_CATEGORY_LENGTH];
+    long position = HEADER_SIZE;
+    long maxId = 0;
+    replay:
+    while (position < fileSize) {
+      buffer.clear();
+      int read = readFully(segmentChannel, buffer, position);
+      buffer.flip();
+      for (int start = 0; start + RECORD_SIZE <= read; start += RECORD_SIZE) {
+        buffer.position(start);
+        byte type = buffer.get();
+        int length = buffer.get();
+        if (buffer.getInt(start + CHECKSUM_OFFSET) != checksum(buffer.array(), start)
+            || (type != ADD && type != REMOVE) || length < 0 || length > MAX_CATEGORY_LENGTH) {
+          break replay;
+        }
+        buffer.get(category);
+        long id = buffer.getLong();
+        double amount = buffer.getDouble();
+        long epochMillis = buffer.getLong();
+        try {
+          if (type == ADD) {
+            model.restoreTransaction(id, amount, new String(category, 0, length, StandardCharsets.US_ASCII), epochMillis);
+            maxId = Math.max(maxId, id);
+          } else if (!model.removeTransactionById(id)) {
+            throw new IllegalArgumentException("Transaction " + id + " is removed but was never added.");
+          }
+        } catch (IllegalArgumentException e) {
+          throw new IOException("The journal is corrupt.", e);
+        }
+        position += RECORD_SIZE;
+      }
+      if (read < buffer.capacity()) {
+        // A partial record at the end of the file
+        break;
+      }
+    }
+    buffer.clear();
+    if (position < fileSize) {
+      segmentChannel.truncate(position);
+      segmentChannel.force(true);
+    }
+    segmentChannel.position(position);
+    Transaction.reserveIdsThrough(maxId);
+    return (position - HEADER_SIZE) / RECORD_SIZE;
+  }
+
+  // Reads from the position until the buffer is full or the file ends
+  private static int readFully(FileChannel source, ByteBuffer target, long position) throws IOException {
+    int total = 0;
+    while (target.hasRemaining()) {
+      int read = source.read(target, position + total);
+      if (read < 0) {
+        break;
+      }
+      total += read;
+    }
+    return total;
+  }
+
+}
@@ -0,0 +1,26 @@
+package model;
+
+/**
+ * Read-only, row-by-row access to a set of transactions, implemented by the
+ * live ExpenseTrackerModel and by its immutable snapshots. Rows are numbered
+ * from 0 in the order the transactions were added.
+ */
+public interface TransactionRows {
+
+  public int getTransactionCount();
+
+  public double getAmount(int row);
+
+  public String getCategory(int row);
+
+  /**
+   * Returns the code of the row's Category, so filters can match categories
+   * without comparing strings.
+   */
+  public default int getCategoryCode(int row) {
+    return Category.parse(getCategory(row)).getCode();
+  }
+
+  public long getEpochMillis(int row);
+
+}
@@ -0,0 +1,59 @@
+package model;
+
+/**
+ * Immutable copy of the transactions held by the model at one point in time.
+ * Background work such as exports reads from a snapshot, so the model can
+ * keep changing on the Event Dispatch Thread while it runs.
+ *
+ * The snapshot reads a frozen copy of the model's store, which shares its
+ * columns, so rows past a removal are found in O(log n).
+ */
+public final class TransactionSnapshot implements TransactionRows {
+
+  private final TransactionStore store;
+
+  TransactionSnapshot(TransactionStore store) {
+    this.store = store;
+  }
+
+  /**
+   * Copies the snapshot into an image that can be written as a snapshot file.
+   * Costs O(n log n), so the journal calls it on its snapshot writer.
+   */
+  ModelImage toImage() {
+    return store.image();
+  }
+
+  @Override
+  public int getTransactionCount() {
+    return store.liveCount();
+  }
+
+  /**
+   * Returns the id the row's transaction had in the model.
+   */
+  public long getId(int row) {
+    return store.idAt(store.physicalRow(row));
+  }
+
+  @Override
+  public double getAmount(int row) {
+    return store.amountAt(store.physicalRow(row));
+  }
+
+  @Override
+  public String getCategory(int row) {
+    return store.categoryAt(store.physicalRow(row)).getWord();
+  }
+
+  @Override
+  public int getCategoryCode(int row) {
+    return store.categoryCodeAt(store.physicalRow(row));
+  }
+
+  @Override
+  public long getEpochMillis(int row) {
+    return store.timestampAt(store.physicalRow(row));
+  }
+
+}
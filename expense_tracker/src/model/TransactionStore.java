@@ -0,0 +1,374 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * Columnar storage for the transactions held by the ExpenseTrackerModel.
+ *
+ * Each transaction is kept as one row spread across primitive arrays
+ * (id, amount, Category code and epoch millis) instead of as a separate
+ * object, so a row costs 26 bytes of heap. Transaction objects are only
+ * created as views when a row is read.
+ *
+ * Removing a row only marks it as a tombstone. Tombstoned rows keep their
+ * place until compact() squeezes them out. Readers number the live rows from
+ * 0 and skip the tombstones: a Fenwick tree over the tombstone words counts
+ * the tombstones before any row, so converting between live and stored row
+ * numbers, and marking a row, are O(log n). Without tombstones the two
+ * numberings are the same and no conversion is done.
+ *
+ * A frozen copy for a snapshot shares the column arrays and only copies the
+ * tombstone words, in O(n / 64). Appends only write past the copy's rows, and
+ * the next compact() moves the rows into new arrays instead of in place.
+ */
+final class TransactionStore {
+
+  private static final int INITIAL_CAPACITY = 16;
+
+  private long[] ids;
+  private double[] amounts;
+  private short[] categoryCodes;
+  private long[] timestamps;
+  private int size;
+
+  // One bit per row, set once the row has been removed
+  private long[] tombstones;
+  private int tombstoneCount;
+  // Fenwick tree over the tombstone words: entry i holds the number of
+  // tombstones in the words (i - lowest bit of i, i]
+  private int[] tombstonesBefore;
+  // Set while a frozen copy shares the column arrays
+  private boolean shared;
+
+  TransactionStore() {
+    ids = new long[INITIAL_CAPACITY];
+    amounts = new double[INITIAL_CAPACITY];
+    categoryCodes = new short[INITIAL_CAPACITY];
+    timestamps = new long[INITIAL_CAPACITY];
+    tombstones = new long[(INITIAL_CAPACITY + 63) >> 6];
+    tombstonesBefore = new int[tombstones.length + 1];
+  }
+
+  private TransactionStore(TransactionStore store) {
+    ids = store.ids;
+    amounts = store.amounts;
+    categoryCodes = store.categoryCodes;
+    timestamps = store.timestamps;
+    size = store.size;
+    tombstones = store.tombstones.clone();
+    tombstoneCount = store.tombstoneCount;
+    tombstonesBefore = store.tombstonesBefore.clone();
+  }
+
+  /**
+   * Returns the number of rows, including tombstones.
+   */
+  int size() {
+    return size;
+  }
+
+  int tombstoneCount() {
+    return tombstoneCount;
+  }
+
+  /**
+   * Returns the number of rows that have not been removed.
+   */
+  int liveCount() {
+    return size - tombstoneCount;
+  }
+
+  /**
+   * Returns the stored row of the live row with the given number, i.e. of the
+   * row that has liveRow live rows before it.
+   */
+  int physicalRow(int liveRow) {
+    if (liveRow < 0 || liveRow >= size - tombstoneCount) {
+      throw new IndexOutOfBoundsException("Row: " + liveRow + ", Size: " + (size - tombstoneCount));
+    }
+    if (tombstoneCount == 0) {
+      return liveRow;
+    }
+    // Descend the tree to the word holding the row, counting the live rows skipped
+    int word = 0;
+    int remaining = liveRow;
+    for (int step = Integer.highestOneBit(tombstones.length); step > 0; step >>= 1) {
+      int next = word + step;
+      if (next <= tombstones.length) {
+        int live = (step << 6) - tombstonesBefore[next];
+        if (live <= remaining) {
+          word = next;
+          remaining -= live;
+        }
+      }
+    }
+    long live = ~tombstones[word];
+    for (int i = 0; i < remaining; i++) {
+      live &= live - 1;
+    }
+    return (word << 6) + Long.numberOfTrailingZeros(live);
+  }
+
+  /**
+   * Returns the number of live rows before the given stored row.
+   */
+  int liveRow(int physicalRow) {
+    checkRow(physicalRow);
+    if (tombstoneCount == 0) {
+      return physicalRow;
+    }
+    int word = physicalRow >> 6;
+    return physicalRow - wordsTombstones(word) - Long.bitCount(tombstones[word] & ((1L << physicalRow) - 1));
+  }
+
+  /**
+   * Converts ascending stored rows of live transactions into their live row
+   * numbers in O(k + min(n / 64, k log n)).
+   */
+  int[] liveRows(int[] physicalRows) {
+    if (tombstoneCount == 0) {
+      return physicalRows;
+    }
+    int[] liveRows = new int[physicalRows.length];
+    // The tombstones in the words before word
+    int word = 0;
+    int removed = 0;
+    for (int i = 0; i < physicalRows.length; i++) {
+      int row = physicalRows[i];
+      int rowWord = row >> 6;
+      if (rowWord - word > 64) {
+        word = rowWord;
+        removed = wordsTombstones(word);
+      }
+      while (word < rowWord) {
+        removed += Long.bitCount(tombstones[word++]);
+      }
+      liveRows[i] = row - removed - Long.bitCount(tombstones[rowWord] & ((1L << row) - 1));
+    }
+    return liveRows;
+  }
+
+  /**
+   * Appends a row and returns its index.
+   */
+  int append(long id, double amount, Category category, long timestamp) {
+    ensureCapacity(size + 1);
+    ids[size] = id;
+    amounts[size] = amount;
+    categoryCodes[size] = (short) category.getCode();
+    timestamps[size] = timestamp;
+    return size++;
+  }
+
+  /**
+   * Marks the row as removed.
+   */
+  void markRemoved(int row) {
+    checkRow(row);
+    if (!isRemoved(row)) {
+      tombstones[row >> 6] |= 1L << row;
+      tombstoneCount++;
+      for (int i = (row >> 6) + 1; i <= tombstones.length; i += i & -i) {
+        tombstonesBefore[i]++;
+      }
+    }
+  }
+
+  boolean isRemoved(int row) {
+    return (tombstones[row >> 6] & (1L << row)) != 0;
+  }
+
+  /**
+   * Moves the live rows down over the tombstones, keeping their order.
+   *
+   * @return For each old row, its new row number, or -1 if it was removed
+   */
+  int[] compact() {
+    int[] newRows = renumbering();
+    if (shared) {
+      // A frozen copy still reads the old arrays
+      ids = ids.clone();
+      amounts = amounts.clone();
+      categoryCodes = categoryCodes.clone();
+      timestamps = timestamps.clone();
+      shared = false;
+    }
+    for (int row = 0; row < size; row++) {
+      int live = newRows[row];
+      if (live >= 0) {
+        ids[live] = ids[row];
+        amounts[live] = amounts[row];
+        categoryCodes[live] = categoryCodes[row];
+        timestamps[live] = timestamps[row];
+      }
+    }
+    size -= tombstoneCount;
+    tombstoneCount = 0;
+    Arrays.fill(tombstones, 0L);
+    Arrays.fill(tombstonesBefore, 0);
+    return newRows;
+  }
+
+  /**
+   * Returns, for each stored row, its live row number, or -1 if it was removed.
+   */
+  int[] renumbering() {
+    int[] newRows = new int[size];
+    int live = 0;
+    for (int row = 0; row < size; row++) {
+      newRows[row] = isRemoved(row) ? -1 : live++;
+    }
+    return newRows;
+  }
+
+  long idAt(int row) {
+    checkRow(row);
+    return ids[row];
+  }
+
+  double amountAt(int row) {
+    checkRow(row);
+    return amounts[row];
+  }
+
+  /**
+   * Returns the Category code of the row.
+   */
+  int categoryCodeAt(int row) {
+    checkRow(row);
+    return categoryCodes[row];
+  }
+
+  Category categoryAt(int row) {
+    return Category.fromCode(categoryCodeAt(row));
+  }
+
+  long timestampAt(int row) {
+    checkRow(row);
+    return timestamps[row];
+  }
+
+  /**
+   * Returns a read-only copy of the store that later changes do not affect.
+   */
+  TransactionStore frozenCopy() {
+    shared = true;
+    return new TransactionStore(this);
+  }
+
+  /**
+   * Copies the live rows into an image, sorting
+   * the rows by amount in O(n log n). Meant to be called on a frozen copy, off
+   * the thread that changes the model.
+   */
+  ModelImage image() {
+    int live = liveCount();
+    long[] liveIds = new long[live];
+    double[] liveAmounts = new double[live];
+    long[] liveTimestamps = new long[live];
+    short[] liveCategoryCodes = new short[live];
+    int k = 0;
+    for (int row = 0; row < size; row++) {
+      if (tombstoneCount == 0 || !isRemoved(row)) {
+        liveIds[k] = ids[row];
+        liveAmounts[k] = amounts[row];
+        liveTimestamps[k] = timestamps[row];
+        liveCategoryCodes[k++] = categoryCodes[row];
+      }
+    }
+    return new ModelImage(live, liveIds, liveAmounts, liveTimestamps, amountOrder(liveAmounts), liveCategoryCodes);
+  }
+
+  // Returns the rows in ascending order of amount, ties in ascending row order.
+  // A bottom-up merge sort, which keeps the rows of equal amounts in order.
+  static int[] amountOrder(double[] amounts) {
+    int n = amounts.length;
+    int[] rows = new int[n];
+    for (int i = 0; i < n; i++) {
+      rows[i] = i;
+    }
+    int[] merged = new int[n];
+    for (int width = 1; width < n; width *= 2) {
+      for (int from = 0; from < n; from += 2 * width) {
+        int middle = Math.min(from + width, n);
+        int to = Math.min(from + 2 * width, n);
+        int left = from;
+        int right = middle;
+        for (int i = from; i < to; i++) {
+          if (right >= to || (left < middle && amounts[rows[left]] <= amounts[rows[right]])) {
+            merged[i] = rows[left++];
+          } else {
+            merged[i] = rows[right++];
+          }
+        }
+      }
+      int[] swap = rows;
+      rows = merged;
+      merged = swap;
+    }
+    return rows;
+  }
+
+  /**
+   * Replaces the contents of an empty store with the rows of an image, taking over its arrays.
+   */
+  void load(ModelImage image) {
+    if (size > 0) {
+      throw new IllegalStateException("Only an empty store can be loaded.");
+    }
+    ids = image.ids;
+    amounts = image.amounts;
+    categoryCodes = image.categoryCodes;
+    timestamps = image.timestamps;
+    tombstones = new long[(ids.length + 63) >> 6];
+    tombstonesBefore = new int[tombstones.length + 1];
+    size = image.size;
+  }
+
+  /**
+   * Creates a Transaction view of the given row.
+   */
+  Transaction transactionAt(int row) {
+    return new Transaction(idAt(row), amountAt(row), categoryAt(row), timestampAt(row));
+  }
+
+  void ensureCapacity(int capacity) {
+    if (capacity <= amounts.length) {
+      return;
+    }
+    int newCapacity = Math.max(capacity, amounts.length + (amounts.length >> 1));
+    ids = Arrays.copyOf(ids, newCapacity);
+    amounts = Arrays.copyOf(amounts, newCapacity);
+    categoryCodes = Arrays.copyOf(categoryCodes, newCapacity);
+    timestamps = Arrays.copyOf(timestamps, newCapacity);
+    shared = false;
+    tombstones = Arrays.copyOf(tombstones, (newCapacity + 63) >> 6);
+    // The tree's entries depend on its length, so it is rebuilt from the words in O(n / 64)
+    tombstonesBefore = new int[tombstones.length + 1];
+    if (tombstoneCount > 0) {
+      for (int i = 1; i <= tombstones.length; i++) {
+        tombstonesBefore[i] += Long.bitCount(tombstones[i - 1]);
+        int parent = i + (i & -i);
+        if (parent <= tombstones.length) {
+          tombstonesBefore[parent] += tombstonesBefore[i];
+        }
+      }
+    }
+  }
+
+  // The number of tombstones in the words before the given one
+  private int wordsTombstones(int word) {
+    int count = 0;
+    for (int i = word; i > 0; i -= i & -i) {
+      count += tombstonesBefore[i];
+    }
+    return count;
+  }
+
+  private void checkRow(int row) {
+    if (row < 0 || row >= size) {
+      throw new IndexOutOfBoundsException("Row: " + row + ", Size: " + size);
+    }
+  }
+
+}
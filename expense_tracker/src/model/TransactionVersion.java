@@ -0,0 +1,199 @@
+package model;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * One immutable version of the transactions held by a ConcurrentTransactionModel.
+ * A version never changes, so any number of threads can read it at the same
+ * time without locking, e.g. to filter it with the QueryPlanner or export it.
+ *
+ * Rows are numbered 0 to getTransactionCount() - 1 in the order the
+ * transactions were added, skipping removed ones.
+ */
+public final class TransactionVersion implements TransactionRows {
+
+  // The index of the aggregate over all transactions, after the one per Category code
+  static final int ALL = Category.values().length;
+
+  private final long version;
+  private final ConcurrentTransactionModel.Chunk[] chunks;
+  private final long[][] tombstones;
+  private final int[] liveBefore;
+  private final int chunkCount;
+  private final int rowCount;
+  private final int liveCount;
+  // Completed the first time a minimum or maximum that was removed is needed
+  private final AtomicReferenceArray<Aggregate> aggregates;
+
+  TransactionVersion(long version, ConcurrentTransactionModel.Chunk[] chunks, long[][] tombstones,
+      int[] liveBefore, int chunkCount, int rowCount, int liveCount, Aggregate[] aggregates) {
+    this.version = version;
+    this.chunks = chunks;
+    this.tombstones = tombstones;
+    this.liveBefore = liveBefore;
+    this.chunkCount = chunkCount;
+    this.rowCount = rowCount;
+    this.liveCount = liveCount;
+    this.aggregates = new AtomicReferenceArray<>(aggregates);
+  }
+
+  /**
+   * Returns the number of this version. Every change to the model publishes
+   * a version with a higher number.
+   */
+  public long getVersion() {
+    return version;
+  }
+
+  public double getTotalCost() {
+    return aggregates.get(ALL).getSum();
+  }
+
+  /**
+   * Returns the count, sum, minimum and maximum over all transactions in this version.
+   */
+  public Aggregate getAggregate() {
+    return validAggregate(ALL);
+  }
+
+  /**
+   * Returns the count, sum, minimum and maximum over the transactions in this
+   * version with the given category.
+   */
+  public Aggregate getAggregate(Category category) {
+    return validAggregate(category.getCode());
+  }
+
+  @Override
+  public int getTransactionCount() {
+    return liveCount;
+  }
+
+  @Override
+  public double getAmount(int row) {
+    int physical = physicalRow(row);
+    return chunks[physical >>> ConcurrentTransactionModel.CHUNK_SHIFT].amounts[physical & ConcurrentTransactionModel.CHUNK_MASK];
+  }
+
+  @Override
+  public String getCategory(int row) {
+    int physical = physicalRow(row);
+    return Category.fromCode(chunks[physical >>> ConcurrentTransactionModel.CHUNK_SHIFT]
+        .categoryCodes[physical & ConcurrentTransactionModel.CHUNK_MASK]).getWord();
+  }
+
+  @Override
+  public int getCategoryCode(int row) {
+    int physical = physicalRow(row);
+    return chunks[physical >>> ConcurrentTransactionModel.CHUNK_SHIFT]
+        .categoryCodes[physical & ConcurrentTransactionModel.CHUNK_MASK];
+  }
+
+  @Override
+  public long getEpochMillis(int row) {
+    int physical = physicalRow(row);
+    return chunks[physical >>> ConcurrentTransactionModel.CHUNK_SHIFT].timestamps[physical & ConcurrentTransactionModel.CHUNK_MASK];
+  }
+
+  /**
+   * Returns a read-only list of the transactions in this version. Each
+   * Transaction is created when its row is read.
+   */
+  public List<Transaction> getTransactions() {
+    return new TransactionListView();
+  }
+
+  /**
+   * Returns the transactions at the given rows, in the given order.
+   */
+  public List<Transaction> getTransactions(int[] rows) {
+    List<Transaction> transactions = new ArrayList<>(rows.length);
+    for (int row : rows) {
+      transactions.add(transactionAt(row));
+    }
+    return transactions;
+  }
+
+  // Returns a copy of the aggregate, scanning its rows once if its minimum or maximum was removed
+  private Aggregate validAggregate(int index) {
+    Aggregate aggregate = aggregates.get(index);
+    if (!aggregate.isMinMaxValid()) {
+      Aggregate completed = aggregate.copy();
+      completed.resetMinMax();
+      for (int row = 0; row < liveCount; row++) {
+        if (index == ALL || getCategoryCode(row) == index) {
+          completed.includeInMinMax(getAmount(row));
+        }
+      }
+      // Threads that race here compute the same aggregate
+      aggregates.set(index, completed);
+      aggregate = completed;
+    }
+    return aggregate.copy();
+  }
+
+  private Transaction transactionAt(int row) {
+    int physical = physicalRow(row);
+    ConcurrentTransactionModel.Chunk chunk = chunks[physical >>> ConcurrentTransactionModel.CHUNK_SHIFT];
+    int offset = physical & ConcurrentTransactionModel.CHUNK_MASK;
+    return new Transaction(chunk.ids[offset], chunk.amounts[offset], Category.fromCode(chunk.categoryCodes[offset]),
+        chunk.timestamps[offset]);
+  }
+
+  // Maps a row to its position in the chunks, skipping the removed rows
+  private int physicalRow(int row) {
+    if (row < 0 || row >= liveCount) {
+      throw new IndexOutOfBoundsException("Row: " + row + ", Count: " + liveCount);
+    }
+    if (liveCount == rowCount) {
+      return row;
+    }
+    // The last chunk with fewer live rows before it than the row, skipping emptied chunks
+    int low = 0;
+    int high = chunkCount - 1;
+    while (low < high) {
+      int mid = (low + high + 1) >>> 1;
+      if (liveBefore[mid] <= row) {
+        low = mid;
+      } else {
+        high = mid - 1;
+      }
+    }
+    int offset = row - liveBefore[low];
+    long[] bits = tombstones[low];
+    if (bits == null) {
+      return (low << ConcurrentTransactionModel.CHUNK_SHIFT) + offset;
+    }
+    // Find the offset-th row of the chunk that is not a tombstone
+    for (int word = 0; ; word++) {
+      long live = ~bits[word];
+      int count = Long.bitCount(live);
+      if (offset < count) {
+        for (int i = 0; i < offset; i++) {
+          live &= live - 1;
+        }
+        return (low << ConcurrentTransactionModel.CHUNK_SHIFT) + (word << 6) + Long.numberOfTrailingZeros(live);
+      }
+      offset -= count;
+    }
+  }
+
+  private class TransactionListView extends AbstractList<Transaction> implements RandomAccess {
+
+    @Override
+    public Transaction get(int index) {
+      return transactionAt(index);
+    }
+
+    @Override
+    public int size() {
+      return liveCount;
+    }
+
+  }
+
+}
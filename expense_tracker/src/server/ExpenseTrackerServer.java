@@ -0,0 +1,465 @@
+package server;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.management.JMException;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import controller.CsvExporter;
+import controller.ExpenseTrackerService;
+import metrics.Counter;
+import metrics.LatencyTimer;
+import metrics.MetricsRegistry;
+import model.Aggregate;
+import model.Category;
+import model.ConcurrentTransactionModel;
+import model.Transaction;
+import model.TransactionVersion;
+import model.Filter.AmountRangeFilter;
+import model.Filter.AndFilter;
+import model.Filter.CategorySetFilter;
+import model.Filter.QueryPlanner;
+import model.Filter.TransactionPredicate;
+import workload.WorkloadGenerator;
+
+/**
+ * Serves a thread-safe ExpenseTrackerService, one over a
+ * ConcurrentTransactionModel, over HTTP with JSON responses, without any display:
+ *
+ * <pre>
+ * POST   /transactions        amount, category and optionally epochMillis, as
+ *                             query or form parameters; answers the new transaction
+ * DELETE /transactions/{id}   removes a transaction
+ * GET    /transactions        the transactions matching the optional category
+ *                             (comma separated), minAmount and maxAmount
+ *                             parameters, paged with offset and limit
+ * GET    /aggregates          count, sum, average, minimum and maximum, in total
+ *                             and per category
+ * GET    /export              every transaction as CSV, streamed
+ * </pre>
+ *
+ * Each request runs on its own virtual thread on Java 21 and later, and on a
+ * fixed pool of threads before that, and calls the service directly. Writers
+ * take turns on the model's lock, while reads work on the latest published
+ * TransactionVersion and never wait, so a response always reflects one
+ * consistent version.
+ */
+public class ExpenseTrackerServer {
+
+  private static final int BACKLOG = 1024;
+  private static final int DEFAULT_LIMIT = 100;
+  private static final int MAX_LIMIT = 10_000;
+  private static final String JSON = "application/json; charset=utf-8";
+  // Generated transactions are added in batches of this many
+  private static final int GENERATE_BATCH = 1 << 16;
+
+  private static final MetricsRegistry METRICS = MetricsRegistry.getDefault();
+  private static final LatencyTimer ADD_TIMER = METRICS.timer("server.addTransaction");
+  private static final LatencyTimer REMOVE_TIMER = METRICS.timer("server.removeTransaction");
+  private static final LatencyTimer FILTER_TIMER = METRICS.timer("server.filter");
+  private static final LatencyTimer AGGREGATES_TIMER = METRICS.timer("server.aggregates");
+  private static final LatencyTimer EXPORT_TIMER = METRICS.timer("server.exportCsv");
+  private static final Counter BAD_REQUESTS = METRICS.counter("server.badRequests");
+
+  private final ExpenseTrackerService service;
+  private final HttpServer server;
+  private final ExecutorService executor;
+
+  /**
+   * Binds the server to the given address; use port 0 for any free port.
+   * Requests are served once start() is called.
+   *
+   * @throws IllegalArgumentException If the service is not thread-safe
+   */
+  public ExpenseTrackerServer(ExpenseTrackerService service, InetSocketAddress address) throws IOException {
+    if (service == null || !service.isThreadSafe() || address == null) {
+      throw new IllegalArgumentException("Invalid server");
+    }
+    this.service = service;
+    this.server = HttpServer.create(address, BACKLOG);
+    this.executor = newRequestExecutor();
+    server.setExecutor(executor);
+    server.createContext("/transactions", this::handleTransactions);
+    server.createContext("/aggregates", this::handleAggregates);
+    server.createContext("/export", this::handleExport);
+  }
+
+  public void start() {
+    server.start();
+  }
+
+  /**
+   * Stops accepting requests, waits up to the given delay for the running ones
+   * to finish, and stops the request threads.
+   */
+  public void stop(int delaySeconds) {
+    server.stop(delaySeconds);
+    executor.shutdown();
+  }
+
+  /**
+   * Returns the port the server listens on, e.g. the one picked for port 0.
+   */
+  public int getPort() {
+    return server.getAddress().getPort();
+  }
+
+  /**
+   * Returns an executor that runs each request on a new virtual thread if the
+   * JVM has them (Java 21 and later), and on a fixed pool of daemon threads
+   * otherwise. Virtual threads are found by reflection, so the server still
+   * compiles and runs on Java 8.
+   */
+  static ExecutorService newRequestExecutor() {
+    try {
+      Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+      return (ExecutorService) factory.invoke(null);
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      // Requests mostly wait on the network, so there are more threads than cores
+      int threads = Math.max(16, 8 * Runtime.getRuntime().availableProcessors());
+      AtomicInteger count = new AtomicInteger();
+      return Executors.newFixedThreadPool(threads, task -> {
+        Thread thread = new Thread(task, "http-request-" + count.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      });
+    }
+  }
+
+  private void handleTransactions(HttpExchange exchange) throws IOException {
+    try {
+      String path = exchange.getRequestURI().getPath();
+      String method = exchange.getRequestMethod();
+      if (path.equals("/transactions") || path.equals("/transactions/")) {
+        if (method.equals("POST")) {
+          addTransaction(exchange);
+        } else if (method.equals("GET")) {
+          filterTransactions(exchange);
+        } else {
+          methodNotAllowed(exchange, "GET, POST");
+        }
+      } else if (method.equals("DELETE")) {
+        removeTransaction(exchange, path.substring("/transactions/".length()));
+      } else {
+        methodNotAllowed(exchange, "DELETE");
+      }
+    } catch (IllegalArgumentException e) {
+      BAD_REQUESTS.increment();
+      sendError(exchange, 400, e.getMessage());
+    } catch (RuntimeException e) {
+      sendError(exchange, 500, "Internal error");
+    } finally {
+      exchange.close();
+    }
+  }
+
+  private void addTransaction(HttpExchange exchange) throws IOException {
+    long start = ADD_TIMER.start();
+    Map<String, String> params = parameters(exchange);
+    double amount = parseDouble(params, "amount", Double.NaN);
+    String category = params.get("category");
+    // The service rejects invalid input with the same messages as the app's add transaction dialog
+    Transaction t = params.containsKey("epochMillis")
+        ? service.addTransaction(amount, category, parseLong(params.get("epochMillis"), "epochMillis"))
+        : service.addTransaction(amount, category);
+    StringBuilder json = new StringBuilder();
+    appendTransaction(json, t);
+    send(exchange, 201, JSON, json);
+    ADD_TIMER.stop(start);
+  }
+
+  private void removeTransaction(HttpExchange exchange, String id) throws IOException {
+    long start = REMOVE_TIMER.start();
+    if (service.removeTransactionById(parseLong(id, "id"))) {
+      exchange.sendResponseHeaders(204, -1);
+    } else {
+      sendError(exchange, 404, "No transaction with id " + id);
+    }
+    REMOVE_TIMER.stop(start);
+  }
+
+  private void filterTransactions(HttpExchange exchange) throws IOException {
+    long start = FILTER_TIMER.start();
+    Map<String, String> params = parameters(exchange);
+    // Checked as longs, so a value out of the int range is rejected instead of wrapping around
+    long offset = parseLong(params.getOrDefault("offset", "0"), "offset");
+    long limit = parseLong(params.getOrDefault("limit", String.valueOf(DEFAULT_LIMIT)), "limit");
+    if (offset < 0 || offset > Integer.MAX_VALUE || limit < 0 || limit > MAX_LIMIT) {
+      throw new IllegalArgumentException("offset must be between 0 and " + Integer.MAX_VALUE
+          + " and limit between 0 and " + MAX_LIMIT);
+    }
+    TransactionPredicate predicate = predicate(params);
+
+    TransactionVersion version = service.currentVersion();
+    int count;
+    int[] page;
+    if (predicate == null) {
+      count = version.getTransactionCount();
+      page = new int[(int) Math.max(0, Math.min(count, offset + limit) - offset)];
+      for (int i = 0; i < page.length; i++) {
+        page[i] = (int) offset + i;
+      }
+    } else {
+      // Only the page's rows are collected, however many rows match
+      QueryPlanner.Page matches = QueryPlanner.matchingPage(predicate, version, (int) offset, (int) limit);
+      count = matches.getCount();
+      page = matches.getRows();
+    }
+
+    StringBuilder json = new StringBuilder();
+    json.append("{\"version\":").append(version.getVersion())
+        .append(",\"count\":").append(count)
+        .append(",\"transactions\":[");
+    List<Transaction> transactions = version.getTransactions(page);
+    for (int i = 0; i < transactions.size(); i++) {
+      if (i > 0) {
+        json.append(',');
+      }
+      appendTransaction(json, transactions.get(i));
+    }
+    json.append("]}");
+    send(exchange, 200, JSON, json);
+    FILTER_TIMER.stop(start);
+  }
+
+  private void handleAggregates(HttpExchange exchange) throws IOException {
+    try {
+      if (!exchange.getRequestMethod().equals("GET")) {
+        methodNotAllowed(exchange, "GET");
+        return;
+      }
+      long start = AGGREGATES_TIMER.start();
+      TransactionVersion version = service.currentVersion();
+      StringBuilder json = new StringBuilder();
+      json.append("{\"version\":").append(version.getVersion()).append(",\"total\":");
+      appendAggregate(json, version.getAggregate());
+      json.append(",\"categories\":{");
+      for (Category category : Category.values()) {
+        if (category.getCode() > 0) {
+          json.append(',');
+        }
+        appendString(json, category.getWord()).append(':');
+        appendAggregate(json, version.getAggregate(category));
+      }
+      json.append("}}");
+      send(exchange, 200, JSON, json);
+      AGGREGATES_TIMER.stop(start);
+    } catch (RuntimeException e) {
+      sendError(exchange, 500, "Internal error");
+    } finally {
+      exchange.close();
+    }
+  }
+
+  private void handleExport(HttpExchange exchange) throws IOException {
+    try {
+      if (!exchange.getRequestMethod().equals("GET")) {
+        methodNotAllowed(exchange, "GET");
+        return;
+      }
+      long start = EXPORT_TIMER.start();
+      exchange.getResponseHeaders().set("Content-Type", "text/csv; charset=utf-8");
+      // Length 0 streams the rows with chunked encoding as they are written
+      exchange.sendResponseHeaders(200, 0);
+      try (OutputStream body = exchange.getResponseBody()) {
+        new CsvExporter().export(service.currentVersion(), Channels.newChannel(body), null);
+      }
+      EXPORT_TIMER.stop(start);
+    } finally {
+      exchange.close();
+    }
+  }
+
+  // The filters named by the parameters, or null to match every transaction
+  private static TransactionPredicate predicate(Map<String, String> params) {
+    List<TransactionPredicate> predicates = new ArrayList<>();
+    if (params.containsKey("category")) {
+      List<String> categories = new ArrayList<>();
+      for (String category : params.get("category").split(",")) {
+        categories.add(category.trim());
+      }
+      predicates.add(new CategorySetFilter(categories));
+    }
+    if (params.containsKey("minAmount") || params.containsKey("maxAmount")) {
+      predicates.add(new AmountRangeFilter(parseDouble(params, "minAmount", 0),
+          parseDouble(params, "maxAmount", Double.MAX_VALUE)));
+    }
+    if (predicates.isEmpty()) {
+      return null;
+    }
+    return predicates.size() == 1 ? predicates.get(0) : new AndFilter(predicates.toArray(new TransactionPredicate[0]));
+  }
+
+  // The query parameters, and for a POST the form parameters of the body as well
+  private static Map<String, String> parameters(HttpExchange exchange) throws IOException {
+    Map<String, String> params = new HashMap<>();
+    parseForm(exchange.getRequestURI().getRawQuery(), params);
+    if (exchange.getRequestMethod().equals("POST")) {
+      try (InputStream body = exchange.getRequestBody()) {
+        parseForm(new String(readAll(body), StandardCharsets.UTF_8), params);
+      }
+    }
+    return params;
+  }
+
+  private static void parseForm(String form, Map<String, String> params) throws UnsupportedEncodingException {
+    if (form == null || form.isEmpty()) {
+      return;
+    }
+    for (String pair : form.split("&")) {
+      int equals = pair.indexOf('=');
+      if (equals > 0) {
+        params.put(URLDecoder.decode(pair.substring(0, equals), "UTF-8"),
+            URLDecoder.decode(pair.substring(equals + 1), "UTF-8").trim());
+      }
+    }
+  }
+
+  private static byte[] readAll(InputStream in) throws IOException {
+    byte[] buffer = new byte[1024];
+    int length = 0;
+    int read;
+    while ((read = in.read(buffer, length, buffer.length - length)) > 0) {
+      length += read;
+      if (length == buffer.length) {
+        buffer = Arrays.copyOf(buffer, buffer.length * 2);
+      }
+    }
+    return Arrays.copyOf(buffer, length);
+  }
+
+  private static double parseDouble(Map<String, String> params, String name, double defaultValue) {
+    String value = params.get(name);
+    if (value == null) {
+      return defaultValue;
+    }
+    try {
+      return Double.parseDouble(value);
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException(name + " must be a number");
+    }
+  }
+
+  private static long parseLong(String value, String name) {
+    try {
+      return Long.parseLong(value);
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException(name + " must be a whole number");
+    }
+  }
+
+  private static void appendTransaction(StringBuilder json, Transaction t) {
+    json.append("{\"id\":").append(t.getId())
+        .append(",\"amount\":").append(t.getAmount())
+        .append(",\"category\":");
+    appendString(json, t.getCategory());
+    json.append(",\"epochMillis\":").append(t.getEpochMillis())
+        .append(",\"timestamp\":");
+    appendString(json, t.getTimestamp()).append('}');
+  }
+
+  // Minimum and maximum are null when there are no transactions
+  private static void appendAggregate(StringBuilder json, Aggregate aggregate) {
+    json.append("{\"count\":").append(aggregate.getCount())
+        .append(",\"sum\":").append(aggregate.getSum())
+        .append(",\"average\":").append(aggregate.getAverage())
+        .append(",\"min\":").append(aggregate.getCount() == 0 ? "null" : String.valueOf(aggregate.getMin()))
+        .append(",\"max\":").append(aggregate.getCount() == 0 ? "null" : String.valueOf(aggregate.getMax()))
+        .append('}');
+  }
+
+  private static StringBuilder appendString(StringBuilder json, String value) {
+    json.append('"');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == '"' || c == '\\') {
+        json.append('\\').append(c);
+      } else if (c < 0x20) {
+        json.append(String.format("\\u%04x", (int) c));
+      } else {
+        json.append(c);
+      }
+    }
+    return json.append('"');
+  }
+
+  private static void methodNotAllowed(HttpExchange exchange, String allowed) throws IOException {
+    exchange.getResponseHeaders().set("Allow", allowed);
+    sendError(exchange, 405, "Use " + allowed);
+  }
+
+  private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+    StringBuilder json = new StringBuilder("{\"error\":");
+    appendString(json, message == null ? "" : message).append('}');
+    send(exchange, status, JSON, json);
+  }
+
+  private static void send(HttpExchange exchange, int status, String contentType, CharSequence body) throws IOException {
+    byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+    exchange.getResponseHeaders().set("Content-Type", contentType);
+    exchange.sendResponseHeaders(status, bytes.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(bytes);
+    }
+  }
+
+  /**
+   * Runs the server until the JVM is stopped. Options, all optional:
+   * --host=ADDRESS (default 127.0.0.1), --port=N (default 8080),
+   * --generate=N (start with N generated transactions).
+   */
+  public static void main(String[] args) throws IOException {
+    Map<String, String> options = new HashMap<>();
+    for (String arg : args) {
+      int equals = arg.indexOf('=');
+      if (!arg.startsWith("--") || equals < 0) {
+        throw new IllegalArgumentException("Invalid option: " + arg);
+      }
+      options.put(arg.substring(2, equals), arg.substring(equals + 1));
+    }
+    ExpenseTrackerService service = new ExpenseTrackerService(new ConcurrentTransactionModel());
+    int generate = Integer.parseInt(options.getOrDefault("generate", "0"));
+    if (generate > 0) {
+      WorkloadGenerator generator = new WorkloadGenerator(520, 1);
+      for (int added = 0; added < generate; added += GENERATE_BATCH) {
+        service.addTransactions(generator.generate(Math.min(GENERATE_BATCH, generate - added)));
+      }
+    }
+
+    try {
+      METRICS.registerMBeans(ManagementFactory.getPlatformMBeanServer());
+    } catch (JMException ex) {
+      ex.printStackTrace();
+    }
+    METRICS.startLogDump(1, TimeUnit.MINUTES);
+
+    InetSocketAddress address = new InetSocketAddress(options.getOrDefault("host", "127.0.0.1"),
+        Integer.parseInt(options.getOrDefault("port", "8080")));
+    ExpenseTrackerServer server = new ExpenseTrackerServer(service, address);
+    Runtime.getRuntime().addShutdownHook(new Thread(() -> server.stop(1)));
+    server.start();
+    System.out.println("Serving " + service.currentVersion().getTransactionCount() + " transactions on http://"
+        + address.getHostString() + ":" + server.getPort());
+  }
+
+}
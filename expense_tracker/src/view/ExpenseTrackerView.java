@@ -1,22 +1,28 @@
 package view;
 
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.awt.event.ActionListener;
 import java.text.NumberFormat;
 import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.List;
+import metrics.LatencyTimer;
+import metrics.MetricsRegistry;
 import model.Transaction;
 
 public class ExpenseTrackerView extends JFrame {
 
+  private static final long serialVersionUID = 1L;
+
+  // How long showing a whole new list of transactions takes, including the table's own updates
+  private static final LatencyTimer REFRESH_TIMER = MetricsRegistry.getDefault().timer("view.refreshTable");
+
   private JTable transactionsTable;
   private JButton addTransactionBtn;
   private JFormattedTextField amountField;
   private JTextField categoryField;
-  private DefaultTableModel model;
+  private TransactionTableModel model;
 
   private JTextField categoryFilterField;
   private JButton categoryFilterBtn;
@@ -29,6 +35,14 @@ public class ExpenseTrackerView extends JFrame {
   //Create new export button to generate a csv file from the list of transactions
   private JButton exportToCSVBtn;
 
+  // Button to load transactions from a csv file
+  private JButton importFromCSVBtn;
+
+  // Progress of a background export, only visible while one runs
+  private JProgressBar exportProgressBar;
+  private JLabel exportStatusLabel;
+  private JButton cancelExportBtn;
+
     
   private List<Transaction> displayedTransactions = new ArrayList<>(); // ✅ Moved here
 
@@ -36,8 +50,7 @@ public class ExpenseTrackerView extends JFrame {
     setTitle("Expense Tracker");
     setSize(600, 400);
 
-    String[] columnNames = {"serial", "Amount", "Category", "Date"};
-    this.model = new DefaultTableModel(columnNames, 0);
+    this.model = new TransactionTableModel();
 
     transactionsTable = new JTable(model);
     addTransactionBtn = new JButton("Add Transaction");
@@ -62,6 +75,12 @@ public class ExpenseTrackerView extends JFrame {
 
     //Initializing Export to csv button
     exportToCSVBtn = new JButton("Export To CSV");
+    importFromCSVBtn = new JButton("Import From CSV");
+
+    exportProgressBar = new JProgressBar(0, 100);
+    exportProgressBar.setStringPainted(true);
+    exportStatusLabel = new JLabel();
+    cancelExportBtn = new JButton("Cancel Export");
 
     
     JPanel inputPanel = new JPanel();
@@ -77,17 +96,27 @@ public class ExpenseTrackerView extends JFrame {
     buttonPanel.add(clearFilterBtn);
     //adding export button to the buttonPanel
     buttonPanel.add(exportToCSVBtn);
+    buttonPanel.add(importFromCSVBtn);
+
+    JPanel exportPanel = new JPanel();
+    exportPanel.add(exportProgressBar);
+    exportPanel.add(exportStatusLabel);
+    exportPanel.add(cancelExportBtn);
+    hideExportProgress();
 
+    JPanel southPanel = new JPanel(new BorderLayout());
+    southPanel.add(buttonPanel, BorderLayout.NORTH);
+    southPanel.add(exportPanel, BorderLayout.SOUTH);
     
     add(inputPanel, BorderLayout.NORTH);
     add(new JScrollPane(transactionsTable), BorderLayout.CENTER); 
-    add(buttonPanel, BorderLayout.SOUTH);
+    add(southPanel, BorderLayout.SOUTH);
 
     setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
     setVisible(true);
   }
 
-  public DefaultTableModel getTableModel() {
+  public TransactionTableModel getTableModel() {
     return model;
   }
 
@@ -164,27 +193,103 @@ public class ExpenseTrackerView extends JFrame {
     JOptionPane.showMessageDialog(this, msg);
   }
 
+  public void addImportFromCSVListener(ActionListener listener) {
+    importFromCSVBtn.addActionListener(listener);
+  }
+
+  public String getImportFilenameFromUser() {
+    return JOptionPane.showInputDialog(this, "Enter FileName to import (e.g. transactions.csv):");
+  }
+
+  public void displayImportStatusMessage(String msg) {
+    JOptionPane.showMessageDialog(this, msg);
+  }
+
+  public void addCancelExportListener(ActionListener listener) {
+    cancelExportBtn.addActionListener(listener);
+  }
+
+  /**
+   * Shows the progress of a background export.
+   *
+   * @param percent How much of the export is done, from 0 to 100
+   * @param status Rows written so far and the current throughput
+   */
+  public void showExportProgress(int percent, String status) {
+    exportProgressBar.setValue(percent);
+    exportStatusLabel.setText(status);
+    exportProgressBar.setVisible(true);
+    exportStatusLabel.setVisible(true);
+    cancelExportBtn.setVisible(true);
+  }
+
+  public void hideExportProgress() {
+    exportProgressBar.setValue(0);
+    exportStatusLabel.setText("");
+    exportProgressBar.setVisible(false);
+    exportStatusLabel.setVisible(false);
+    cancelExportBtn.setVisible(false);
+  }
+
   public void addClearFilterListener(ActionListener listener) {
     clearFilterBtn.addActionListener(listener);
   }
     
   public void refreshTable(List<Transaction> transactions) {
-    model.setRowCount(0);
+    long start = REFRESH_TIMER.start();
     this.displayedTransactions = transactions; // ✅ Track displayed transactions
+    // The table reads the rows straight from the list, so nothing is copied here
+    model.setTransactions(transactions);
+    REFRESH_TIMER.stop(start);
+  }
 
-    int rowNum = model.getRowCount();
-    double totalCost = 0;
+  /**
+   * Same as refreshTable(transactions), but uses a total that is already known
+   * instead of summing the transactions again.
+   */
+  public void refreshTable(List<Transaction> transactions, double totalCost) {
+    long start = REFRESH_TIMER.start();
+    this.displayedTransactions = transactions;
+    model.setTransactions(transactions, totalCost);
+    REFRESH_TIMER.stop(start);
+  }
 
-    for (Transaction t : transactions) {
-      totalCost += t.getAmount();
+  /**
+   * Shows the transactions after one has been appended to them.
+   * If the table is already showing this list only the new row is inserted,
+   * otherwise (e.g. a filter was active) the whole list is shown again.
+   */
+  public void transactionAdded(List<Transaction> transactions, Transaction added) {
+    // The list already holds the new transaction, so it is one longer than the rows shown
+    if (model.getTransactions() == transactions && transactions.size() == model.getRowCount()) {
+      model.transactionAppended(added);
+    } else {
+      refreshTable(transactions);
     }
+  }
 
-    for (Transaction t : transactions) {
-      model.addRow(new Object[]{++rowNum, t.getAmount(), t.getCategory(), t.getTimestamp()}); 
+  /**
+   * Shows the transactions after a batch of count transactions has been appended
+   * to them. If the table is already showing this list the new rows are inserted
+   * with a single table event, otherwise the whole list is shown again.
+   */
+  public void transactionsAdded(List<Transaction> transactions, int count, double totalCost) {
+    if (model.getTransactions() == transactions && transactions.size() == model.getRowCount() - 1 + count) {
+      model.transactionsAppended(count, totalCost);
+    } else {
+      refreshTable(transactions, totalCost);
     }
+  }
 
-    model.addRow(new Object[]{"Total", null, null, totalCost});
-    transactionsTable.updateUI();
+  /**
+   * Shows the transactions after the one at the given row has been removed from them.
+   */
+  public void transactionRemoved(List<Transaction> transactions, int row, Transaction removed) {
+    if (model.getTransactions() == transactions && row >= 0 && transactions.size() == model.getRowCount() - 2) {
+      model.transactionRemoved(row, removed);
+    } else {
+      refreshTable(transactions);
+    }
   }
 
   public JButton getAddTransactionBtn() {
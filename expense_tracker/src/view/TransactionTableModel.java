@@ -0,0 +1,173 @@
+package view;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.swing.table.AbstractTableModel;
+
+import model.FilteredTransactions;
+import model.Transaction;
+
+/**
+ * Table model that reads the displayed transactions straight from the list it
+ * is given (usually the model's live, column-backed list) instead of copying
+ * them into table rows. The last row shows the total cost, which is kept up
+ * to date as rows are inserted and deleted. Appending or removing a single
+ * transaction fires a single row event, so it costs O(1) work on the EDT.
+ *
+ * Transactions are pulled from the list a page at a time as the table paints
+ * them, so with a lazy list such as a FilteredTransactions result, only the
+ * pages the user scrolls to are ever created. A lazy list may shrink before
+ * the table hears about it, e.g. when a filter result is filtered again after
+ * a removal; rows past its end show nothing until the table is updated.
+ */
+public class TransactionTableModel extends AbstractTableModel {
+
+  private static final long serialVersionUID = 1L;
+
+  private static final String[] COLUMN_NAMES = {"serial", "Amount", "Category", "Date"};
+  // The number of transactions read from the list at a time
+  public static final int PAGE_SIZE = 64;
+
+  private List<Transaction> transactions = Collections.emptyList();
+  // Number of transactions shown, tracked separately so growth of a live list can be detected
+  private int transactionCount;
+  private double totalCost;
+
+  // The page of transactions read last, since a table paints neighbouring rows together
+  private final Transaction[] page = new Transaction[PAGE_SIZE];
+  private int pageStart = -1;
+  private int pageSize;
+
+  /**
+   * Shows a new list of transactions, e.g. after a filter has been applied.
+   */
+  public void setTransactions(List<Transaction> transactions) {
+    if (transactions instanceof FilteredTransactions) {
+      // Summed from the model's columns, without creating every transaction
+      setTransactions(transactions, ((FilteredTransactions) transactions).getTotalCost());
+      return;
+    }
+    double totalCost = 0;
+    for (Transaction t : transactions) {
+      totalCost += t.getAmount();
+    }
+    setTransactions(transactions, totalCost);
+  }
+
+  /**
+   * Shows a new list of transactions whose total is already known,
+   * e.g. from the model's running aggregates, so the list is not summed again.
+   */
+  public void setTransactions(List<Transaction> transactions, double totalCost) {
+    this.transactions = transactions;
+    this.transactionCount = transactions.size();
+    this.totalCost = totalCost;
+    clearCache();
+    fireTableDataChanged();
+  }
+
+  public List<Transaction> getTransactions() {
+    return transactions;
+  }
+
+  /**
+   * Called after a transaction has been appended to the displayed list.
+   */
+  public void transactionAppended(Transaction added) {
+    int row = transactionCount++;
+    totalCost += added.getAmount();
+    clearCache();
+    fireTableRowsInserted(row, row);
+    fireTableRowsUpdated(transactionCount, transactionCount);
+  }
+
+  /**
+   * Called after a batch of transactions has been appended to the displayed list,
+   * with the new total. The whole batch is inserted with a single event.
+   */
+  public void transactionsAppended(int count, double totalCost) {
+    if (count == 0) {
+      return;
+    }
+    int firstRow = transactionCount;
+    transactionCount += count;
+    this.totalCost = totalCost;
+    clearCache();
+    fireTableRowsInserted(firstRow, transactionCount - 1);
+    fireTableRowsUpdated(transactionCount, transactionCount);
+  }
+
+  /**
+   * Called after the transaction at the given row has been removed from the displayed list.
+   */
+  public void transactionRemoved(int row, Transaction removed) {
+    transactionCount--;
+    totalCost -= removed.getAmount();
+    clearCache();
+    fireTableRowsDeleted(row, row);
+    fireTableRowsUpdated(transactionCount, transactionCount);
+  }
+
+  public double getTotalCost() {
+    return totalCost;
+  }
+
+  @Override
+  public int getRowCount() {
+    // One extra row for the total
+    return transactionCount + 1;
+  }
+
+  @Override
+  public int getColumnCount() {
+    return COLUMN_NAMES.length;
+  }
+
+  @Override
+  public String getColumnName(int column) {
+    return COLUMN_NAMES[column];
+  }
+
+  @Override
+  public Object getValueAt(int row, int column) {
+    if (row == transactionCount) {
+      switch (column) {
+        case 0: return "Total";
+        case 3: return totalCost;
+        default: return null;
+      }
+    }
+    Transaction t = transactionAt(row);
+    if (t == null) {
+      return null;
+    }
+    switch (column) {
+      case 0: return row + 1;
+      case 1: return t.getAmount();
+      case 2: return t.getCategory();
+      case 3: return t.getTimestamp();
+      default: return null;
+    }
+  }
+
+  // Returns null if the list no longer has the row
+  private Transaction transactionAt(int row) {
+    if (pageStart < 0 || row < pageStart || row >= pageStart + pageSize) {
+      pageStart = row - row % PAGE_SIZE;
+      pageSize = Math.max(0, Math.min(PAGE_SIZE, Math.min(transactionCount, transactions.size()) - pageStart));
+      for (int i = 0; i < pageSize; i++) {
+        page[i] = transactions.get(pageStart + i);
+      }
+    }
+    return row - pageStart < pageSize ? page[row - pageStart] : null;
+  }
+
+  private void clearCache() {
+    pageStart = -1;
+    pageSize = 0;
+    Arrays.fill(page, null);
+  }
+
+}
@@ -0,0 +1,235 @@
+package workload;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.locks.LockSupport;
+
+import controller.CsvExporter;
+import metrics.LatencyHistogram;
+import model.Category;
+import model.ExpenseTrackerModel;
+import model.Filter.AmountRangeFilter;
+import model.Filter.AndFilter;
+import model.Filter.CategoryFilter;
+import model.Filter.TransactionPredicate;
+
+/**
+ * Replays a random mix of adds, removes, filters and exports against a model
+ * at a target rate and records the latency of each kind of operation.
+ *
+ * Operations are scheduled at fixed intervals and each latency is measured
+ * from the time the operation was scheduled to start, so an operation that
+ * stalls also counts the delay it causes the operations queued behind it
+ * (avoiding coordinated omission). The model is not thread-safe, so
+ * operations run one after another on the calling thread.
+ */
+public class ReplayDriver {
+
+  /**
+   * The kinds of operations that are replayed.
+   */
+  public enum Operation {
+    ADD, REMOVE, FILTER, EXPORT
+  }
+
+  private final ExpenseTrackerModel model;
+  private final WorkloadGenerator generator;
+  private final Path exportFile;
+  private final Random random;
+  private final CsvExporter exporter = new CsvExporter();
+  // The weight of each operation in the mix, in Operation order
+  private final int[] mix = {60, 20, 19, 1};
+
+  /**
+   * @param exportFile The file that exports are written to
+   */
+  public ReplayDriver(ExpenseTrackerModel model, WorkloadGenerator generator, Path exportFile, long seed) {
+    if (model == null || generator == null || exportFile == null) {
+      throw new IllegalArgumentException("Invalid replay driver");
+    }
+    this.model = model;
+    this.generator = generator;
+    this.exportFile = exportFile;
+    this.random = new Random(seed);
+  }
+
+  /**
+   * Sets the relative weight of each operation; the default mix is 60 adds,
+   * 20 removes, 19 filters and 1 export.
+   */
+  public void setMix(int add, int remove, int filter, int export) {
+    if (add < 0 || remove < 0 || filter < 0 || export < 0 || add + remove + filter + export == 0) {
+      throw new IllegalArgumentException("Invalid operation mix");
+    }
+    mix[Operation.ADD.ordinal()] = add;
+    mix[Operation.REMOVE.ordinal()] = remove;
+    mix[Operation.FILTER.ordinal()] = filter;
+    mix[Operation.EXPORT.ordinal()] = export;
+  }
+
+  /**
+   * Runs the given number of operations and returns the latencies, in
+   * nanoseconds, of each kind of operation that ran. A remove on an empty
+   * model runs as an add.
+   *
+   * @param operationsPerSecond The target rate, or 0 to run as fast as possible
+   */
+  public Map<Operation, LatencyHistogram> run(int operations, double operationsPerSecond) {
+    if (operations < 0 || operationsPerSecond < 0 || Double.isNaN(operationsPerSecond)) {
+      throw new IllegalArgumentException("Invalid replay");
+    }
+    Map<Operation, LatencyHistogram> latencies = new EnumMap<>(Operation.class);
+    double intervalNanos = operationsPerSecond == 0 ? 0 : 1e9 / operationsPerSecond;
+    long start = System.nanoTime();
+    for (int i = 0; i < operations; i++) {
+      long scheduled = start + (long) (i * intervalNanos);
+      long now = System.nanoTime();
+      while (now < scheduled) {
+        LockSupport.parkNanos(scheduled - now);
+        now = System.nanoTime();
+      }
+      if (intervalNanos == 0) {
+        scheduled = now;
+      }
+      Operation operation = runOne(pickOperation());
+      latencies.computeIfAbsent(operation, o -> new LatencyHistogram()).record(System.nanoTime() - scheduled);
+    }
+    return latencies;
+  }
+
+  /**
+   * Formats the latencies as a table in microseconds, with one line per kind of
+   * operation.
+   */
+  public static String report(Map<Operation, LatencyHistogram> latencies) {
+    StringBuilder report = new StringBuilder(String.format(Locale.ROOT, "%-8s %10s %10s %10s %10s %10s %10s%n",
+        "op", "count", "p50", "p90", "p99", "p99.9", "max"));
+    for (Map.Entry<Operation, LatencyHistogram> entry : latencies.entrySet()) {
+      LatencyHistogram histogram = entry.getValue();
+      report.append(String.format(Locale.ROOT, "%-8s %10d %10.1f %10.1f %10.1f %10.1f %10.1f%n",
+          entry.getKey().name().toLowerCase(Locale.ROOT), histogram.getCount(),
+          histogram.getValueAtPercentile(50) / 1e3, histogram.getValueAtPercentile(90) / 1e3,
+          histogram.getValueAtPercentile(99) / 1e3, histogram.getValueAtPercentile(99.9) / 1e3,
+          histogram.getMax() / 1e3));
+    }
+    return report.toString();
+  }
+
+  private Operation pickOperation() {
+    int total = 0;
+    for (int weight : mix) {
+      total += weight;
+    }
+    int draw = random.nextInt(total);
+    for (Operation operation : Operation.values()) {
+      draw -= mix[operation.ordinal()];
+      if (draw < 0) {
+        return operation;
+      }
+    }
+    throw new IllegalStateException();
+  }
+
+  // Returns the operation that actually ran
+  private Operation runOne(Operation operation) {
+    switch (operation) {
+      case REMOVE:
+        int count = model.getTransactionCount();
+        if (count > 0) {
+          model.removeTransactionById(model.getTransactions().get(random.nextInt(count)).getId());
+          return Operation.REMOVE;
+        }
+        model.addTransaction(generator.next());
+        return Operation.ADD;
+      case FILTER:
+        randomFilter().filter(model).size();
+        return Operation.FILTER;
+      case EXPORT:
+        try {
+          exporter.export(model, exportFile);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+        return Operation.EXPORT;
+      default:
+        model.addTransaction(generator.next());
+        return Operation.ADD;
+    }
+  }
+
+  // A category, an amount range or both, like the filters offered in the view
+  private TransactionPredicate randomFilter() {
+    CategoryFilter category = new CategoryFilter(Category.fromCode(random.nextInt(Category.values().length)).getWord());
+    double min = random.nextInt(900);
+    AmountRangeFilter amount = new AmountRangeFilter(min, min + 1 + random.nextInt(100));
+    switch (random.nextInt(3)) {
+      case 0:
+        return category;
+      case 1:
+        return amount;
+      default:
+        return new AndFilter(category, amount);
+    }
+  }
+
+  /**
+   * Generates a model and replays a workload against it, then prints the
+   * latencies. Options, all optional:
+   * --rows=N (initial transactions, default 100000), --ops=N (default 100000),
+   * --rate=N (operations per second, default 0 for as fast as possible),
+   * --seed=N, --skew=X (category skew, default 1),
+   * --mix=ADD,REMOVE,FILTER,EXPORT (weights, default 60,20,19,1),
+   * --csv=FILE (only write --rows generated transactions to a CSV file).
+   */
+  public static void main(String[] args) throws IOException {
+    Map<String, String> options = new HashMap<>();
+    for (String arg : args) {
+      int equals = arg.indexOf('=');
+      if (!arg.startsWith("--") || equals < 0) {
+        throw new IllegalArgumentException("Invalid option: " + arg);
+      }
+      options.put(arg.substring(2, equals), arg.substring(equals + 1));
+    }
+    int rows = Integer.parseInt(options.getOrDefault("rows", "100000"));
+    long seed = Long.parseLong(options.getOrDefault("seed", "520"));
+    WorkloadGenerator generator = new WorkloadGenerator(seed, Double.parseDouble(options.getOrDefault("skew", "1")));
+
+    if (options.containsKey("csv")) {
+      generator.writeCsv(Paths.get(options.get("csv")), rows);
+      return;
+    }
+
+    ExpenseTrackerModel model = new ExpenseTrackerModel();
+    generator.addTo(model, rows);
+    Path exportFile = Files.createTempFile("replay", ".csv");
+    try {
+      ReplayDriver driver = new ReplayDriver(model, generator, exportFile, seed);
+      if (options.containsKey("mix")) {
+        String[] weights = options.get("mix").split(",");
+        if (weights.length != 4) {
+          throw new IllegalArgumentException("Invalid operation mix");
+        }
+        driver.setMix(Integer.parseInt(weights[0]), Integer.parseInt(weights[1]),
+            Integer.parseInt(weights[2]), Integer.parseInt(weights[3]));
+      }
+      int operations = Integer.parseInt(options.getOrDefault("ops", "100000"));
+      long start = System.nanoTime();
+      Map<Operation, LatencyHistogram> latencies = driver.run(operations, Double.parseDouble(options.getOrDefault("rate", "0")));
+      double seconds = (System.nanoTime() - start) / 1e9;
+      System.out.printf(Locale.ROOT, "%d operations in %.2f s (%.0f/s), latencies in microseconds:%n",
+          operations, seconds, operations / seconds);
+      System.out.print(report(latencies));
+    } finally {
+      Files.deleteIfExists(exportFile);
+    }
+  }
+
+}
@@ -0,0 +1,132 @@
+package workload;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import controller.CsvExporter;
+import controller.InputValidation;
+import controller.ValidatedRecord;
+import model.Category;
+import model.ExpenseTrackerModel;
+import model.Transaction;
+
+/**
+ * Generates reproducible transactions for load tests: the same seed and skew
+ * always give the same transactions.
+ *
+ * Categories are drawn with a Zipf skew, where category k (in Category order)
+ * is drawn with a probability proportional to 1 / (k + 1)^skew; a skew of 0 is
+ * uniform. Amounts follow a log-normal distribution around a typical amount
+ * for their category, rounded to cents and redrawn until InputValidation
+ * accepts them. Timestamps start on 1 January 2024 and are spaced by random
+ * gaps of about 10 minutes.
+ */
+public class WorkloadGenerator {
+
+  private static final long START_EPOCH_MILLIS = 1_704_067_200_000L;
+  private static final double MEAN_GAP_MILLIS = 10 * 60_000.0;
+  // Typical amounts in Category order: food, travel, bills, entertainment, other
+  private static final double[] MEDIAN_AMOUNTS = {15, 120, 80, 30, 20};
+  private static final double AMOUNT_SIGMA = 0.9;
+  // Transactions are added to a model in batches of this many
+  private static final int BATCH_SIZE = 1 << 16;
+
+  private final Random random;
+  private final double[] cumulativeWeights;
+  private long epochMillis = START_EPOCH_MILLIS;
+
+  public WorkloadGenerator(long seed, double categorySkew) {
+    if (categorySkew < 0 || Double.isNaN(categorySkew) || Double.isInfinite(categorySkew)) {
+      throw new IllegalArgumentException("Invalid category skew");
+    }
+    this.random = new Random(seed);
+    Category[] categories = Category.values();
+    cumulativeWeights = new double[categories.length];
+    double total = 0;
+    for (int k = 0; k < categories.length; k++) {
+      total += 1.0 / Math.pow(k + 1, categorySkew);
+      cumulativeWeights[k] = total;
+    }
+    for (int k = 0; k < categories.length; k++) {
+      cumulativeWeights[k] /= total;
+    }
+  }
+
+  /**
+   * Returns the next transaction.
+   */
+  public Transaction next() {
+    ValidatedRecord record = nextRecord(nextCategory());
+    epochMillis += (long) (-MEAN_GAP_MILLIS * Math.log(1 - random.nextDouble()));
+    return new Transaction(record, epochMillis);
+  }
+
+  public Category nextCategory() {
+    double draw = random.nextDouble();
+    for (int k = 0; k < cumulativeWeights.length - 1; k++) {
+      if (draw < cumulativeWeights[k]) {
+        return Category.fromCode(k);
+      }
+    }
+    return Category.fromCode(cumulativeWeights.length - 1);
+  }
+
+  /**
+   * Returns an amount in cents that InputValidation accepts, typical of the
+   * given category.
+   */
+  public double nextAmount(Category category) {
+    return nextRecord(category).getAmount();
+  }
+
+  // Each amount is validated once, and the Transaction trusts the record
+  private ValidatedRecord nextRecord(Category category) {
+    while (true) {
+      double amount = MEDIAN_AMOUNTS[category.getCode()] * Math.exp(AMOUNT_SIGMA * random.nextGaussian());
+      ValidatedRecord record = InputValidation.validateRecord(Math.round(amount * 100) / 100.0, category);
+      if (record != null) {
+        return record;
+      }
+    }
+  }
+
+  /**
+   * Returns the next count transactions.
+   */
+  public List<Transaction> generate(int count) {
+    if (count < 0) {
+      throw new IllegalArgumentException("Invalid transaction count");
+    }
+    List<Transaction> transactions = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      transactions.add(next());
+    }
+    return transactions;
+  }
+
+  /**
+   * Adds the next count transactions to the model, in batches.
+   */
+  public void addTo(ExpenseTrackerModel model, int count) {
+    if (count < 0) {
+      throw new IllegalArgumentException("Invalid transaction count");
+    }
+    for (int added = 0; added < count; added += BATCH_SIZE) {
+      model.addTransactions(generate(Math.min(BATCH_SIZE, count - added)));
+    }
+  }
+
+  /**
+   * Writes the next count transactions to a CSV file in the format the
+   * CsvExporter writes and the CsvImporter reads.
+   */
+  public void writeCsv(Path path, int count) throws IOException {
+    ExpenseTrackerModel model = new ExpenseTrackerModel();
+    addTo(model, count);
+    new CsvExporter().export(model, path);
+  }
+
+}
@@ -0,0 +1,93 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import model.Aggregate;
+import model.ExpenseTrackerModel;
+import model.Transaction;
+
+/**
+ * Tests for the running aggregates kept by the ExpenseTrackerModel.
+ */
+public class TestAggregates {
+
+  private ExpenseTrackerModel model;
+
+  @Before
+  public void setup() {
+    model = new ExpenseTrackerModel();
+  }
+
+  @Test
+  public void testEmptyModel() {
+    Aggregate aggregate = model.getAggregate();
+    assertEquals(0, aggregate.getCount());
+    assertEquals(0.0, aggregate.getSum(), 0.0);
+    assertTrue(Double.isNaN(aggregate.getMin()));
+    assertTrue(model.getCategoryAggregates().isEmpty());
+  }
+
+  @Test
+  public void testTotalsFollowAddsAndRemoves() {
+    Transaction cheapest = new Transaction(1.25, "food");
+    Transaction dearest = new Transaction(900.0, "travel");
+    model.addTransaction(cheapest);
+    model.addTransaction(new Transaction(40.0, "Food"));
+    model.addTransaction(dearest);
+    model.addTransaction(new Transaction(60.0, "travel"));
+
+    assertEquals(1001.25, model.getTotalCost(), 1e-9);
+    Aggregate all = model.getAggregate();
+    assertEquals(4, all.getCount());
+    assertEquals(1.25, all.getMin(), 0.0);
+    assertEquals(900.0, all.getMax(), 0.0);
+
+    Aggregate food = model.getAggregate("FOOD");
+    assertEquals(2, food.getCount());
+    assertEquals(41.25, food.getSum(), 1e-9);
+
+    // Removing the minimum and maximum forces them to be recomputed
+    model.removeTransaction(cheapest);
+    model.removeTransaction(dearest);
+    all = model.getAggregate();
+    assertEquals(2, all.getCount());
+    assertEquals(100.0, all.getSum(), 1e-9);
+    assertEquals(40.0, all.getMin(), 0.0);
+    assertEquals(60.0, all.getMax(), 0.0);
+
+    Map<String, Aggregate> byCategory = model.getCategoryAggregates();
+    assertEquals(60.0, byCategory.get("travel").getMax(), 0.0);
+    assertEquals(60.0, byCategory.get("travel").getMin(), 0.0);
+    assertEquals(40.0, byCategory.get("food").getSum(), 1e-9);
+  }
+
+  @Test
+  public void testCompensatedSumMatchesRescan() {
+    Random random = new Random(3);
+    List<Transaction> added = new ArrayList<>();
+    for (int i = 0; i < 100000; i++) {
+      Transaction t = new Transaction(0.01 + random.nextInt(99999) / 100.0, "bills");
+      model.addTransaction(t);
+      added.add(t);
+    }
+    for (int i = 0; i < added.size(); i += 2) {
+      model.removeTransaction(added.get(i));
+    }
+
+    BigDecimal exact = BigDecimal.ZERO;
+    for (Transaction t : model.getTransactions()) {
+      exact = exact.add(new BigDecimal(t.getAmount()));
+    }
+    assertEquals(exact.doubleValue(), model.getTotalCost(), 1e-6);
+    assertEquals(model.getTransactions().size(), model.getAggregate("bills").getCount());
+  }
+
+}
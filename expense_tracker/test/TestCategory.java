@@ -0,0 +1,59 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import controller.InputValidation;
+import model.Category;
+import model.ExpenseTrackerModel;
+import model.Transaction;
+import model.Filter.CategoryFilter;
+
+/**
+ * Tests for the Category registry and the category codes it gives transactions.
+ */
+public class TestCategory {
+
+  @Test
+  public void testLookupIgnoresCase() {
+    for (Category category : Category.values()) {
+      assertSame(category, Category.lookup(category.getWord()));
+      assertSame(category, Category.lookup(category.getWord().toUpperCase()));
+      assertSame(category, Category.fromCode(category.getCode()));
+    }
+    assertSame(Category.BILLS, Category.lookup("bilLs"));
+    assertSame(Category.OTHER, Category.lookup("Other"));
+  }
+
+  @Test
+  public void testLookupRejectsOtherText() {
+    String[] invalid = {null, "", " food", "food ", "foods", "fo0d", "otter", "bill5", "travle", "entertainmen"};
+    for (String text : invalid) {
+      assertNull(text, Category.lookup(text));
+      assertFalse(text, InputValidation.isValidCategory(text));
+    }
+    assertTrue(InputValidation.isValidCategory("Entertainment"));
+  }
+
+  @Test
+  public void testRowsCarryTheCode() {
+    ExpenseTrackerModel model = new ExpenseTrackerModel();
+    model.addTransaction(new Transaction(10, "Food"));
+    model.addTransaction(new Transaction(20, "travel"));
+    model.addTransaction(new Transaction(30, "FOOD"));
+
+    assertEquals(Category.FOOD.getCode(), model.getTransactions().get(0).getCategoryCode());
+    assertEquals(Category.TRAVEL.getCode(), model.getCategoryCode(1));
+    assertEquals(Category.FOOD.getCode(), model.snapshot().getCategoryCode(2));
+    // Every spelling is shown as the lowercase word
+    assertEquals("food", model.getTransactions().get(2).getCategory());
+    assertEquals("food", model.getCategory(0));
+    assertEquals(Category.FOOD, model.getTransactions().get(0).getCategoryValue());
+    assertEquals(2, model.countInCategory(Category.FOOD));
+    assertEquals(2, new CategoryFilter("food").filter(model).size());
+  }
+
+}
@@ -0,0 +1,195 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import model.ConcurrentTransactionModel;
+import model.Transaction;
+import model.TransactionVersion;
+import model.Filter.CategoryFilter;
+import model.Filter.QueryPlanner;
+
+/**
+ * Tests for the concurrent model and its immutable versions. These do not need a view.
+ */
+public class TestConcurrentTransactionModel {
+
+  private ConcurrentTransactionModel model;
+
+  @Before
+  public void setup() {
+    model = new ConcurrentTransactionModel();
+  }
+
+  @Test
+  public void testVersionsDoNotChange() {
+    Transaction food = new Transaction(10.0, "food");
+    model.addTransaction(food);
+    TransactionVersion first = model.currentVersion();
+
+    model.addTransaction(new Transaction(20.0, "bills"));
+    model.removeTransactionById(food.getId());
+    TransactionVersion second = model.currentVersion();
+
+    assertEquals(1, first.getTransactionCount());
+    assertEquals("food", first.getCategory(0));
+    assertEquals(10.0, first.getTotalCost(), 0.0);
+    assertEquals(1, second.getTransactionCount());
+    assertEquals("bills", second.getCategory(0));
+    assertEquals(20.0, second.getTotalCost(), 0.0);
+    assertTrue(second.getVersion() > first.getVersion());
+  }
+
+  @Test
+  public void testRowsSkipRemovedTransactions() {
+    List<Transaction> added = new ArrayList<>();
+    for (int i = 0; i < 10000; i++) {
+      added.add(new Transaction(1 + i % 900, i % 2 == 0 ? "food" : "travel", i));
+    }
+    model.addTransactions(added);
+    // Remove every third transaction, and a whole chunk's worth in the middle
+    List<Transaction> removed = new ArrayList<>();
+    List<Transaction> kept = new ArrayList<>();
+    for (int i = 0; i < added.size(); i++) {
+      if (i % 3 == 0 || (i >= 4096 && i < 8192)) {
+        removed.add(added.get(i));
+      } else {
+        kept.add(added.get(i));
+      }
+    }
+    assertEquals(removed.size(), model.removeTransactions(removed));
+
+    TransactionVersion version = model.currentVersion();
+    assertEquals(kept.size(), version.getTransactionCount());
+    List<Transaction> transactions = version.getTransactions();
+    double total = 0;
+    for (int row = 0; row < kept.size(); row++) {
+      assertEquals(kept.get(row).getId(), transactions.get(row).getId());
+      assertEquals(kept.get(row).getEpochMillis(), version.getEpochMillis(row));
+      total += kept.get(row).getAmount();
+    }
+    assertEquals(total, version.getTotalCost(), 1e-6);
+
+    int[] food = QueryPlanner.matchingRows(new CategoryFilter("food"), version);
+    for (int row : food) {
+      assertEquals("food", version.getCategory(row));
+    }
+  }
+
+  @Test
+  public void testRejectedBatchAddsNothing() {
+    Transaction added = new Transaction(10.0, "food");
+    model.addTransaction(added);
+    try {
+      model.addTransactions(Arrays.asList(new Transaction(20.0, "bills"), new Transaction(30.0, "travel"), added));
+      fail("A batch with a transaction that was already added should be rejected");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+    model.addTransaction(new Transaction(40.0, "other"));
+
+    TransactionVersion version = model.currentVersion();
+    assertEquals(2, version.getTransactionCount());
+    assertEquals(50.0, version.getTotalCost(), 0.0);
+    assertEquals("other", version.getCategory(1));
+  }
+
+  @Test
+  public void testCompactionKeepsOlderVersions() {
+    List<Transaction> added = new ArrayList<>();
+    for (int i = 0; i < 10000; i++) {
+      added.add(new Transaction(1 + i % 900, "food", i));
+    }
+    model.addTransactions(added);
+    TransactionVersion before = model.currentVersion();
+    // Removing more than half of the rows compacts the chunks
+    List<Transaction> kept = new ArrayList<>(added);
+    List<Transaction> removed = new ArrayList<>();
+    for (int i = 0; i < 6000; i++) {
+      removed.add(kept.remove(kept.size() / 2));
+    }
+    model.removeTransactions(removed);
+    // Ids still find their rows after the rows were moved
+    model.removeTransactionById(kept.remove(0).getId());
+    Transaction last = new Transaction(5.0, "bills", 20000);
+    model.addTransaction(last);
+    kept.add(last);
+
+    TransactionVersion after = model.currentVersion();
+    assertEquals(kept.size(), after.getTransactionCount());
+    for (int row = 0; row < kept.size(); row++) {
+      assertEquals(kept.get(row).getEpochMillis(), after.getEpochMillis(row));
+    }
+    assertEquals(10000, before.getTransactionCount());
+    for (int row = 0; row < added.size(); row++) {
+      assertEquals(added.get(row).getEpochMillis(), before.getEpochMillis(row));
+    }
+  }
+
+  @Test
+  public void testReadersSeeConsistentVersionsWhileWritersRun() throws InterruptedException {
+    final int writers = 4;
+    final int perWriter = 20000;
+    final AtomicReference<Throwable> failure = new AtomicReference<>();
+    List<Thread> threads = new ArrayList<>();
+    for (int w = 0; w < writers; w++) {
+      threads.add(new Thread(() -> {
+        List<Transaction> mine = new ArrayList<>();
+        for (int i = 0; i < perWriter; i++) {
+          Transaction t = new Transaction(1.0, "food");
+          mine.add(t);
+          model.addTransaction(t);
+          if (i % 2 == 1) {
+            // Remove the one before, so half of each writer's transactions stay
+            model.removeTransactionById(mine.get(i - 1).getId());
+          }
+        }
+      }));
+    }
+    final AtomicBoolean done = new AtomicBoolean();
+    for (int r = 0; r < 2; r++) {
+      threads.add(new Thread(() -> {
+        long lastVersion = 0;
+        while (!done.get() && failure.get() == null) {
+          TransactionVersion version = model.currentVersion();
+          try {
+            // Every transaction is 1.0, so the total always equals the count
+            assertTrue(version.getVersion() >= lastVersion);
+            assertEquals(version.getTransactionCount(), version.getTotalCost(), 1e-9);
+            double sum = 0;
+            for (int row = 0; row < version.getTransactionCount(); row++) {
+              sum += version.getAmount(row);
+            }
+            assertEquals(version.getTransactionCount(), sum, 1e-9);
+          } catch (Throwable e) {
+            failure.compareAndSet(null, e);
+          }
+          lastVersion = version.getVersion();
+        }
+      }));
+    }
+    for (Thread thread : threads) {
+      thread.start();
+    }
+    for (int w = 0; w < writers; w++) {
+      threads.get(w).join();
+    }
+    done.set(true);
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    if (failure.get() != null) {
+      throw new AssertionError(failure.get());
+    }
+    assertEquals(writers * perWriter / 2, model.currentVersion().getTransactionCount());
+  }
+
+}
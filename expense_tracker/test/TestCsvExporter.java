@@ -0,0 +1,122 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import controller.CsvExporter;
+import model.ExpenseTrackerModel;
+import model.Transaction;
+import model.TransactionSnapshot;
+
+/**
+ * Tests for the streaming CSV exporter. These do not need a view.
+ */
+public class TestCsvExporter {
+
+  private ExpenseTrackerModel model;
+  private File csvFile;
+
+  @Before
+  public void setup() throws IOException {
+    model = new ExpenseTrackerModel();
+    csvFile = File.createTempFile("export", ".csv");
+  }
+
+  @After
+  public void cleanup() {
+    csvFile.delete();
+  }
+
+  @Test
+  public void testRowsMatchTheTransactions() throws IOException {
+    double[] amounts = { 1.005, 0.125, 2.675, 999.995, 63.89, 23.76, 0.01, 1000 };
+    String[] categories = { "food", "travel", "bills", "entertainment", "other", "Food", "OTHER", "food" };
+    for (int i = 0; i < amounts.length; i++) {
+      model.addTransaction(new Transaction(amounts[i], categories[i]));
+    }
+    Random random = new Random(11);
+    for (int i = 0; i < 50000; i++) {
+      model.addTransaction(new Transaction(1 + random.nextInt(99900) / 100.0 + random.nextInt(10) / 1000.0, "bills"));
+    }
+
+    assertEquals(model.getTransactionCount(), new CsvExporter().export(model, csvFile.toPath()));
+
+    List<String> lines = Files.readAllLines(csvFile.toPath());
+    assertEquals(CsvExporter.HEADER, lines.get(0));
+    List<Transaction> transactions = model.getTransactions();
+    assertEquals(transactions.size() + 1, lines.size());
+    for (int i = 0; i < transactions.size(); i++) {
+      Transaction t = transactions.get(i);
+      String expected = t.getTimestamp() + "," + String.format(Locale.US, "%.2f", t.getAmount()) + ",\"" + t.getCategory() + "\"";
+      assertEquals(expected, lines.get(i + 1));
+    }
+  }
+
+  @Test
+  public void testEmptyModelWritesOnlyTheHeader() throws IOException {
+    assertEquals(0, new CsvExporter().export(model, csvFile.toPath()));
+    List<String> lines = Files.readAllLines(csvFile.toPath());
+    assertEquals(1, lines.size());
+    assertEquals(CsvExporter.HEADER, lines.get(0));
+  }
+
+  @Test
+  public void testProgressAndCancellation() throws IOException {
+    for (int i = 0; i < 70000; i++) {
+      model.addTransaction(new Transaction(10, "food"));
+    }
+    AtomicInteger updates = new AtomicInteger();
+    new CsvExporter().export(model, csvFile.toPath(), (rowsWritten, totalRows, bytesWritten) -> {
+      updates.incrementAndGet();
+      assertEquals(70000, totalRows);
+      return true;
+    });
+    // One update part way through and one at the end
+    assertEquals(2, updates.get());
+
+    try {
+      new CsvExporter().export(model, csvFile.toPath(), (rowsWritten, totalRows, bytesWritten) -> false);
+      fail("The export should have been cancelled");
+    } catch (CancellationException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testExportFromSnapshotIgnoresLaterChanges() throws IOException {
+    Transaction first = new Transaction(10, "food");
+    Transaction second = new Transaction(20, "bills");
+    model.addTransaction(first);
+    model.addTransaction(second);
+    TransactionSnapshot snapshot = model.snapshot();
+    // Removing both compacts the model's columns, which the snapshot shares
+    model.removeTransaction(first);
+    model.removeTransaction(second);
+    model.addTransaction(new Transaction(30, "travel"));
+
+    assertEquals(2, new CsvExporter().export(snapshot, csvFile.toPath()));
+    List<String> lines = Files.readAllLines(csvFile.toPath());
+    assertTrue(lines.get(1).endsWith(",10.00,\"food\""));
+    assertTrue(lines.get(2).endsWith(",20.00,\"bills\""));
+  }
+
+  @Test
+  public void testQuote() {
+    assertEquals("\"food\"", CsvExporter.quote("food"));
+    assertEquals("\"a\"\"b\"", CsvExporter.quote("a\"b"));
+    assertEquals("\"\"", CsvExporter.quote(null));
+  }
+
+}
@@ -0,0 +1,144 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import controller.CsvExporter;
+import controller.CsvImporter;
+import model.ExpenseTrackerModel;
+import model.Transaction;
+
+/**
+ * Tests for the bulk CSV importer. These do not need a view.
+ */
+public class TestCsvImporter {
+
+  private ExpenseTrackerModel model;
+  private File csvFile;
+
+  @Before
+  public void setup() throws IOException {
+    model = new ExpenseTrackerModel();
+    csvFile = File.createTempFile("import", ".csv");
+  }
+
+  @After
+  public void cleanup() {
+    csvFile.delete();
+  }
+
+  @Test
+  public void testImportsTheSampleFormat() throws IOException {
+    write("Date,Amount,Category\n"
+        + "03-12-2025 22:50,100.00,\"food\"\n"
+        + "03-12-2025 22:50,101.00,\"bills\"\r\n"
+        + "03-12-2025 22:51,102.5,travel\n");
+
+    CsvImporter.Result result = new CsvImporter().importInto(model, csvFile.toPath());
+
+    assertEquals(3, result.getImported());
+    assertEquals(0, result.getRejected());
+    List<Transaction> transactions = model.getTransactions();
+    assertEquals(100.0, transactions.get(0).getAmount(), 0.0);
+    assertEquals("food", transactions.get(0).getCategory());
+    assertEquals("03-12-2025 22:50", transactions.get(0).getTimestamp());
+    assertEquals("bills", transactions.get(1).getCategory());
+    assertEquals(102.5, transactions.get(2).getAmount(), 0.0);
+    assertEquals("03-12-2025 22:51", transactions.get(2).getTimestamp());
+    assertEquals(303.5, model.getTotalCost(), 1e-9);
+  }
+
+  @Test
+  public void testInvalidLinesAreSkipped() throws IOException {
+    write("Date,Amount,Category\n"
+        + "03-12-2025 22:50,0,\"food\"\n"
+        + "03-12-2025 22:50,1001,\"food\"\n"
+        + "03-12-2025 22:50,abc,\"food\"\n"
+        + "03-12-2025 22:50,10,\"shoes\"\n"
+        + "31-02-2025 22:50,10,\"food\"\n"
+        + "not a line\n"
+        + "\n"
+        + "03-12-2025 22:50,10,\"Food\"\n");
+
+    CsvImporter.Result result = new CsvImporter().importInto(model, csvFile.toPath());
+
+    assertEquals(1, result.getImported());
+    assertEquals(6, result.getRejected());
+    assertEquals("food", model.getTransactions().get(0).getCategory());
+  }
+
+  @Test
+  public void testParallelImportRoundTripsAnExport() throws IOException {
+    String[] categories = { "food", "travel", "bills", "entertainment", "other" };
+    Random random = new Random(5);
+    ExpenseTrackerModel source = new ExpenseTrackerModel();
+    for (int i = 0; i < 200000; i++) {
+      source.addTransaction(new Transaction(0.01 + random.nextInt(99999) / 100.0, categories[random.nextInt(5)]));
+    }
+    new CsvExporter().export(source, csvFile.toPath());
+
+    // Several chunks, parsed on four threads
+    CsvImporter.Result result = new CsvImporter(4).importInto(model, csvFile.toPath());
+
+    assertEquals(source.getTransactionCount(), result.getImported());
+    assertEquals(0, result.getRejected());
+    List<Transaction> expected = source.getTransactions();
+    List<Transaction> actual = model.getTransactions();
+    for (int i = 0; i < expected.size(); i++) {
+      // The file holds the amounts rounded to cents
+      assertEquals(expected.get(i).getAmount(), actual.get(i).getAmount(), 1e-9);
+      assertEquals(expected.get(i).getCategory(), actual.get(i).getCategory());
+      assertEquals(expected.get(i).getTimestamp(), actual.get(i).getTimestamp());
+    }
+    assertEquals(source.getTotalCost(), model.getTotalCost(), 1e-6);
+  }
+
+  @Test
+  public void testChunksReachTheSinkInFileOrderAndASinkFailureStopsTheImport() throws IOException {
+    ExpenseTrackerModel source = new ExpenseTrackerModel();
+    for (int i = 0; i < 200000; i++) {
+      source.addTransaction(new Transaction(1 + i % 1000, "food", i * 60000L));
+    }
+    new CsvExporter().export(source, csvFile.toPath());
+
+    List<Long> firstTimestamps = new ArrayList<>();
+    try {
+      new CsvImporter(4).importInto((amounts, categories, epochMillis, count) -> {
+        firstTimestamps.add(epochMillis[0]);
+        if (firstTimestamps.size() == 2) {
+          throw new IOException("The sink is full.");
+        }
+      }, csvFile.toPath());
+      fail("The sink's failure should have stopped the import");
+    } catch (IOException e) {
+      assertEquals("The sink is full.", e.getMessage());
+    }
+    assertEquals(2, firstTimestamps.size());
+    assertEquals(source.getTransactions().get(0).getEpochMillis(), (long) firstTimestamps.get(0));
+    assertTrue(firstTimestamps.get(0) < firstTimestamps.get(1));
+  }
+
+  @Test
+  public void testEmptyFile() throws IOException {
+    write("");
+    CsvImporter.Result result = new CsvImporter().importInto(model, csvFile.toPath());
+    assertEquals(0, result.getImported());
+    assertEquals(0, model.getTransactionCount());
+  }
+
+  private void write(String content) throws IOException {
+    Files.write(csvFile.toPath(), content.getBytes(StandardCharsets.UTF_8));
+  }
+
+}
@@ -0,0 +1,312 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import model.ExpenseTrackerModel;
+import model.FilteredTransactions;
+import model.Transaction;
+import model.Filter.AmountFilter;
+import model.Filter.CategoryFilter;
+import model.Filter.DateRangeFilter;
+
+/**
+ * Tests for the columnar ExpenseTrackerModel that do not need a view.
+ */
+public class TestExpenseTrackerModel {
+
+  private ExpenseTrackerModel model;
+
+  @Before
+  public void setup() {
+    model = new ExpenseTrackerModel();
+  }
+
+  @Test
+  public void testAddedTransactionsAreReadBack() {
+    Transaction food = new Transaction(12.5, "food");
+    Transaction travel = new Transaction(300.0, "travel");
+    model.addTransaction(food);
+    model.addTransaction(travel);
+
+    List<Transaction> transactions = model.getTransactions();
+    assertEquals(2, transactions.size());
+    assertEquals(12.5, transactions.get(0).getAmount(), 0.0);
+    assertEquals("food", transactions.get(0).getCategory());
+    assertEquals(food.getTimestamp(), transactions.get(0).getTimestamp());
+    assertEquals(300.0, transactions.get(1).getAmount(), 0.0);
+    assertEquals("travel", transactions.get(1).getCategory());
+  }
+
+  @Test
+  public void testTransactionsAreViewsOverTheStore() {
+    model.addTransaction(new Transaction(12.5, "food"));
+    // Each access creates a fresh view of the stored row
+    assertNotSame(model.getTransactions().get(0), model.getTransactions().get(0));
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void testTransactionsListIsReadOnly() {
+    model.getTransactions().add(new Transaction(12.5, "food"));
+  }
+
+  @Test
+  public void testStorageGrowsPastInitialCapacity() {
+    for (int i = 1; i <= 1000; i++) {
+      model.addTransaction(new Transaction(i, i % 2 == 0 ? "food" : "bills"));
+    }
+    assertEquals(1000, model.getTransactions().size());
+    assertEquals(1000.0, model.getTransactions().get(999).getAmount(), 0.0);
+    assertEquals("bills", model.getTransactions().get(998).getCategory());
+  }
+
+  @Test
+  public void testRemoveTransactionShiftsRows() {
+    Transaction first = new Transaction(10.0, "food");
+    Transaction second = new Transaction(20.0, "bills");
+    Transaction third = new Transaction(30.0, "other");
+    model.addTransaction(first);
+    model.addTransaction(second);
+    model.addTransaction(third);
+
+    model.removeTransaction(model.getTransactions().get(1));
+
+    List<Transaction> transactions = model.getTransactions();
+    assertEquals(2, transactions.size());
+    assertEquals(10.0, transactions.get(0).getAmount(), 0.0);
+    assertEquals(30.0, transactions.get(1).getAmount(), 0.0);
+  }
+
+  @Test
+  public void testIdsAreStableAndIncreasing() {
+    Transaction first = new Transaction(10.0, "food");
+    Transaction second = new Transaction(20.0, "bills");
+    assertTrue(second.getId() > first.getId());
+    model.addTransaction(first);
+    model.addTransaction(second);
+
+    assertEquals(first.getId(), model.getTransactions().get(0).getId());
+    assertEquals(20.0, model.getTransactionById(second.getId()).getAmount(), 0.0);
+
+    assertTrue(model.removeTransactionById(first.getId()));
+    assertFalse(model.removeTransactionById(first.getId()));
+    assertNull(model.getTransactionById(first.getId()));
+    // The remaining transaction keeps its id after the rows are compacted
+    assertEquals(second.getId(), model.getTransactions().get(0).getId());
+    assertEquals(second.getId(), model.getTransactionById(second.getId()).getId());
+  }
+
+  @Test
+  public void testReadsBetweenRemovalsMatchAList() {
+    String[] categories = { "food", "travel", "bills", "entertainment", "other" };
+    List<Transaction> expected = new ArrayList<>();
+    Random random = new Random(4);
+    for (int step = 0; step < 20000; step++) {
+      if (expected.isEmpty() || random.nextInt(3) > 0) {
+        Transaction t = new Transaction(1 + random.nextInt(200), categories[random.nextInt(categories.length)]);
+        model.addTransaction(t);
+        expected.add(t);
+      } else {
+        // Every removal is followed by reads, which must skip the removed row without compacting
+        Transaction removed = expected.remove(random.nextInt(expected.size()));
+        assertTrue(model.removeTransaction(removed));
+        int row = random.nextInt(expected.size() + 1);
+        if (row < expected.size()) {
+          assertEquals(expected.get(row).getId(), model.getTransactions().get(row).getId());
+          assertEquals(row, model.getRowOf(expected.get(row).getId()));
+        }
+        assertEquals(-1, model.getRowOf(removed.getId()));
+      }
+      assertEquals(expected.size(), model.getTransactionCount());
+    }
+    for (int row = 0; row < expected.size(); row++) {
+      Transaction t = expected.get(row);
+      assertEquals(t.getId(), model.getTransactions().get(row).getId());
+      assertEquals(t.getAmount(), model.getAmount(row), 0.0);
+      assertEquals(row, model.getRowOf(t.getId()));
+    }
+    assertEquals(expected.size(), model.snapshot().getTransactionCount());
+    for (String category : categories) {
+      assertSameTransactions(new CategoryFilter(category).filter(expected), new CategoryFilter(category).filter(model));
+    }
+    for (int amount = 1; amount <= 200; amount += 13) {
+      assertSameTransactions(new AmountFilter(amount).filter(expected), new AmountFilter(amount).filter(model));
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testAddingTheSameTransactionTwiceIsRejected() {
+    Transaction t = new Transaction(10.0, "food");
+    model.addTransaction(t);
+    model.addTransaction(t);
+  }
+
+  @Test
+  public void testBatchRemove() {
+    List<Transaction> toRemove = new ArrayList<>();
+    for (int i = 1; i <= 10000; i++) {
+      Transaction t = new Transaction(1 + i % 100, "other");
+      model.addTransaction(t);
+      if (i % 3 == 0) {
+        toRemove.add(t);
+      }
+    }
+    assertEquals(toRemove.size(), model.removeTransactions(toRemove));
+
+    List<Transaction> transactions = model.getTransactions();
+    assertEquals(10000 - toRemove.size(), transactions.size());
+    for (Transaction t : toRemove) {
+      assertNull(model.getTransactionById(t.getId()));
+    }
+    for (Transaction t : transactions) {
+      assertEquals(t.getAmount(), model.getTransactionById(t.getId()).getAmount(), 0.0);
+    }
+    assertEquals(transactions.size(), new CategoryFilter("other").filter(model).size());
+  }
+
+  @Test
+  public void testBatchAddMatchesSingleAdds() {
+    ExpenseTrackerModel single = new ExpenseTrackerModel();
+    String[] categories = { "food", "Food", "travel", "bills" };
+    Random random = new Random(19);
+    single.addTransaction(new Transaction(5.0, "food"));
+    model.addTransaction(single.getTransactions().get(0));
+    List<Transaction> batch = new ArrayList<>();
+    for (int i = 0; i < 5000; i++) {
+      Transaction t = new Transaction(1 + random.nextInt(999), categories[random.nextInt(categories.length)]);
+      batch.add(t);
+      single.addTransaction(t);
+    }
+    model.addTransactions(batch);
+
+    assertEquals(single.getTransactionCount(), model.getTransactionCount());
+    assertEquals(single.getTotalCost(), model.getTotalCost(), 1e-6);
+    assertEquals(single.getAggregate("food").getCount(), model.getAggregate("food").getCount());
+    assertEquals(single.getAggregate("bills").getMax(), model.getAggregate("bills").getMax(), 0.0);
+    for (int min = 0; min < 1000; min += 97) {
+      assertEquals(single.countWithAmountBetween(min, min + 150), model.countWithAmountBetween(min, min + 150));
+      assertEquals(single.getRowsWithAmountBetween(min, min + 150).length,
+          model.getRowsWithAmountBetween(min, min + 150).length);
+    }
+    assertEquals(single.countInCategory("food"), model.countInCategory("food"));
+  }
+
+  @Test
+  public void testRejectedBatchAddsNothing() {
+    Transaction held = new Transaction(10.0, "food");
+    model.addTransaction(held);
+    List<Transaction> batch = new ArrayList<>();
+    batch.add(new Transaction(20.0, "travel"));
+    batch.add(held);
+    try {
+      model.addTransactions(batch);
+      fail("A transaction the model already holds was added again");
+    } catch (IllegalArgumentException e) {
+      assertEquals(1, model.getTransactionCount());
+      assertEquals(10.0, model.getTotalCost(), 0.0);
+    }
+  }
+
+  @Test
+  public void testFiltersWorkOnTheColumnarList() {
+    model.addTransaction(new Transaction(50.0, "food"));
+    model.addTransaction(new Transaction(30.0, "entertainment"));
+    model.addTransaction(new Transaction(50.0, "Food"));
+
+    assertEquals(2, new AmountFilter(50.0).filter(model.getTransactions()).size());
+    assertEquals(2, new CategoryFilter("food").filter(model.getTransactions()).size());
+  }
+
+  @Test
+  public void testIndexedFiltersMatchScans() {
+    String[] categories = { "food", "Food", "travel", "bills", "entertainment", "other" };
+    Random random = new Random(42);
+    for (int i = 0; i < 5000; i++) {
+      model.addTransaction(new Transaction(1 + random.nextInt(50), categories[random.nextInt(categories.length)]));
+    }
+    // Remove from the middle so the indexes have to renumber rows
+    for (int i = 0; i < 500; i++) {
+      List<Transaction> transactions = model.getTransactions();
+      model.removeTransaction(transactions.get(random.nextInt(transactions.size())));
+    }
+
+    for (int amount = 1; amount <= 50; amount += 7) {
+      AmountFilter filter = new AmountFilter(amount);
+      assertSameTransactions(filter.filter(model.getTransactions()), filter.filter(model));
+    }
+    for (String category : categories) {
+      CategoryFilter filter = new CategoryFilter(category);
+      assertSameTransactions(filter.filter(model.getTransactions()), filter.filter(model));
+    }
+  }
+
+  private void assertSameTransactions(List<Transaction> expected, List<Transaction> actual) {
+    assertEquals(expected.size(), actual.size());
+    for (int i = 0; i < expected.size(); i++) {
+      assertEquals(expected.get(i).getAmount(), actual.get(i).getAmount(), 0.0);
+      assertEquals(expected.get(i).getCategory(), actual.get(i).getCategory());
+      assertEquals(expected.get(i).getTimestamp(), actual.get(i).getTimestamp());
+    }
+  }
+
+  @Test
+  public void testExplicitTimesArePreserved() {
+    long march = LocalDateTime.of(2024, 3, 5, 9, 30, 15).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    long april = LocalDateTime.of(2024, 4, 1, 18, 0).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    Transaction old = new Transaction(20.0, "food", march);
+    assertEquals(march, old.getEpochMillis());
+    assertEquals("05-03-2024 09:30", old.getTimestamp());
+
+    model.addTransaction(old);
+    model.addTransaction(new Transaction(30.0, "bills", april));
+    model.addTransaction(new Transaction(40.0, "travel"));
+
+    List<Transaction> transactions = model.getTransactions();
+    assertEquals(march, transactions.get(0).getEpochMillis());
+    assertEquals("05-03-2024 09:30", transactions.get(0).getTimestamp());
+    assertEquals("01-04-2024 18:00", transactions.get(1).getTimestamp());
+
+    List<Transaction> inMarch = new DateRangeFilter(march, april).filter(model);
+    assertEquals(1, inMarch.size());
+    assertEquals("food", inMarch.get(0).getCategory());
+  }
+
+  @Test
+  public void testFilterResultsAreLazy() {
+    Transaction first = new Transaction(10.0, "food");
+    model.addTransaction(first);
+    model.addTransaction(new Transaction(20.0, "travel"));
+    model.addTransaction(new Transaction(30.0, "food"));
+
+    CategoryFilter food = new CategoryFilter("food");
+    FilteredTransactions result = (FilteredTransactions) food.filter(model);
+    assertEquals(2, result.size());
+    assertEquals(2, food.count(model));
+    assertEquals(40.0, result.getTotalCost(), 0.0);
+    assertEquals(2, result.getRow(1));
+    assertEquals(30.0, result.get(1).getAmount(), 0.0);
+
+    // Appending keeps the rows valid
+    model.addTransaction(new Transaction(40.0, "food"));
+    assertEquals(first.getId(), result.get(0).getId());
+
+    // A removal renumbers them, so the filter runs again
+    model.removeTransaction(first);
+    assertEquals(2, result.size());
+    assertEquals(30.0, result.get(0).getAmount(), 0.0);
+    assertEquals(40.0, result.get(1).getAmount(), 0.0);
+    assertEquals(70.0, result.getTotalCost(), 0.0);
+  }
+
+}
@@ -0,0 +1,135 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import controller.ExpenseTrackerService;
+import model.Category;
+import model.ConcurrentTransactionModel;
+import server.ExpenseTrackerServer;
+
+/**
+ * Tests for the headless HTTP server, over real connections on a free port.
+ */
+public class TestExpenseTrackerServer {
+
+  private ConcurrentTransactionModel model;
+  private ExpenseTrackerServer server;
+
+  @Before
+  public void setup() throws IOException {
+    model = new ConcurrentTransactionModel();
+    server = new ExpenseTrackerServer(new ExpenseTrackerService(model), new InetSocketAddress("127.0.0.1", 0));
+    server.start();
+  }
+
+  @After
+  public void cleanup() {
+    server.stop(0);
+  }
+
+  @Test
+  public void testAddFilterAggregateAndRemove() throws IOException {
+    assertEquals(201, request("POST", "/transactions", "amount=50&category=food").status);
+    assertEquals(201, request("POST", "/transactions?amount=20&category=Travel&epochMillis=0", null).status);
+    Response added = request("POST", "/transactions", "amount=5.5&category=food");
+    assertEquals(201, added.status);
+
+    Response invalid = request("POST", "/transactions", "amount=5000&category=food");
+    assertEquals(400, invalid.status);
+    assertTrue(invalid.body, invalid.body.contains("Amount must be"));
+    assertEquals(400, request("POST", "/transactions", "amount=5&category=rent").status);
+
+    Response food = request("GET", "/transactions?category=food&minAmount=10", null);
+    assertEquals(200, food.status);
+    assertTrue(food.body, food.body.contains("\"count\":1,"));
+    assertTrue(food.body, food.body.contains("\"amount\":50.0"));
+
+    Response aggregates = request("GET", "/aggregates", null);
+    assertTrue(aggregates.body, aggregates.body.contains("\"total\":{\"count\":3,\"sum\":75.5"));
+    assertTrue(aggregates.body, aggregates.body.contains("\"food\":{\"count\":2,\"sum\":55.5,\"average\":27.75,\"min\":5.5,\"max\":50.0}"));
+
+    String id = added.body.substring("{\"id\":".length(), added.body.indexOf(','));
+    assertEquals(204, request("DELETE", "/transactions/" + id, null).status);
+    assertEquals(404, request("DELETE", "/transactions/" + id, null).status);
+    // Removing the minimum makes the version recompute it
+    assertTrue(request("GET", "/aggregates", null).body.contains("\"food\":{\"count\":1,\"sum\":50.0,\"average\":50.0,\"min\":50.0,\"max\":50.0}"));
+
+    Response export = request("GET", "/export", null);
+    assertEquals(200, export.status);
+    assertTrue(export.body, export.body.startsWith("Date,Amount,Category\n"));
+    assertEquals(3, export.body.split("\n").length);
+    assertEquals(405, request("PUT", "/aggregates", null).status);
+    assertTrue(request("GET", "/transactions?category=food&offset=0&limit=1", null).body.contains("\"count\":1,"));
+    // Would wrap around to 0 if narrowed to an int unchecked
+    assertEquals(400, request("GET", "/transactions?offset=4294967296", null).status);
+    assertEquals(400, request("GET", "/transactions?category=food&limit=4294967297", null).status);
+  }
+
+  @Test
+  public void testConcurrentAdds() throws Exception {
+    ExecutorService clients = Executors.newFixedThreadPool(8);
+    List<Future<Integer>> statuses = new ArrayList<>();
+    for (int i = 0; i < 400; i++) {
+      String category = Category.fromCode(i % Category.values().length).getWord();
+      statuses.add(clients.submit(() -> request("POST", "/transactions", "amount=2&category=" + category).status));
+    }
+    for (Future<Integer> status : statuses) {
+      assertEquals(201, (int) status.get());
+    }
+    clients.shutdown();
+
+    assertEquals(400, model.currentVersion().getTransactionCount());
+    assertEquals(800.0, model.currentVersion().getTotalCost(), 1e-9);
+    assertTrue(request("GET", "/transactions?limit=0", null).body.contains("\"count\":400,"));
+  }
+
+  private Response request(String method, String path, String form) throws IOException {
+    HttpURLConnection connection = (HttpURLConnection) new URL("http://127.0.0.1:" + server.getPort() + path).openConnection();
+    connection.setRequestMethod(method);
+    if (form != null) {
+      connection.setDoOutput(true);
+      connection.setRequestProperty("Content-Type", "application/x-www-form-urlencoded");
+      try (OutputStream out = connection.getOutputStream()) {
+        out.write(form.getBytes(StandardCharsets.UTF_8));
+      }
+    }
+    Response response = new Response();
+    response.status = connection.getResponseCode();
+    InputStream in = response.status >= 400 ? connection.getErrorStream() : connection.getInputStream();
+    ByteArrayOutputStream body = new ByteArrayOutputStream();
+    if (in != null) {
+      try (InputStream stream = in) {
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = stream.read(buffer)) > 0) {
+          body.write(buffer, 0, read);
+        }
+      }
+    }
+    response.body = new String(body.toByteArray(), StandardCharsets.UTF_8);
+    return response;
+  }
+
+  private static class Response {
+    int status;
+    String body;
+  }
+
+}
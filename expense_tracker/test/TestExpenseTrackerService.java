@@ -0,0 +1,130 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Test;
+
+import controller.CsvImporter;
+import controller.ExpenseTrackerService;
+import model.CoalescingChangeListener;
+import model.ConcurrentTransactionModel;
+import model.ExpenseTrackerModel;
+import model.TransactionChangeEvent;
+import model.Filter.CategoryFilter;
+
+/**
+ * Tests for the service layer, driven without any view.
+ */
+public class TestExpenseTrackerService {
+
+  private static final String FILE_NAME = "service-test.csv";
+
+  @After
+  public void cleanup() throws Exception {
+    Files.deleteIfExists(Paths.get(FILE_NAME));
+  }
+
+  @Test
+  public void testOperationsWithoutAView() throws Exception {
+    ExpenseTrackerService service = new ExpenseTrackerService(new ExpenseTrackerModel());
+    service.addTransaction(10, "food");
+    service.addTransaction(20, "Travel");
+    service.addTransaction(30, "food");
+    assertEquals(2, service.filter(new CategoryFilter("food")).size());
+    assertEquals(3, service.filter(null).size());
+
+    assertRejected(service, 0, "food", "Amount must be > 0 and <= 1000");
+    assertRejected(service, 10, "rent", "Category must be one of: food, travel, bills, entertainment, other");
+    assertEquals(3, service.getModel().getTransactionCount());
+
+    // Surrounding spaces are ignored in both directions, so both use the same file
+    assertEquals(3, service.exportToCsv("  " + FILE_NAME));
+    assertFalse(Files.exists(Paths.get("  " + FILE_NAME)));
+    ExpenseTrackerService copy = new ExpenseTrackerService(new ExpenseTrackerModel());
+    CsvImporter.Result result = copy.importFromCsv(" " + FILE_NAME + " ");
+    assertEquals(3, result.getImported());
+    assertEquals(60.0, copy.getModel().getTotalCost(), 1e-9);
+    try {
+      service.exportToCsv("no-extension");
+      fail("Expected an invalid file name");
+    } catch (IllegalArgumentException e) {
+      assertFalse(Files.exists(Paths.get("no-extension")));
+    }
+  }
+
+  @Test
+  public void testListenerReceivesCoalescedUpdates() {
+    ExpenseTrackerService service = new ExpenseTrackerService(new ExpenseTrackerModel());
+    List<TransactionChangeEvent> events = new ArrayList<>();
+    // A long window, so every add below falls into it
+    CoalescingChangeListener listener = service.addChangeListener(events::add, 60_000, Runnable::run);
+    for (int i = 1; i <= 1000; i++) {
+      service.addTransaction(i % 1000 + 1, "bills");
+    }
+    listener.flush();
+
+    assertEquals(1, events.size());
+    assertEquals(1000, events.get(0).getAddedCount());
+    assertEquals(service.getModel().getVersion(), events.get(0).getVersion());
+
+    service.removeChangeListener(listener);
+    service.addTransaction(5, "bills");
+    listener.flush();
+    assertEquals(1, events.size());
+  }
+
+  @Test
+  public void testThreadSafeServiceOverConcurrentModel() throws Exception {
+    ExpenseTrackerService service = new ExpenseTrackerService(new ConcurrentTransactionModel());
+    assertTrue(service.isThreadSafe());
+    assertFalse(new ExpenseTrackerService(new ExpenseTrackerModel()).isThreadSafe());
+
+    ExecutorService writers = Executors.newFixedThreadPool(4);
+    List<Future<?>> adds = new ArrayList<>();
+    for (int i = 0; i < 400; i++) {
+      String category = i % 2 == 0 ? "food" : "travel";
+      adds.add(writers.submit(() -> service.addTransaction(2, category)));
+    }
+    for (Future<?> add : adds) {
+      add.get();
+    }
+    writers.shutdown();
+    assertEquals(400, service.currentVersion().getTransactionCount());
+    assertEquals(200, service.filter(new CategoryFilter("food")).size());
+    assertRejected(service, 10, "rent", "Category must be one of: food, travel, bills, entertainment, other");
+
+    assertEquals(400, service.exportToCsv(FILE_NAME));
+    ExpenseTrackerService copy = new ExpenseTrackerService(new ConcurrentTransactionModel());
+    assertEquals(400, copy.importFromCsv(FILE_NAME).getImported());
+    assertEquals(800.0, copy.currentVersion().getTotalCost(), 1e-9);
+    long id = copy.filter(null).get(0).getId();
+    assertTrue(copy.removeTransactionById(id));
+    assertFalse(copy.removeTransactionById(id));
+    try {
+      copy.addChangeListener(events -> { });
+      fail("Expected no change events over a concurrent model");
+    } catch (IllegalStateException e) {
+      assertEquals(399, copy.currentVersion().getTransactionCount());
+    }
+  }
+
+  private static void assertRejected(ExpenseTrackerService service, double amount, String category, String message) {
+    try {
+      service.addTransaction(amount, category);
+      fail("Expected a rejected transaction");
+    } catch (IllegalArgumentException e) {
+      assertEquals(message, e.getMessage());
+    }
+  }
+
+}
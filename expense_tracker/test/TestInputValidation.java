@@ -0,0 +1,55 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import controller.InputValidation;
+import controller.ValidatedRecord;
+import model.Category;
+import model.Transaction;
+
+/**
+ * Tests for the hand-rolled checks in InputValidation.
+ */
+public class TestInputValidation {
+
+  @Test
+  public void testCsvFilenames() {
+    String[] valid = {"csvFile.csv", "csv_file.csv", "csv file with space.csv", "  report-2024.CSV  ", "a.b.csv"};
+    for (String name : valid) {
+      assertTrue(name, InputValidation.isValidCsvFilename(name));
+    }
+    String[] invalid = {null, "", "   ", "FileNameWithoutExtention", "....Wrong$NamingConvention.csv",
+        "dir/file.csv", "dir\\file.csv", "a..csv", "file.csvx", ".csv.txt", "caf\u00e9.csv"};
+    for (String name : invalid) {
+      assertFalse(name, InputValidation.isValidCsvFilename(name));
+    }
+  }
+
+  @Test
+  public void testAmounts() {
+    assertTrue(InputValidation.isValidAmount(0.01));
+    assertTrue(InputValidation.isValidAmount(1000));
+    assertFalse(InputValidation.isValidAmount(0));
+    assertFalse(InputValidation.isValidAmount(-1));
+    assertFalse(InputValidation.isValidAmount(1000.01));
+    assertFalse(InputValidation.isValidAmount(Double.NaN));
+  }
+
+  @Test
+  public void testValidatedRecordBuildsTransaction() {
+    assertNull(InputValidation.validateRecord(0, "food"));
+    assertNull(InputValidation.validateRecord(10, "fod"));
+
+    ValidatedRecord record = InputValidation.validateRecord(12.5, "Travel");
+    assertSame(Category.TRAVEL, record.getCategoryValue());
+    Transaction t = new Transaction(record);
+    assertEquals(12.5, t.getAmount(), 0.0);
+    assertEquals("travel", t.getCategory());
+    assertEquals(Category.TRAVEL.getCode(), t.getCategoryCode());
+  }
+
+}
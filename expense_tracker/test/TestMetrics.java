@@ -0,0 +1,85 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+
+import metrics.Counter;
+import metrics.LatencyTimer;
+import metrics.MetricsRegistry;
+
+/**
+ * Tests for the metrics registry, its striped timers and their JMX view.
+ */
+public class TestMetrics {
+
+  @Test
+  public void testStripedTimerKeepsEveryRecord() throws Exception {
+    MetricsRegistry registry = new MetricsRegistry();
+    LatencyTimer timer = registry.timer("test.timer");
+    Counter counter = registry.counter("test.counter");
+    assertSame(timer, registry.timer("test.timer"));
+
+    List<Thread> threads = new ArrayList<>();
+    for (int t = 0; t < 8; t++) {
+      threads.add(new Thread(() -> {
+        for (int i = 1; i <= 10000; i++) {
+          timer.record(i * 1000L);
+          counter.increment();
+        }
+      }));
+    }
+    for (Thread thread : threads) {
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    assertEquals(80000, timer.getCount());
+    assertEquals(80000, counter.getCount());
+    assertEquals(10000, timer.getMaxMicros(), 0);
+    assertEquals(5000, timer.getP50Micros(), 5000 / 64.0);
+  }
+
+  @Test
+  public void testDisabledTimerRecordsNothing() {
+    MetricsRegistry registry = new MetricsRegistry();
+    LatencyTimer timer = registry.timer("test.timer");
+    registry.setEnabled(false);
+    timer.stop(timer.start());
+    assertEquals(0, timer.getCount());
+
+    registry.setEnabled(true);
+    timer.stop(timer.start());
+    assertEquals(1, timer.getCount());
+  }
+
+  @Test
+  public void testMetricsArePublished() throws Exception {
+    MetricsRegistry registry = new MetricsRegistry();
+    registry.counter("test.counter").add(3);
+    MBeanServer server = MBeanServerFactory.newMBeanServer();
+    registry.registerMBeans(server);
+    // Metrics created after registering are published too
+    registry.gauge("test.gauge").set(42);
+    registry.timer("test.timer").record(2000);
+
+    assertEquals(3L, server.getAttribute(new ObjectName("expensetracker:type=Counter,name=\"test.counter\""), "Count"));
+    assertEquals(42L, server.getAttribute(new ObjectName("expensetracker:type=Gauge,name=\"test.gauge\""), "Value"));
+    assertEquals(1L, server.getAttribute(new ObjectName("expensetracker:type=Timer,name=\"test.timer\""), "Count"));
+
+    String dump = registry.dump();
+    assertTrue(dump, dump.contains("test.counter 3"));
+    assertTrue(dump, dump.contains("test.gauge 42"));
+    assertTrue(dump, dump.contains("test.timer count=1"));
+  }
+
+}
@@ -0,0 +1,161 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import model.ExpenseTrackerModel;
+import model.Transaction;
+import model.TransactionRows;
+import model.Filter.AmountFilter;
+import model.Filter.AmountRangeFilter;
+import model.Filter.AndFilter;
+import model.Filter.CategoryFilter;
+import model.Filter.CategorySetFilter;
+import model.Filter.DateRangeFilter;
+import model.Filter.NotFilter;
+import model.Filter.OrFilter;
+import model.Filter.QueryPlanner;
+import model.Filter.TransactionPredicate;
+
+/**
+ * Checks that the planned, index-backed evaluation of composite filters
+ * returns the same transactions as testing every transaction in turn.
+ */
+public class TestQueryPlanner {
+
+  private ExpenseTrackerModel model;
+
+  @Before
+  public void setup() {
+    model = new ExpenseTrackerModel();
+    String[] categories = { "food", "travel", "bills", "entertainment", "other" };
+    Random random = new Random(7);
+    for (int i = 0; i < 3000; i++) {
+      model.addTransaction(new Transaction(1 + random.nextInt(1000), categories[random.nextInt(categories.length)]));
+    }
+  }
+
+  @Test
+  public void testAmountRange() {
+    checkAgainstScan(new AmountRangeFilter(100, 250));
+  }
+
+  @Test
+  public void testCategorySet() {
+    checkAgainstScan(new CategorySetFilter(Arrays.asList("food", "BILLS", "Food")));
+  }
+
+  @Test
+  public void testAndOfIndexedAndUnindexedPredicates() {
+    long now = System.currentTimeMillis();
+    checkAgainstScan(new AndFilter(
+        new DateRangeFilter(now - 60000, now + 60000),
+        new AmountRangeFilter(500, 1000),
+        new CategoryFilter("travel")));
+  }
+
+  @Test
+  public void testOrAndNot() {
+    checkAgainstScan(new OrFilter(new CategoryFilter("other"), new AmountFilter(42)));
+    checkAgainstScan(new NotFilter(new CategorySetFilter(Arrays.asList("food", "travel"))));
+    checkAgainstScan(new AndFilter(
+        new NotFilter(new AmountRangeFilter(1, 500)),
+        new OrFilter(new CategoryFilter("food"), new DateRangeFilter(0, 1))));
+  }
+
+  @Test
+  public void testUnindexedOnlyFallsBackToScan() {
+    long now = System.currentTimeMillis();
+    checkAgainstScan(new NotFilter(new DateRangeFilter(0, now - 60000)));
+  }
+
+  @Test
+  public void testEmptyModel() {
+    ExpenseTrackerModel empty = new ExpenseTrackerModel();
+    TransactionPredicate predicate = new AndFilter(new CategoryFilter("food"), new AmountRangeFilter(1, 10));
+    assertEquals(0, QueryPlanner.matchingRows(predicate, empty).length);
+    assertEquals(0, predicate.filter(empty).size());
+  }
+
+  @Test
+  public void testLargeScansRunInParallelInOrder() {
+    String[] categories = { "food", "travel", "bills", "entertainment", "other" };
+    Random random = new Random(11);
+    for (int i = 0; i < 400000; i++) {
+      model.addTransaction(new Transaction(1 + random.nextInt(1000), categories[random.nextInt(categories.length)],
+          random.nextInt(1000000)));
+    }
+    // Unindexed, so every row is scanned
+    checkAgainstScan(new DateRangeFilter(0, 250000));
+    // Indexed driver with a large candidate set and an unindexed conjunct
+    checkAgainstScan(new AndFilter(new AmountRangeFilter(1, 900), new DateRangeFilter(100000, 900000)));
+    checkAgainstScan(new OrFilter(new DateRangeFilter(0, 1000), new NotFilter(new DateRangeFilter(0, 999000))));
+  }
+
+  @Test
+  public void testPagesOfMatches() {
+    Random random = new Random(13);
+    for (int i = 0; i < 200000; i++) {
+      model.addTransaction(new Transaction(1 + random.nextInt(1000), "food", random.nextInt(1000000)));
+    }
+    // A snapshot has no indexes, so its pages come from counting and rescanning chunks
+    TransactionRows rows = model.snapshot();
+    TransactionPredicate predicate = new AndFilter(new AmountRangeFilter(1, 600), new DateRangeFilter(0, 800000));
+    int[] all = QueryPlanner.matchingRows(predicate, rows);
+    int[][] pages = { { 0, 100 }, { 12345, 50 }, { all.length - 10, 100 }, { all.length, 10 }, { 0, 0 } };
+    for (int[] page : pages) {
+      for (TransactionRows source : new TransactionRows[] { rows, model }) {
+        QueryPlanner.Page matches = QueryPlanner.matchingPage(predicate, source, page[0], page[1]);
+        assertEquals(all.length, matches.getCount());
+        assertArrayEquals(Arrays.copyOfRange(all, page[0], Math.min(all.length, page[0] + page[1])), matches.getRows());
+      }
+    }
+  }
+
+  @Test
+  public void testAmountFilterBoundaryMatchesIndex() {
+    ExpenseTrackerModel bounds = new ExpenseTrackerModel();
+    // Exactly on, inside and outside the bounds the filter accepts. 0.5 + 1e-6 is
+    // within the bounds but its distance from 0.5 rounds to just over 1e-6.
+    double[] amounts = { 0.5 + 1e-6, 0.5 - 1e-6, 0.5, 0.5 + 2e-6, 0.5 - 2e-6 };
+    for (double amount : amounts) {
+      bounds.addTransaction(new Transaction(amount, "food"));
+    }
+    AmountFilter filter = new AmountFilter(0.5);
+    assertArrayEquals(new int[] { 0, 1, 2 }, QueryPlanner.matchingRows(filter, bounds));
+    assertEquals(3, filter.filter(bounds.getTransactions()).size());
+    assertEquals(3, filter.count(bounds));
+    // An OR with an unindexed operand is answered by testing every row instead
+    assertArrayEquals(new int[] { 0, 1, 2 },
+        QueryPlanner.matchingRows(new OrFilter(filter, new DateRangeFilter(0, 1)), bounds));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidRange() {
+    new AmountRangeFilter(10, 1);
+  }
+
+  private void checkAgainstScan(TransactionPredicate predicate) {
+    List<Transaction> transactions = model.getTransactions();
+    int expectedCount = 0;
+    for (int row = 0; row < transactions.size(); row++) {
+      if (predicate.test(transactions.get(row))) {
+        expectedCount++;
+      }
+    }
+    int[] expected = new int[expectedCount];
+    for (int row = 0, k = 0; row < transactions.size(); row++) {
+      if (predicate.test(transactions.get(row))) {
+        expected[k++] = row;
+      }
+    }
+    assertArrayEquals(expected, QueryPlanner.matchingRows(predicate, model));
+    assertEquals(expectedCount, predicate.filter(model).size());
+  }
+
+}
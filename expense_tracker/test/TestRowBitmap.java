@@ -0,0 +1,122 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import org.junit.Test;
+
+import model.ExpenseTrackerModel;
+import model.RowBitmap;
+import model.Transaction;
+import model.Filter.AmountRangeFilter;
+import model.Filter.AndFilter;
+import model.Filter.CategoryFilter;
+import model.Filter.NotFilter;
+import model.Filter.OrFilter;
+import model.Filter.QueryPlanner;
+import model.Filter.TransactionPredicate;
+
+/**
+ * Tests for the compressed row bitmaps and the filters that produce them.
+ */
+public class TestRowBitmap {
+
+  @Test
+  public void testSetOperationsMatchBitSet() {
+    Random random = new Random(16);
+    // Sparse and dense sets, so both kinds of container meet each other
+    double[] densities = {0.001, 0.05, 0.5, 0.95};
+    for (double densityA : densities) {
+      for (double densityB : densities) {
+        BitSet a = randomRows(random, 300000, densityA);
+        BitSet b = randomRows(random, 300000, densityB);
+        RowBitmap bitmapA = RowBitmap.fromRows(a.stream().toArray());
+        RowBitmap bitmapB = RowBitmap.fromRows(b.stream().toArray());
+
+        BitSet and = (BitSet) a.clone();
+        and.and(b);
+        BitSet or = (BitSet) a.clone();
+        or.or(b);
+        BitSet andNot = (BitSet) a.clone();
+        andNot.andNot(b);
+
+        assertArrayEquals(and.stream().toArray(), bitmapA.and(bitmapB).toArray());
+        assertArrayEquals(or.stream().toArray(), bitmapA.or(bitmapB).toArray());
+        assertArrayEquals(andNot.stream().toArray(), bitmapA.andNot(bitmapB).toArray());
+        assertEquals(or.cardinality(), bitmapA.or(bitmapB).getCardinality());
+        // The operands are unchanged
+        assertArrayEquals(a.stream().toArray(), bitmapA.toArray());
+      }
+    }
+  }
+
+  @Test
+  public void testRangeAndContains() {
+    RowBitmap range = RowBitmap.range(65000, 200001);
+    assertEquals(200001 - 65000, range.getCardinality());
+    assertFalse(range.contains(64999));
+    assertTrue(range.contains(65000));
+    assertTrue(range.contains(131072));
+    assertTrue(range.contains(200000));
+    assertFalse(range.contains(200001));
+    assertTrue(RowBitmap.range(5, 5).isEmpty());
+
+    RowBitmap unsorted = RowBitmap.fromRows(new int[] {70000, 3, 3, 1});
+    assertArrayEquals(new int[] {1, 3, 70000}, unsorted.toArray());
+  }
+
+  @Test
+  public void testEmptyRanges() {
+    RowBitmap empty = RowBitmap.range(0, 0);
+    assertTrue(empty.isEmpty());
+    assertEquals(0, empty.toArray().length);
+    assertArrayEquals(new int[] {7}, empty.or(RowBitmap.fromRows(new int[] {7})).toArray());
+    assertTrue(empty.andNot(RowBitmap.range(0, 10)).isEmpty());
+    assertTrue(RowBitmap.range(70000, 70000).isEmpty());
+    // NOT over an empty model complements an empty range
+    ExpenseTrackerModel model = new ExpenseTrackerModel();
+    assertEquals(0, new NotFilter(new CategoryFilter("food")).filter(model).size());
+  }
+
+  @Test
+  public void testFiltersCombineBitmaps() {
+    ExpenseTrackerModel model = new ExpenseTrackerModel();
+    String[] categories = {"food", "travel", "bills", "other"};
+    Random random = new Random(7);
+    for (int i = 0; i < 20000; i++) {
+      model.addTransaction(new Transaction(1 + random.nextInt(999), categories[random.nextInt(categories.length)]));
+    }
+    // Removing rows compacts the category bitmaps
+    for (int i = 0; i < 100; i++) {
+      model.removeTransaction(model.getTransactions().get(random.nextInt(model.getTransactionCount())));
+    }
+
+    TransactionPredicate predicate = new AndFilter(
+        new OrFilter(new CategoryFilter("food"), new CategoryFilter("travel")),
+        new NotFilter(new AmountRangeFilter(100, 500)));
+    RowBitmap rows = QueryPlanner.matchingBitmap(predicate, model);
+
+    int expected = 0;
+    for (int row = 0; row < model.getTransactionCount(); row++) {
+      boolean matches = predicate.test(model, row);
+      assertEquals(matches, rows.contains(row));
+      expected += matches ? 1 : 0;
+    }
+    assertEquals(expected, rows.getCardinality());
+    assertEquals(expected, predicate.filter(model).size());
+  }
+
+  private static BitSet randomRows(Random random, int count, double density) {
+    BitSet rows = new BitSet(count);
+    for (int row = 0; row < count; row++) {
+      if (random.nextDouble() < density) {
+        rows.set(row);
+      }
+    }
+    return rows;
+  }
+
+}
@@ -0,0 +1,80 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import model.CoalescingChangeListener;
+import model.ExpenseTrackerModel;
+import model.Transaction;
+import model.TransactionChangeEvent;
+
+/**
+ * Tests for the model's change events and their coalescing.
+ */
+public class TestTransactionChangeEvents {
+
+  private ExpenseTrackerModel model;
+  private List<TransactionChangeEvent> events;
+
+  @Before
+  public void setup() {
+    model = new ExpenseTrackerModel();
+    events = new ArrayList<>();
+    model.addChangeListener(events::add);
+  }
+
+  @Test
+  public void testEventsAreTyped() {
+    Transaction food = new Transaction(10.0, "food");
+    model.addTransaction(food);
+    model.removeTransaction(food);
+    model.addTransactions(Arrays.asList(new Transaction(1.0, "bills"), new Transaction(2.0, "bills")));
+    model.removeTransactions(new ArrayList<>(model.getTransactions()));
+
+    assertEquals(4, events.size());
+    assertEquals(TransactionChangeEvent.Type.ADDED, events.get(0).getType());
+    assertSame(food, events.get(0).getTransaction());
+    assertEquals(TransactionChangeEvent.Type.REMOVED, events.get(1).getType());
+    assertEquals(food.getId(), events.get(1).getTransaction().getId());
+    assertEquals(TransactionChangeEvent.Type.BULK, events.get(2).getType());
+    assertEquals(2, events.get(2).getAddedCount());
+    assertNull(events.get(2).getTransaction());
+    assertEquals(2, events.get(3).getRemovedCount());
+    for (int i = 1; i < events.size(); i++) {
+      assertTrue(events.get(i).getVersion() > events.get(i - 1).getVersion());
+    }
+    assertEquals(model.getVersion(), events.get(3).getVersion());
+  }
+
+  @Test
+  public void testHighRateChangesAreCoalesced() throws InterruptedException {
+    final AtomicInteger deliveries = new AtomicInteger();
+    final AtomicInteger added = new AtomicInteger();
+    final CountDownLatch allSeen = new CountDownLatch(1);
+    model.addChangeListener(new CoalescingChangeListener(event -> {
+      deliveries.incrementAndGet();
+      if (added.addAndGet(event.getAddedCount()) == 10000) {
+        allSeen.countDown();
+      }
+    }, 200, Runnable::run));
+
+    for (int i = 0; i < 10000; i++) {
+      model.addTransaction(new Transaction(1.0, "other"));
+    }
+    assertTrue(allSeen.await(5, TimeUnit.SECONDS));
+    // Every change is counted, in far fewer deliveries than changes
+    assertEquals(10000, added.get());
+    assertTrue(deliveries.get() < 100);
+  }
+
+}
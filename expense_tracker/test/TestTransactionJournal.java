@@ -0,0 +1,290 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import model.ExpenseTrackerModel;
+import model.Transaction;
+import model.TransactionJournal;
+
+/**
+ * Tests for the write-ahead journal of the model. These do not need a view.
+ */
+public class TestTransactionJournal {
+
+  private File journalDirectory;
+  // The first segment of the journal
+  private File journalFile;
+
+  @Before
+  public void setup() throws IOException {
+    journalDirectory = File.createTempFile("transactions", "");
+    journalDirectory.delete();
+    journalFile = new File(journalDirectory, "journal-0000000000000001.log");
+  }
+
+  @After
+  public void cleanup() {
+    File[] files = journalDirectory.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        file.delete();
+      }
+    }
+    journalDirectory.delete();
+  }
+
+  @Test
+  public void testChangesAreReplayed() throws IOException {
+    ExpenseTrackerModel model = new ExpenseTrackerModel();
+    TransactionJournal journal = TransactionJournal.open(journalDirectory.toPath(), model);
+    Transaction food = new Transaction(12.5, "food", 1_000_000L);
+    Transaction bills = new Transaction(80.0, "bills", 2_000_000L);
+    model.addTransaction(food);
+    model.addTransaction(bills);
+    model.addTransaction(new Transaction(300.0, "Travel", 3_000_000L));
+    model.removeTransaction(bills);
+    journal.close();
+
+    ExpenseTrackerModel restored = new ExpenseTrackerModel();
+    TransactionJournal reopened = TransactionJournal.open(journalDirectory.toPath(), restored);
+    List<Transaction> transactions = restored.getTransactions();
+    assertEquals(2, transactions.size());
+    assertEquals(food.getId(), transactions.get(0).getId());
+    assertEquals(12.5, transactions.get(0).getAmount(), 0.0);
+    assertEquals("food", transactions.get(0).getCategory());
+    assertEquals(1_000_000L, transactions.get(0).getEpochMillis());
+    assertEquals("travel", transactions.get(1).getCategory());
+    assertEquals(312.5, restored.getTotalCost(), 0.0);
+
+    // New transactions get ids past the replayed ones
+    Transaction later = new Transaction(5.0, "other");
+    assertTrue(later.getId() > transactions.get(1).getId());
+    restored.addTransaction(later);
+    reopened.close();
+  }
+
+  @Test
+  public void testTornRecordIsDiscarded() throws IOException {
+    ExpenseTrackerModel model = new ExpenseTrackerModel();
+    TransactionJournal journal = TransactionJournal.open(journalDirectory.toPath(), model, 0);
+    model.addTransaction(new Transaction(10.0, "food"));
+    model.addTransaction(new Transaction(20.0, "food"));
+    journal.close();
+
+    // Cut the last record in half, as a crash during the write would
+    long length = journalFile.length();
+    try (RandomAccessFile file = new RandomAccessFile(journalFile, "rw")) {
+      file.setLength(length - 20);
+    }
+
+    ExpenseTrackerModel restored = new ExpenseTrackerModel();
+    TransactionJournal reopened = TransactionJournal.open(journalDirectory.toPath(), restored, 0);
+    assertEquals(1, restored.getTransactionCount());
+    assertEquals(10.0, restored.getTotalCost(), 0.0);
+    restored.addTransaction(new Transaction(30.0, "bills"));
+    reopened.close();
+
+    ExpenseTrackerModel again = new ExpenseTrackerModel();
+    TransactionJournal.open(journalDirectory.toPath(), again).close();
+    assertEquals(2, again.getTransactionCount());
+    assertEquals("bills", again.getTransactions().get(1).getCategory());
+  }
+
+  @Test
+  public void testCorruptRecordEndsReplay() throws IOException {
+    ExpenseTrackerModel model = new ExpenseTrackerModel();
+    TransactionJournal journal = TransactionJournal.open(journalDirectory.toPath(), model);
+    for (int i = 1; i <= 3; i++) {
+      model.addTransaction(new Transaction(i, "food"));
+    }
+    journal.close();
+
+    // Flip a byte in the amount of the second record
+    try (RandomAccessFile file = new RandomAccessFile(journalFile, "rw")) {
+      long position = journalFile.length() - 2 * 48 + 24;
+      file.seek(position);
+      int b = file.read();
+      file.seek(position);
+      file.write(b ^ 0xFF);
+    }
+
+    ExpenseTrackerModel restored = new ExpenseTrackerModel();
+    TransactionJournal.open(journalDirectory.toPath(), restored).close();
+    assertEquals(1, restored.getTransactionCount());
+  }
+
+  @Test
+  public void testUnknownCategoryIsReportedAsCorruption() throws IOException {
+    ExpenseTrackerModel model = new ExpenseTrackerModel();
+    TransactionJournal journal = TransactionJournal.open(journalDirectory.toPath(), model);
+    model.addTransaction(new Transaction(1, "food"));
+    journal.close();
+
+    // Replace the category of the record with another four letter word and fix its checksum
+    try (RandomAccessFile file = new RandomAccessFile(journalFile, "rw")) {
+      byte[] record = new byte[48];
+      file.seek(8);
+      file.readFully(record);
+      System.arraycopy("fool".getBytes(StandardCharsets.US_ASCII), 0, record, 2, 4);
+      CRC32 crc = new CRC32();
+      crc.update(record, 0, 44);
+      file.seek(8);
+      file.write(record, 0, 44);
+      file.writeInt((int) crc.getValue());
+    }
+
+    try {
+      TransactionJournal.open(journalDirectory.toPath(), new ExpenseTrackerModel()).close();
+      fail("The journal should be reported as corrupt");
+    } catch (IOException e) {
+      assertEquals("The journal is corrupt.", e.getMessage());
+    }
+  }
+
+  @Test
+  public void testGroupCommitMakesBatchesDurable() throws IOException {
+    ExpenseTrackerModel model = new ExpenseTrackerModel();
+    TransactionJournal journal = TransactionJournal.open(journalDirectory.toPath(), model, 50);
+    double[] amounts = new double[5000];
+    String[] categories = new String[5000];
+    long[] times = new long[5000];
+    for (int i = 0; i < amounts.length; i++) {
+      amounts[i] = 1 + i % 999;
+      categories[i] = "entertainment";
+      times[i] = i * 60_000L;
+    }
+    model.appendRows(amounts, categories, times, amounts.length);
+    model.removeTransaction(model.getTransactions().get(0));
+    journal.sync();
+    assertEquals(8 + 5001 * 48, journalFile.length());
+    journal.close();
+
+    ExpenseTrackerModel restored = new ExpenseTrackerModel();
+    TransactionJournal.open(journalDirectory.toPath(), restored).close();
+    assertEquals(4999, restored.getTransactionCount());
+    assertEquals(model.getTotalCost(), restored.getTotalCost(), 1e-9);
+    assertEquals(60_000L, restored.getEpochMillis(0));
+  }
+
+  @Test
+  public void testBatchesAreNotSplitByCheckpoints() throws IOException {
+    ExpenseTrackerModel model = new ExpenseTrackerModel();
+    TransactionJournal journal = TransactionJournal.open(journalDirectory.toPath(), model, 5, 700);
+    for (int batch = 0; batch < 6; batch++) {
+      List<Transaction> transactions = new ArrayList<>();
+      for (int i = 0; i < 500; i++) {
+        transactions.add(new Transaction(1 + (batch * 500 + i) % 999, "bills", i * 60_000L));
+      }
+      model.addTransactions(transactions);
+      model.removeTransaction(transactions.get(batch));
+    }
+    journal.close();
+
+    ExpenseTrackerModel restored = new ExpenseTrackerModel();
+    TransactionJournal.open(journalDirectory.toPath(), restored).close();
+    assertEquals(2994, restored.getTransactionCount());
+    assertEquals(model.getTotalCost(), restored.getTotalCost(), 1e-9);
+    assertEquals(model.getRowsWithAmountBetween(100, 200).length, restored.getRowsWithAmountBetween(100, 200).length);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testOnlyEmptyModelsCanBeRestored() throws IOException {
+    ExpenseTrackerModel model = new ExpenseTrackerModel();
+    model.addTransaction(new Transaction(10.0, "food"));
+    TransactionJournal.open(journalDirectory.toPath(), model);
+  }
+
+  @Test
+  public void testCheckpointReplacesOldSegments() throws IOException {
+    ExpenseTrackerModel model = new ExpenseTrackerModel();
+    TransactionJournal journal = TransactionJournal.open(journalDirectory.toPath(), model);
+    Transaction removedLater = new Transaction(1.0, "food");
+    model.addTransaction(removedLater);
+    model.addTransaction(new Transaction(2.0, "bills"));
+    journal.checkpoint();
+    model.addTransaction(new Transaction(3.0, "travel"));
+    model.removeTransaction(removedLater);
+    journal.close();
+
+    String[] files = journalDirectory.list();
+    Arrays.sort(files);
+    assertEquals(Arrays.asList("journal-0000000000000002.log", "snapshot-0000000000000002.snap"),
+        Arrays.asList(files));
+
+    ExpenseTrackerModel restored = new ExpenseTrackerModel();
+    TransactionJournal.open(journalDirectory.toPath(), restored).close();
+    assertEquals(2, restored.getTransactionCount());
+    assertEquals("bills", restored.getTransactions().get(0).getCategory());
+    assertEquals("travel", restored.getTransactions().get(1).getCategory());
+    assertEquals(5.0, restored.getTotalCost(), 0.0);
+  }
+
+  @Test
+  public void testDamagedSnapshotIsReportedAsCorrupt() throws IOException {
+    ExpenseTrackerModel model = new ExpenseTrackerModel();
+    TransactionJournal journal = TransactionJournal.open(journalDirectory.toPath(), model);
+    model.addTransaction(new Transaction(1.0, "food"));
+    model.addTransaction(new Transaction(2.0, "bills"));
+    journal.checkpoint();
+    journal.close();
+
+    // Flip a bit of the first amount, which follows the header, dictionary and ids
+    File snapshot = new File(journalDirectory, "snapshot-0000000000000002.snap");
+    try (RandomAccessFile file = new RandomAccessFile(snapshot, "rw")) {
+      long amount = 72 + 2 * 8 + 6;
+      file.seek(amount);
+      int b = file.read();
+      file.seek(amount);
+      file.write(b ^ 0x10);
+    }
+
+    try {
+      TransactionJournal.open(journalDirectory.toPath(), new ExpenseTrackerModel()).close();
+      fail("The snapshot should be reported as corrupt");
+    } catch (IOException e) {
+      assertEquals("The snapshot " + snapshot.toPath() + " is corrupt.", e.getMessage());
+    }
+  }
+
+  @Test
+  public void testSnapshotsAreTakenPeriodically() throws IOException {
+    String[] categories = { "food", "travel", "bills", "entertainment", "other" };
+    ExpenseTrackerModel model = new ExpenseTrackerModel();
+    TransactionJournal journal = TransactionJournal.open(journalDirectory.toPath(), model, 5, 1000);
+    for (int i = 0; i < 10500; i++) {
+      model.addTransaction(new Transaction(1 + (i * 37) % 999, categories[i % 5], i * 60_000L));
+      if (i % 3 == 0) {
+        model.removeTransaction(model.getTransactions().get(0));
+      }
+    }
+    journal.close();
+    // Only the newest snapshot and the segments after it are left
+    assertTrue(journalDirectory.list().length <= 3);
+
+    ExpenseTrackerModel restored = new ExpenseTrackerModel();
+    TransactionJournal.open(journalDirectory.toPath(), restored).close();
+    assertEquals(model.getTransactionCount(), restored.getTransactionCount());
+    for (int row = 0; row < model.getTransactionCount(); row++) {
+      assertEquals(model.getTransactions().get(row).getId(), restored.getTransactions().get(row).getId());
+      assertEquals(model.getEpochMillis(row), restored.getEpochMillis(row));
+    }
+    assertEquals(model.getTotalCost(), restored.getTotalCost(), 1e-6);
+    assertEquals(model.countInCategory("food"), restored.countInCategory("food"));
+    assertTrue(Arrays.equals(model.getRowsWithAmountBetween(100, 300), restored.getRowsWithAmountBetween(100, 300)));
+    assertEquals(model.getAggregate().getMax(), restored.getAggregate().getMax(), 0.0);
+  }
+
+}
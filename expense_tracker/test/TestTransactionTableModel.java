@@ -0,0 +1,164 @@
+import static org.junit.Assert.assertEquals;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.swing.event.TableModelEvent;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import model.ExpenseTrackerModel;
+import model.Transaction;
+import model.Filter.CategoryFilter;
+import view.TransactionTableModel;
+
+/**
+ * Tests for the incremental table model. The table model is not a component,
+ * so these run without a display.
+ */
+public class TestTransactionTableModel {
+
+  private ExpenseTrackerModel model;
+  private TransactionTableModel tableModel;
+  private List<TableModelEvent> events;
+
+  @Before
+  public void setup() {
+    model = new ExpenseTrackerModel();
+    tableModel = new TransactionTableModel();
+    events = new ArrayList<>();
+    tableModel.addTableModelListener(events::add);
+  }
+
+  @Test
+  public void testAppendFiresSingleRowInsert() {
+    model.addTransaction(new Transaction(10.0, "food"));
+    tableModel.setTransactions(model.getTransactions());
+    events.clear();
+
+    Transaction added = new Transaction(15.5, "bills");
+    model.addTransaction(added);
+    tableModel.transactionAppended(added);
+
+    assertEquals(TableModelEvent.INSERT, events.get(0).getType());
+    assertEquals(1, events.get(0).getFirstRow());
+    assertEquals(1, events.get(0).getLastRow());
+    assertEquals(3, tableModel.getRowCount());
+    assertEquals(2, tableModel.getValueAt(1, 0));
+    assertEquals("bills", tableModel.getValueAt(1, 2));
+    assertEquals("Total", tableModel.getValueAt(2, 0));
+    assertEquals(25.5, (Double) tableModel.getValueAt(2, 3), 0.001);
+  }
+
+  @Test
+  public void testBatchAppendFiresOneInsert() {
+    model.addTransaction(new Transaction(10.0, "food"));
+    tableModel.setTransactions(model.getTransactions());
+    events.clear();
+
+    List<Transaction> batch = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      batch.add(new Transaction(1.0, "other"));
+    }
+    model.addTransactions(batch);
+    tableModel.transactionsAppended(batch.size(), model.getTotalCost());
+
+    assertEquals(2, events.size());
+    assertEquals(TableModelEvent.INSERT, events.get(0).getType());
+    assertEquals(1, events.get(0).getFirstRow());
+    assertEquals(1000, events.get(0).getLastRow());
+    assertEquals(1002, tableModel.getRowCount());
+    assertEquals(1010.0, (Double) tableModel.getValueAt(1001, 3), 0.001);
+  }
+
+  @Test
+  public void testRemoveFiresSingleRowDelete() {
+    Transaction first = new Transaction(10.0, "food");
+    Transaction second = new Transaction(20.0, "travel");
+    model.addTransaction(first);
+    model.addTransaction(second);
+    tableModel.setTransactions(model.getTransactions());
+    events.clear();
+
+    model.removeTransaction(first);
+    tableModel.transactionRemoved(0, first);
+
+    assertEquals(TableModelEvent.DELETE, events.get(0).getType());
+    assertEquals(0, events.get(0).getFirstRow());
+    assertEquals(2, tableModel.getRowCount());
+    assertEquals("travel", tableModel.getValueAt(0, 2));
+    assertEquals(20.0, tableModel.getTotalCost(), 0.001);
+  }
+
+  @Test
+  public void testEmptyTableOnlyShowsTotal() {
+    tableModel.setTransactions(model.getTransactions());
+    assertEquals(1, tableModel.getRowCount());
+    assertEquals("Total", tableModel.getValueAt(0, 0));
+    assertEquals(0.0, (Double) tableModel.getValueAt(0, 3), 0.0);
+  }
+
+  @Test
+  public void testRemovalOutsideTheControllerDoesNotBreakAFilteredTable() {
+    List<Transaction> food = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      Transaction t = new Transaction(1 + i, i % 2 == 0 ? "food" : "bills");
+      model.addTransaction(t);
+      if (i % 2 == 0) {
+        food.add(t);
+      }
+    }
+    tableModel.setTransactions(new CategoryFilter("food").filter(model));
+    assertEquals(51, tableModel.getRowCount());
+
+    // Renumbers the rows before the table hears about it
+    model.removeTransaction(food.get(0));
+    // The filter runs again, so every row still shows a food transaction
+    for (int row = 0; row < 49; row++) {
+      assertEquals("food", tableModel.getValueAt(row, 2));
+      assertEquals(food.get(row + 1).getAmount(), (Double) tableModel.getValueAt(row, 1), 0.0);
+    }
+    // The last row is gone until the table is updated
+    assertEquals(null, tableModel.getValueAt(49, 2));
+  }
+
+  @Test
+  public void testOnlyViewedPagesAreRead() {
+    for (int i = 0; i < 10000; i++) {
+      model.addTransaction(new Transaction(1 + i % 100, i % 2 == 0 ? "food" : "bills"));
+    }
+    final List<Transaction> filtered = new CategoryFilter("food").filter(model);
+    final int[] reads = new int[1];
+    List<Transaction> counting = new AbstractList<Transaction>() {
+      @Override
+      public Transaction get(int index) {
+        reads[0]++;
+        return filtered.get(index);
+      }
+
+      @Override
+      public int size() {
+        return filtered.size();
+      }
+    };
+    tableModel.setTransactions(counting, 0.0);
+
+    assertEquals(5001, tableModel.getRowCount());
+    assertEquals("food", tableModel.getValueAt(3008, 2));
+    assertEquals(3009, tableModel.getValueAt(3008, 0));
+    assertEquals("food", tableModel.getValueAt(3020, 2));
+    // One page was read for both rows
+    assertEquals(TransactionTableModel.PAGE_SIZE, reads[0]);
+
+    // The total of a filter result comes from the model without reading the list
+    tableModel.setTransactions(filtered);
+    double expected = 0;
+    for (Transaction t : filtered) {
+      expected += t.getAmount();
+    }
+    assertEquals(expected, tableModel.getTotalCost(), 1e-9);
+  }
+
+}
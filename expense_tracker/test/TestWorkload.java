@@ -0,0 +1,94 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import controller.InputValidation;
+import metrics.LatencyHistogram;
+import model.Category;
+import model.ExpenseTrackerModel;
+import model.Transaction;
+import workload.ReplayDriver;
+import workload.WorkloadGenerator;
+
+/**
+ * Tests for the workload generator, the replay driver and its latency histograms.
+ */
+public class TestWorkload {
+
+  @Test
+  public void testGeneratorIsSeededAndValid() {
+    List<Transaction> first = new WorkloadGenerator(7, 1.5).generate(5000);
+    List<Transaction> second = new WorkloadGenerator(7, 1.5).generate(5000);
+    int[] perCategory = new int[Category.values().length];
+    for (int i = 0; i < first.size(); i++) {
+      Transaction t = first.get(i);
+      assertEquals(t.getAmount(), second.get(i).getAmount(), 0);
+      assertEquals(t.getCategory(), second.get(i).getCategory());
+      assertEquals(t.getEpochMillis(), second.get(i).getEpochMillis());
+      assertTrue(InputValidation.isValidAmount(t.getAmount()));
+      assertTrue(i == 0 || t.getEpochMillis() >= first.get(i - 1).getEpochMillis());
+      perCategory[t.getCategoryCode()]++;
+    }
+    // The skew makes each category rarer than the one before it
+    for (int k = 1; k < perCategory.length; k++) {
+      assertTrue(perCategory[k - 1] > perCategory[k]);
+    }
+  }
+
+  @Test
+  public void testHistogramPercentiles() {
+    Random random = new Random(22);
+    LatencyHistogram histogram = new LatencyHistogram();
+    long[] values = new long[100000];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = (long) Math.exp(random.nextDouble() * 20);
+      histogram.record(values[i]);
+    }
+    Arrays.sort(values);
+    for (double percentile : new double[] {0, 50, 90, 99, 99.9, 100}) {
+      long expected = values[Math.max(0, (int) Math.ceil(percentile / 100 * values.length) - 1)];
+      long actual = histogram.getValueAtPercentile(percentile);
+      assertTrue(percentile + ": " + actual + " vs " + expected,
+          actual >= expected && actual <= expected + expected / 64 + 1);
+    }
+    assertEquals(values.length, histogram.getCount());
+    assertEquals(values[values.length - 1], histogram.getMax());
+    assertEquals(values[values.length - 1], histogram.getValueAtPercentile(100));
+
+    LatencyHistogram merged = new LatencyHistogram();
+    merged.add(histogram);
+    assertEquals(histogram.getValueAtPercentile(99), merged.getValueAtPercentile(99));
+  }
+
+  @Test
+  public void testReplayRunsTheMix() throws Exception {
+    ExpenseTrackerModel model = new ExpenseTrackerModel();
+    WorkloadGenerator generator = new WorkloadGenerator(1, 1);
+    generator.addTo(model, 1000);
+    Path exportFile = Files.createTempFile("replay-test", ".csv");
+    try {
+      ReplayDriver driver = new ReplayDriver(model, generator, exportFile, 2);
+      driver.setMix(1, 1, 1, 0);
+      Map<ReplayDriver.Operation, LatencyHistogram> latencies = driver.run(3000, 0);
+
+      long adds = latencies.get(ReplayDriver.Operation.ADD).getCount();
+      long removes = latencies.get(ReplayDriver.Operation.REMOVE).getCount();
+      assertEquals(3000, adds + removes + latencies.get(ReplayDriver.Operation.FILTER).getCount());
+      assertEquals(1000 + adds - removes, model.getTransactionCount());
+      assertFalse(latencies.containsKey(ReplayDriver.Operation.EXPORT));
+      assertTrue(ReplayDriver.report(latencies).contains("filter"));
+    } finally {
+      Files.deleteIfExists(exportFile);
+    }
+  }
+
+}